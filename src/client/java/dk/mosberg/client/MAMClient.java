@@ -7,7 +7,11 @@ import dk.mosberg.client.hud.CooldownOverlay;
 import dk.mosberg.client.hud.ManaHudOverlay;
 import dk.mosberg.client.hud.ManaNodeIndicator;
 import dk.mosberg.client.input.MagicKeyBindings;
+import dk.mosberg.client.network.ClientCastPredictor;
 import dk.mosberg.client.network.ClientManaNetworkHandler;
+import dk.mosberg.client.network.ClientParticleNetworkHandler;
+import dk.mosberg.client.network.ClientProjectileNetworkHandler;
+import dk.mosberg.client.network.ClientSpellIds;
 import dk.mosberg.client.renderer.entity.SpellProjectileRenderer;
 import dk.mosberg.entity.ModEntities;
 import net.fabricmc.api.ClientModInitializer;
@@ -29,6 +33,10 @@ public class MAMClient implements ClientModInitializer {
 
 		// Register client-side networking
 		ClientManaNetworkHandler.register();
+		ClientSpellIds.register();
+		ClientCastPredictor.register();
+		ClientProjectileNetworkHandler.register();
+		ClientParticleNetworkHandler.register();
 
 		// Register keybindings
 		MagicKeyBindings.register();
@@ -246,4 +246,24 @@ public class ManaHudOverlay {
         maxMana[1] = secondaryMax;
         maxMana[2] = tertiaryMax;
     }
+
+    /**
+     * Update a single current mana value. Called for each pool included in a mana delta packet.
+     *
+     * @param index Pool index (0 = personal, 1 = aura, 2 = reserve)
+     * @param value Current mana
+     */
+    public static void updateManaValue(int index, double value) {
+        currentMana[index] = value;
+    }
+
+    /**
+     * Update a single max mana value. Called for each pool included in a mana delta packet.
+     *
+     * @param index Pool index (0 = personal, 1 = aura, 2 = reserve)
+     * @param value Max mana
+     */
+    public static void updateMaxManaValue(int index, double value) {
+        maxMana[index] = value;
+    }
 }
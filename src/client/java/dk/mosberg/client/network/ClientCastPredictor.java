@@ -0,0 +1,372 @@
+package dk.mosberg.client.network;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import dk.mosberg.MAM;
+import dk.mosberg.client.hud.ManaHudOverlay;
+import dk.mosberg.mana.ManaPoolType;
+import dk.mosberg.network.SpellCastNetworkHandler;
+import dk.mosberg.spell.ManaCostPolicy;
+import dk.mosberg.spell.Spell;
+import dk.mosberg.spell.SpellPlan;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.particle.ParticleEffect;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+import net.minecraft.util.Identifier;
+
+/**
+ * Client-side prediction of spell casts. A cast is applied locally the moment it is requested: the
+ * mana it will cost is taken from the displayed pools, its cooldown starts and the cast effects
+ * play, and the request is sent tagged with a sequence number. The server answers every request it
+ * handles with a {@link SpellCastNetworkHandler.CastResultPayload}; an accepted prediction is kept
+ * with the mana the server actually charged in place of the predicted cost, a rejected one is
+ * rolled back and the server's cooldown is adopted.
+ *
+ * <p>
+ * Mana from the server is the base the predictions are applied to, so a mana sync sent before the
+ * server handled a cast does not undo its prediction. The server answers a player's requests in the
+ * order they were sent, so an answer also rolls back every older prediction still waiting, whose
+ * request was dropped; predictions left unanswered for {@link #PENDING_TIMEOUT_TICKS} are rolled
+ * back as well.
+ *
+ * <p>
+ * The server syncs regeneration only on a slow heartbeat, so the last mana it sent is extrapolated
+ * at its regen rate up to the pool's max every tick in between.
+ *
+ * <p>
+ * All methods must be called on the client thread.
+ */
+@Environment(EnvType.CLIENT)
+public class ClientCastPredictor {
+    private static final int PENDING_TIMEOUT_TICKS = 40;
+    private static final int CAST_PARTICLES = 8;
+    private static final int POOLS = ManaPoolType.values().length;
+
+    private static final ArrayDeque<Prediction> pending = new ArrayDeque<>();
+    private static final Map<Identifier, Long> cooldownEnds = new HashMap<>();
+    // Last mana reported by the server per pool, with the charges of accepted casts applied, as of
+    // the tick in serverManaTick; it regenerates from there at the server's rate up to serverMax
+    private static final double[] serverMana = new double[POOLS];
+    private static final long[] serverManaTick = new long[POOLS];
+    private static final boolean[] serverManaKnown = new boolean[POOLS];
+    private static final double[] serverMax = new double[POOLS];
+    private static final double[] regenRate = new double[POOLS];
+    private static final double[] pendingCharge = new double[POOLS];
+    private static int nextSequence;
+    private static long tick;
+
+    /**
+     * A cast applied locally and waiting for the server's answer.
+     */
+    private static final class Prediction {
+        private final int sequence;
+        private final Identifier spellId;
+        private final double[] charged;
+        private final Long previousCooldownEnd;
+        private final long sentTick;
+
+        Prediction(int sequence, Identifier spellId, double[] charged, Long previousCooldownEnd,
+                long sentTick) {
+            this.sequence = sequence;
+            this.spellId = spellId;
+            this.charged = charged;
+            this.previousCooldownEnd = previousCooldownEnd;
+            this.sentTick = sentTick;
+        }
+    }
+
+    /**
+     * Register the cast result receiver and the tick and disconnect handlers.
+     */
+    public static void register() {
+        ClientPlayNetworking.registerGlobalReceiver(
+                SpellCastNetworkHandler.CastResultPayload.ID,
+                (payload, context) -> context.client().execute(() -> onResult(payload)));
+
+        ClientTickEvents.END_CLIENT_TICK.register(client -> {
+            if (client.world == null) {
+                return;
+            }
+            tick++;
+            rollBackExpired();
+            // Regeneration is only synced on a heartbeat, extrapolate it in between
+            refreshMana();
+        });
+
+        // Predictions belong to the server, forget them when leaving
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> clear());
+
+        MAM.LOGGER.info("Registered client cast prediction");
+    }
+
+    /**
+     * Cast a spell with prediction. Casts still on the predicted cooldown are refused locally
+     * without contacting the server.
+     *
+     * @param spell The spell to cast
+     * @return true if the cast request was sent
+     */
+    public static boolean cast(Spell spell) {
+        if (spell == null) {
+            MAM.LOGGER.warn("Attempted to cast null spell");
+            return false;
+        }
+
+        MinecraftClient client = MinecraftClient.getInstance();
+        long cooldown = getRemainingCooldown(spell.getId());
+        if (cooldown > 0) {
+            if (client.player != null) {
+                client.player.sendMessage(Text.literal(String.format("%s is on cooldown! (%.1fs)",
+                        spell.getId().getPath(), cooldown / 20.0)).formatted(Formatting.RED), true);
+            }
+            return false;
+        }
+
+        int sequence = nextSequence;
+        if (!ClientSpellCastPacket.send(spell.getId(), sequence)) {
+            return false;
+        }
+        nextSequence = (nextSequence + 1) & Integer.MAX_VALUE;
+
+        // Channelled casts are charged and start their cooldown once the channel completes, which
+        // an interruption can prevent, so only their effects are predicted
+        SpellPlan plan = spell.getPlan();
+        boolean instant = plan.getCastTicks() == 0;
+        double[] charged = instant ? predictCharge(spell) : null;
+        if (charged != null) {
+            for (int p = 0; p < POOLS; p++) {
+                pendingCharge[p] += charged[p];
+            }
+            refreshMana();
+        }
+        Long previousCooldownEnd = null;
+        if (instant && plan.getCooldownTicks() > 0) {
+            previousCooldownEnd = cooldownEnds.put(spell.getId(), tick + plan.getCooldownTicks());
+        }
+        pending.addLast(
+                new Prediction(sequence, spell.getId(), charged, previousCooldownEnd, tick));
+
+        playCastEffects(client.player, spell, plan);
+        return true;
+    }
+
+    /**
+     * Take in a pool's current mana from the server.
+     *
+     * @param type The pool
+     * @param value Current mana on the server
+     */
+    public static void onServerMana(ManaPoolType type, double value) {
+        serverMana[type.ordinal()] = value;
+        serverManaTick[type.ordinal()] = tick;
+        serverManaKnown[type.ordinal()] = true;
+        refreshMana(type.ordinal());
+    }
+
+    /**
+     * Take in a pool's max mana from the server.
+     *
+     * @param type The pool
+     * @param value Max mana on the server
+     */
+    public static void onServerMax(ManaPoolType type, double value) {
+        int p = type.ordinal();
+        // Regeneration so far was capped by the old max
+        settle(p);
+        serverMax[p] = value;
+        ManaHudOverlay.updateMaxManaValue(p, value);
+        refreshMana(p);
+    }
+
+    /**
+     * Take in the regen rate of a pool from the server.
+     *
+     * @param type The pool
+     * @param rate Mana regenerated per tick
+     */
+    public static void onRegenRate(ManaPoolType type, double rate) {
+        int p = type.ordinal();
+        settle(p);
+        regenRate[p] = rate;
+    }
+
+    /**
+     * Get the ticks left until a spell is off its predicted cooldown.
+     *
+     * @param spellId The spell identifier
+     * @return Remaining ticks, 0 if the spell is ready
+     */
+    public static long getRemainingCooldown(Identifier spellId) {
+        Long end = cooldownEnds.get(spellId);
+        return end != null ? Math.max(0, end - tick) : 0;
+    }
+
+    private static double[] predictCharge(Spell spell) {
+        ManaPoolType[] order = ManaCostPolicy.getOrder(spell.getSchool(), spell.getCastType());
+        double remaining = spell.getManaCost();
+        double[] charged = new double[POOLS];
+        for (ManaPoolType type : order) {
+            int p = type.ordinal();
+            if (!serverManaKnown[p]) {
+                // Without the server's mana there is nothing to predict against
+                return null;
+            }
+            double take = Math.min(remaining, Math.max(0, getServerMana(p) - pendingCharge[p]));
+            charged[p] = take;
+            remaining -= take;
+        }
+        // Leave unaffordable casts to the server, the local view may lag behind regeneration
+        return remaining > 1.0e-9 ? null : charged;
+    }
+
+    private static void playCastEffects(ClientPlayerEntity player, Spell spell, SpellPlan plan) {
+        if (player == null) {
+            return;
+        }
+        String message = plan.getCastTicks() > 0 ? "Casting " + spell.getId().getPath() + "..."
+                : "Cast " + spell.getId().getPath() + "!";
+        player.sendMessage(Text.literal(message).formatted(Formatting.AQUA), true);
+
+        ParticleEffect particle = SpellPlan.getImpactParticle(spell.getSchool());
+        for (int i = 0; i < CAST_PARTICLES; i++) {
+            double angle = i * (2.0 * Math.PI / CAST_PARTICLES);
+            player.getEntityWorld().addParticleClient(particle,
+                    player.getX() + Math.cos(angle) * 0.6, player.getY() + 1.0,
+                    player.getZ() + Math.sin(angle) * 0.6, 0.0, 0.05, 0.0);
+        }
+    }
+
+    private static void onResult(SpellCastNetworkHandler.CastResultPayload payload) {
+        while (!pending.isEmpty()) {
+            Prediction prediction = pending.peekFirst();
+            if (prediction.sequence != payload.sequence()) {
+                if (isBefore(prediction.sequence, payload.sequence())) {
+                    // Answered out of order means this request was dropped unanswered
+                    pending.removeFirst();
+                    rollBack(prediction);
+                    continue;
+                }
+                // Already rolled back on timeout
+                return;
+            }
+
+            pending.removeFirst();
+            if (payload.accepted()) {
+                commit(prediction, payload.charged());
+            } else {
+                rollBack(prediction);
+                if (payload.cooldownTicks() > 0) {
+                    cooldownEnds.put(prediction.spellId, tick + payload.cooldownTicks());
+                }
+                MAM.LOGGER.debug("Server rejected predicted cast {} of {}", prediction.sequence,
+                        prediction.spellId);
+            }
+            return;
+        }
+    }
+
+    private static boolean isBefore(int sequence, int other) {
+        // Sequence numbers are 31 bits and wrap around
+        return ((other - sequence) & Integer.MAX_VALUE) < (1 << 30);
+    }
+
+    private static void commit(Prediction prediction, double[] charged) {
+        if (prediction.charged == null) {
+            return;
+        }
+        // Swap the guessed split for what the server charged until its next sync includes it
+        for (int p = 0; p < POOLS; p++) {
+            pendingCharge[p] -= prediction.charged[p];
+            if (charged[p] != 0) {
+                settle(p);
+                serverMana[p] -= charged[p];
+            }
+        }
+        refreshMana();
+    }
+
+    private static void rollBack(Prediction prediction) {
+        if (prediction.charged != null) {
+            for (int p = 0; p < POOLS; p++) {
+                pendingCharge[p] -= prediction.charged[p];
+            }
+            refreshMana();
+        }
+        if (prediction.previousCooldownEnd != null) {
+            cooldownEnds.put(prediction.spellId, prediction.previousCooldownEnd);
+        } else {
+            cooldownEnds.remove(prediction.spellId);
+        }
+    }
+
+    private static void rollBackExpired() {
+        Iterator<Prediction> it = pending.iterator();
+        while (it.hasNext()) {
+            Prediction prediction = it.next();
+            if (tick - prediction.sentTick < PENDING_TIMEOUT_TICKS) {
+                break;
+            }
+            it.remove();
+            rollBack(prediction);
+            MAM.LOGGER.debug("Predicted cast {} of {} was never answered", prediction.sequence,
+                    prediction.spellId);
+        }
+
+        // Drop finished cooldowns
+        cooldownEnds.values().removeIf(end -> end <= tick);
+    }
+
+    private static void refreshMana() {
+        for (int p = 0; p < POOLS; p++) {
+            refreshMana(p);
+        }
+    }
+
+    private static void refreshMana(int p) {
+        if (serverManaKnown[p]) {
+            ManaHudOverlay.updateManaValue(p, Math.max(0, getServerMana(p) - pendingCharge[p]));
+        }
+    }
+
+    /**
+     * Get the server's mana in a pool extrapolated to the current tick.
+     */
+    private static double getServerMana(int p) {
+        double value = serverMana[p];
+        if (value >= serverMax[p]) {
+            return value;
+        }
+        return Math.min(serverMax[p], value + regenRate[p] * (tick - serverManaTick[p]));
+    }
+
+    /**
+     * Fold the regeneration since the last sync into a pool's server mana, e.g. before its rate or
+     * max changes.
+     */
+    private static void settle(int p) {
+        serverMana[p] = getServerMana(p);
+        serverManaTick[p] = tick;
+    }
+
+    private static void clear() {
+        pending.clear();
+        cooldownEnds.clear();
+        Arrays.fill(serverMana, 0.0);
+        Arrays.fill(serverManaTick, 0);
+        Arrays.fill(serverManaKnown, false);
+        Arrays.fill(serverMax, 0.0);
+        Arrays.fill(regenRate, 0.0);
+        Arrays.fill(pendingCharge, 0.0);
+        tick = 0;
+    }
+}
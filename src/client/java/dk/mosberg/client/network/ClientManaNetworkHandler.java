@@ -1,7 +1,7 @@
 package dk.mosberg.client.network;
 
 import dk.mosberg.MAM;
-import dk.mosberg.client.hud.ManaHudOverlay;
+import dk.mosberg.mana.ManaPoolType;
 import dk.mosberg.network.ManaNetworkHandler;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
@@ -17,25 +17,35 @@ public class ClientManaNetworkHandler {
      * Register client-side packet receivers.
      */
     public static void register() {
-        ClientPlayNetworking.registerGlobalReceiver(ManaNetworkHandler.ManaSyncPayload.ID,
+        ClientPlayNetworking.registerGlobalReceiver(ManaNetworkHandler.ManaDeltaPayload.ID,
                 (payload, context) -> {
                     // Update client-side mana display
                     context.client().execute(() -> {
-                        // Update current mana values
-                        ManaHudOverlay.updateManaValues(payload.personalCurrent(),
-                                payload.auraCurrent(), payload.reserveCurrent());
+                        // Only pools flagged in the mask are included
+                        for (ManaPoolType type : ManaPoolType.values()) {
+                            if (payload.hasMax(type)) {
+                                ClientCastPredictor.onServerMax(type, payload.getMax(type));
+                            }
+                            if (payload.hasCurrent(type)) {
+                                // Pending cast predictions are applied on top
+                                ClientCastPredictor.onServerMana(type,
+                                        payload.getCurrent(type));
+                            }
+                        }
 
-                        // Update max mana values
-                        ManaHudOverlay.updateMaxManaValues(payload.personalMax(), payload.auraMax(),
-                                payload.reserveMax());
-
-                        MAM.LOGGER.trace("Received mana sync: P={}/{}, A={}/{}, R={}/{}",
-                                payload.personalCurrent(), payload.personalMax(),
-                                payload.auraCurrent(), payload.auraMax(), payload.reserveCurrent(),
-                                payload.reserveMax());
+                        MAM.LOGGER.trace("Received mana delta: mask={}",
+                                Integer.toBinaryString(payload.mask()));
                     });
                 });
 
+        ClientPlayNetworking.registerGlobalReceiver(ManaNetworkHandler.ManaRegenPayload.ID,
+                (payload, context) -> context.client().execute(() -> {
+                    // Used to extrapolate regeneration between heartbeat syncs
+                    for (ManaPoolType type : ManaPoolType.values()) {
+                        ClientCastPredictor.onRegenRate(type, payload.getRate(type));
+                    }
+                }));
+
         MAM.LOGGER.info("Registered client mana network handlers");
     }
 }
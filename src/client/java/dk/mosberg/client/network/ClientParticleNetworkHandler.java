@@ -0,0 +1,62 @@
+package dk.mosberg.client.network;
+
+import dk.mosberg.network.ParticleBatcher;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.particle.ParticleEffect;
+import net.minecraft.util.math.random.Random;
+
+/**
+ * Client-side receiver for batched spell and ritual particles. Each emission is spawned the same
+ * way as a vanilla particle packet.
+ */
+@Environment(EnvType.CLIENT)
+public class ClientParticleNetworkHandler {
+    /**
+     * Register the particle batch receiver.
+     */
+    public static void register() {
+        ClientPlayNetworking.registerGlobalReceiver(ParticleBatcher.ParticleBatchPayload.ID,
+                (payload, context) -> context.client().execute(() -> {
+                    ClientWorld world = MinecraftClient.getInstance().world;
+                    if (world == null) {
+                        return;
+                    }
+                    for (ParticleBatcher.Group group : payload.groups()) {
+                        spawn(world, group);
+                    }
+                }));
+    }
+
+    private static void spawn(ClientWorld world, ParticleBatcher.Group group) {
+        ParticleEffect effect = group.effect();
+        float[] values = group.values();
+        int[] counts = group.counts();
+        Random random = world.random;
+        for (int e = 0; e < counts.length; e++) {
+            int offset = e * ParticleBatcher.EMISSION_STRIDE;
+            double x = values[offset];
+            double y = values[offset + 1];
+            double z = values[offset + 2];
+            double dx = values[offset + 3];
+            double dy = values[offset + 4];
+            double dz = values[offset + 5];
+            double speed = values[offset + 6];
+
+            if (counts[e] == 0) {
+                // A single particle moving along the spread
+                world.addParticleClient(effect, x, y, z, speed * dx, speed * dy, speed * dz);
+                continue;
+            }
+            for (int i = 0; i < counts[e]; i++) {
+                world.addParticleClient(effect, x + random.nextGaussian() * dx,
+                        y + random.nextGaussian() * dy, z + random.nextGaussian() * dz,
+                        random.nextGaussian() * speed, random.nextGaussian() * speed,
+                        random.nextGaussian() * speed);
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package dk.mosberg.client.network;
+
+import dk.mosberg.client.renderer.SimulatedProjectileRenderer;
+import dk.mosberg.network.ProjectileNetworkHandler;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+
+/**
+ * Client-side receivers for simulated spell projectile batches.
+ */
+@Environment(EnvType.CLIENT)
+public class ClientProjectileNetworkHandler {
+    /**
+     * Register the spawn and impact receivers.
+     */
+    public static void register() {
+        ClientPlayNetworking.registerGlobalReceiver(
+                ProjectileNetworkHandler.ProjectileSpawnPayload.ID,
+                (payload, context) -> context.client()
+                        .execute(() -> SimulatedProjectileRenderer.spawn(payload)));
+
+        ClientPlayNetworking.registerGlobalReceiver(
+                ProjectileNetworkHandler.ProjectileImpactPayload.ID,
+                (payload, context) -> context.client()
+                        .execute(() -> SimulatedProjectileRenderer.impact(payload)));
+
+        SimulatedProjectileRenderer.register();
+    }
+}
@@ -8,7 +8,9 @@ import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
 import net.minecraft.util.Identifier;
 
 /**
- * Client-side spell casting packet sender. Sends spell cast requests to the server.
+ * Client-side spell casting packet sender. Sends spell cast requests to the server, referring to
+ * the spell by its network id from {@link ClientSpellIds}. Casts are predicted through
+ * {@link ClientCastPredictor}, which assigns the sequence numbers.
  */
 @Environment(EnvType.CLIENT)
 public class ClientSpellCastPacket {
@@ -18,14 +20,24 @@ public class ClientSpellCastPacket {
      * Send a spell cast request to the server.
      *
      * @param spellId The spell identifier
+     * @param sequence Sequence number the server answers the request with
+     * @return true if the request was sent
      */
-    public static void send(Identifier spellId) {
+    public static boolean send(Identifier spellId, int sequence) {
         if (spellId == null) {
             MAM.LOGGER.warn("Attempted to cast null spell");
-            return;
+            return false;
         }
 
-        ClientPlayNetworking.send(new SpellCastNetworkHandler.SpellCastPayload(spellId.toString()));
-        MAM.LOGGER.debug("Spell cast packet sent: {}", spellId);
+        int networkId = ClientSpellIds.getNetworkId(spellId);
+        if (networkId == ClientSpellIds.UNKNOWN) {
+            MAM.LOGGER.warn("Attempted to cast spell {} unknown to the server", spellId);
+            return false;
+        }
+
+        ClientPlayNetworking.send(new SpellCastNetworkHandler.SpellCastPayload(sequence,
+                ClientSpellIds.getEpoch(), networkId));
+        MAM.LOGGER.debug("Spell cast packet sent: {} (sequence {})", spellId, sequence);
+        return true;
     }
 }
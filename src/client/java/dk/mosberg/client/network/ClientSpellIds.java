@@ -0,0 +1,66 @@
+package dk.mosberg.client.network;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import dk.mosberg.MAM;
+import dk.mosberg.network.SpellCastNetworkHandler;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.minecraft.util.Identifier;
+
+/**
+ * Client-side copy of the server's spell id table, used to send spell casts by network id.
+ */
+@Environment(EnvType.CLIENT)
+public class ClientSpellIds {
+    public static final int UNKNOWN = -1;
+
+    private static int epoch = UNKNOWN;
+    private static Map<Identifier, Integer> networkIds = Map.of();
+
+    /**
+     * Register the id table receiver.
+     */
+    public static void register() {
+        ClientPlayNetworking.registerGlobalReceiver(SpellCastNetworkHandler.SpellIdsPayload.ID,
+                (payload, context) -> context.client().execute(() -> {
+                    update(payload.epoch(), payload.spellIds());
+                }));
+
+        // The table belongs to the server, forget it when leaving
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> {
+            epoch = UNKNOWN;
+            networkIds = Map.of();
+        });
+    }
+
+    private static void update(int newEpoch, List<Identifier> spellIds) {
+        Map<Identifier, Integer> ids = new HashMap<>(spellIds.size() * 2);
+        for (int i = 0; i < spellIds.size(); i++) {
+            ids.put(spellIds.get(i), i);
+        }
+        networkIds = ids;
+        epoch = newEpoch;
+        MAM.LOGGER.debug("Received {} spell ids (epoch {})", spellIds.size(), newEpoch);
+    }
+
+    /**
+     * Get the epoch of the current table, or {@link #UNKNOWN} if none was received.
+     */
+    public static int getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Get the network id of a spell.
+     *
+     * @param spellId The spell identifier
+     * @return The network id, or {@link #UNKNOWN} if the server does not know the spell
+     */
+    public static int getNetworkId(Identifier spellId) {
+        return networkIds.getOrDefault(spellId, UNKNOWN);
+    }
+}
@@ -0,0 +1,175 @@
+package dk.mosberg.client.renderer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import dk.mosberg.network.ProjectileNetworkHandler;
+import dk.mosberg.spell.ProjectileSimulator;
+import dk.mosberg.spell.SpellPlan;
+import dk.mosberg.spell.SpellSchool;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.particle.ParticleEffect;
+
+/**
+ * Client-side flight of simulated spell projectiles. Projectiles announced by the server are kept
+ * in parallel arrays, moved every client tick with the server's gravity and drag, and drawn as a
+ * particle trail; an impact removes the projectile and bursts at the server's final position.
+ * The server sends each impact to every client it sent the spawn to; projectiles whose impact is
+ * still lost, e.g. on a world change, expire after the same maximum age as on the server.
+ */
+@Environment(EnvType.CLIENT)
+public class SimulatedProjectileRenderer {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int IMPACT_PARTICLES = 10;
+    private static final double IMPACT_SPREAD = 0.3;
+
+    private static final Map<Integer, Integer> indexById = new HashMap<>();
+    private static int size;
+    private static int[] ids = new int[INITIAL_CAPACITY];
+    private static double[] x = new double[INITIAL_CAPACITY];
+    private static double[] y = new double[INITIAL_CAPACITY];
+    private static double[] z = new double[INITIAL_CAPACITY];
+    private static double[] vx = new double[INITIAL_CAPACITY];
+    private static double[] vy = new double[INITIAL_CAPACITY];
+    private static double[] vz = new double[INITIAL_CAPACITY];
+    private static int[] age = new int[INITIAL_CAPACITY];
+    private static ParticleEffect[] particles = new ParticleEffect[INITIAL_CAPACITY];
+
+    /**
+     * Register the client tick and disconnect handlers.
+     */
+    public static void register() {
+        ClientTickEvents.END_CLIENT_TICK.register(client -> {
+            if (size > 0 && client.world != null && !client.isPaused()) {
+                tick(client.world);
+            }
+        });
+
+        // Projectiles belong to the server, forget them when leaving
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> clear());
+    }
+
+    /**
+     * Start simulating a batch of projectiles.
+     *
+     * @param payload The spawn batch
+     */
+    public static void spawn(ProjectileNetworkHandler.ProjectileSpawnPayload payload) {
+        SpellSchool[] schools = SpellSchool.values();
+        float[] motion = payload.motion();
+        for (int e = 0; e < payload.ids().length; e++) {
+            int school = payload.schools()[e];
+            if (school < 0 || school >= schools.length || indexById.containsKey(payload.ids()[e])) {
+                continue;
+            }
+            if (size == ids.length) {
+                grow();
+            }
+            int i = size++;
+            int offset = e * ProjectileNetworkHandler.MOTION_STRIDE;
+            ids[i] = payload.ids()[e];
+            x[i] = motion[offset];
+            y[i] = motion[offset + 1];
+            z[i] = motion[offset + 2];
+            vx[i] = motion[offset + 3];
+            vy[i] = motion[offset + 4];
+            vz[i] = motion[offset + 5];
+            age[i] = 0;
+            particles[i] = SpellPlan.getImpactParticle(schools[school]);
+            indexById.put(ids[i], i);
+        }
+    }
+
+    /**
+     * End a batch of projectiles, bursting at the ones that hit something.
+     *
+     * @param payload The impact batch
+     */
+    public static void impact(ProjectileNetworkHandler.ProjectileImpactPayload payload) {
+        ClientWorld world = MinecraftClient.getInstance().world;
+        float[] positions = payload.positions();
+        for (int e = 0; e < payload.ids().length; e++) {
+            Integer index = indexById.get(payload.ids()[e]);
+            if (index == null) {
+                continue;
+            }
+            int offset = e * ProjectileNetworkHandler.POSITION_STRIDE;
+            if (world != null && payload.kinds()[e] == ProjectileNetworkHandler.IMPACT_HIT) {
+                burst(world, particles[index], positions[offset], positions[offset + 1],
+                        positions[offset + 2]);
+            }
+            remove(index);
+        }
+    }
+
+    private static void tick(ClientWorld world) {
+        int i = 0;
+        while (i < size) {
+            world.addParticleClient(particles[i], x[i], y[i], z[i], 0.0, 0.0, 0.0);
+            x[i] += vx[i];
+            y[i] += vy[i];
+            z[i] += vz[i];
+            vx[i] *= ProjectileSimulator.DRAG;
+            vy[i] = vy[i] * ProjectileSimulator.DRAG - ProjectileSimulator.GRAVITY;
+            vz[i] *= ProjectileSimulator.DRAG;
+            if (++age[i] >= ProjectileSimulator.MAX_AGE) {
+                // The last element moves into this slot, visit it next
+                remove(i);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    private static void burst(ClientWorld world, ParticleEffect particle, double px, double py,
+            double pz) {
+        for (int p = 0; p < IMPACT_PARTICLES; p++) {
+            world.addParticleClient(particle,
+                    px + (world.random.nextDouble() - 0.5) * 2.0 * IMPACT_SPREAD,
+                    py + (world.random.nextDouble() - 0.5) * 2.0 * IMPACT_SPREAD,
+                    pz + (world.random.nextDouble() - 0.5) * 2.0 * IMPACT_SPREAD, 0.0, 0.1, 0.0);
+        }
+    }
+
+    private static void remove(int i) {
+        indexById.remove(ids[i]);
+        int last = --size;
+        if (i != last) {
+            ids[i] = ids[last];
+            x[i] = x[last];
+            y[i] = y[last];
+            z[i] = z[last];
+            vx[i] = vx[last];
+            vy[i] = vy[last];
+            vz[i] = vz[last];
+            age[i] = age[last];
+            particles[i] = particles[last];
+            indexById.put(ids[i], i);
+        }
+        particles[last] = null;
+    }
+
+    private static void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        z = Arrays.copyOf(z, capacity);
+        vx = Arrays.copyOf(vx, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+        vz = Arrays.copyOf(vz, capacity);
+        age = Arrays.copyOf(age, capacity);
+        particles = Arrays.copyOf(particles, capacity);
+    }
+
+    private static void clear() {
+        indexById.clear();
+        Arrays.fill(particles, 0, size, null);
+        size = 0;
+    }
+}
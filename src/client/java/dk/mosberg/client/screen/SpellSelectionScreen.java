@@ -335,8 +335,8 @@ public class SpellSelectionScreen extends Screen {
             return;
         }
 
-        // Send packet to server to cast spell
-        dk.mosberg.client.network.ClientSpellCastPacket.send(selectedSpell.getId());
+        // Predict the cast locally and send it to the server
+        dk.mosberg.client.network.ClientCastPredictor.cast(selectedSpell);
         this.close();
     }
 
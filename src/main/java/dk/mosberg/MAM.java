@@ -8,9 +8,12 @@ import dk.mosberg.item.ModItemGroups;
 import dk.mosberg.item.ModItems;
 import dk.mosberg.mana.ManaConfig;
 import dk.mosberg.network.ManaNetworkHandler;
+import dk.mosberg.network.ParticleBatcher;
+import dk.mosberg.network.ProjectileNetworkHandler;
 import dk.mosberg.network.SpellCastNetworkHandler;
 import dk.mosberg.registry.MagicRegistry;
 import net.fabricmc.api.ModInitializer;
+import net.fabricmc.loader.api.FabricLoader;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
 
 /**
@@ -40,12 +43,14 @@ public class MAM implements ModInitializer {
 			ModItemGroups.initialize();
 			dk.mosberg.entity.ModEntities.initialize();
 
-			// Phase 3: Load data-driven content
+			// Phase 3: Load data-driven content (in the background and on data reload)
 			MagicRegistry.initialize();
 
 			// Phase 4: Register networking
 			ManaNetworkHandler.register();
 			SpellCastNetworkHandler.register();
+			ProjectileNetworkHandler.register();
+			ParticleBatcher.register();
 
 			// Phase 5: Register commands
 			CommandRegistrationCallback.EVENT.register(MagicCommands::register);
@@ -62,9 +67,10 @@ public class MAM implements ModInitializer {
 	}
 
 	/**
-	 * Get the mod version from build properties.
+	 * Get the mod version from the mod metadata, "unknown" outside a running loader.
 	 */
-	private String getModVersion() {
-		return "1.0.0"; // Could be loaded from gradle.properties
+	public static String getModVersion() {
+		return FabricLoader.getInstance().getModContainer(MOD_ID)
+				.map(mod -> mod.getMetadata().getVersion().getFriendlyString()).orElse("unknown");
 	}
 }
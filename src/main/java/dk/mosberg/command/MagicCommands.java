@@ -1,5 +1,6 @@
 package dk.mosberg.command;
 
+import java.util.concurrent.CompletableFuture;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.DoubleArgumentType;
 import com.mojang.brigadier.arguments.StringArgumentType;
@@ -7,10 +8,15 @@ import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.suggestion.SuggestionProvider;
 import dk.mosberg.MAM;
 import dk.mosberg.mana.ManaComponent;
+import dk.mosberg.mana.ManaConfig;
 import dk.mosberg.mana.ManaManager;
 import dk.mosberg.mana.ManaPoolType;
+import dk.mosberg.network.CastRateLimiter;
+import dk.mosberg.network.SpellCastNetworkHandler;
 import dk.mosberg.registry.MagicRegistry;
+import dk.mosberg.spell.ProjectileSimulator;
 import dk.mosberg.spell.Spell;
+import dk.mosberg.spell.SpellCastScheduler;
 import dk.mosberg.spell.SpellCaster;
 import dk.mosberg.spell.SpellSchool;
 import net.minecraft.command.CommandRegistryAccess;
@@ -98,6 +104,9 @@ public class MagicCommands {
                                         .argument("ritual_id", StringArgumentType.string())
                                         .executes(MagicCommands::ritualInfo))))
 
+                // === STATS COMMAND ===
+                .then(CommandManager.literal("stats").executes(MagicCommands::showStats))
+
                 // === RELOAD COMMAND ===
                 .then(CommandManager.literal("reload").executes(MagicCommands::reloadRegistry)));
 
@@ -131,6 +140,8 @@ public class MagicCommands {
                 .formatted(Formatting.GREEN), false);
         ctx.getSource().sendFeedback(() -> Text.literal("/magic ritual list - List rituals")
                 .formatted(Formatting.LIGHT_PURPLE), false);
+        ctx.getSource().sendFeedback(() -> Text.literal("/magic stats - Show mana system stats")
+                .formatted(Formatting.YELLOW), false);
         ctx.getSource().sendFeedback(() -> Text.literal("/magic reload - Reload spells/rituals")
                 .formatted(Formatting.YELLOW), false);
         return 1;
@@ -375,18 +386,68 @@ public class MagicCommands {
         return 1;
     }
 
+    // === STATS COMMAND IMPLEMENTATION ===
+
+    private static int showStats(CommandContext<ServerCommandSource> ctx) {
+        int components = ManaManager.getActiveComponentCount();
+        int regenerating = ManaManager.getActiveRegenCount();
+        int offlineCached = ManaManager.getOfflineCachedCount();
+
+        ctx.getSource().sendFeedback(
+                () -> Text.literal("=== Mana System Stats ===").formatted(Formatting.GOLD), false);
+        ctx.getSource().sendFeedback(() -> Text.literal("Mana components: ")
+                .formatted(Formatting.AQUA)
+                .append(Text.literal(String.valueOf(components)).formatted(Formatting.WHITE)),
+                false);
+        ctx.getSource().sendFeedback(() -> Text.literal("Regenerating: ")
+                .formatted(Formatting.AQUA)
+                .append(Text.literal(String.valueOf(regenerating)).formatted(Formatting.WHITE)),
+                false);
+        ctx.getSource().sendFeedback(() -> Text.literal("Offline cached: ")
+                .formatted(Formatting.AQUA)
+                .append(Text.literal(String.valueOf(offlineCached)).formatted(Formatting.WHITE)),
+                false);
+        ctx.getSource().sendFeedback(() -> Text.literal("Pending casts and cooldowns: ")
+                .formatted(Formatting.AQUA)
+                .append(Text.literal(String.valueOf(SpellCastScheduler.getTimerCount()))
+                        .formatted(Formatting.WHITE)),
+                false);
+        ctx.getSource().sendFeedback(() -> Text.literal("Simulated projectiles: ")
+                .formatted(Formatting.AQUA)
+                .append(Text.literal(String.valueOf(ProjectileSimulator.getActiveCount()))
+                        .formatted(Formatting.WHITE)),
+                false);
+        ctx.getSource().sendFeedback(() -> Text.literal("Casts rejected/coalesced/deferred: ")
+                .formatted(Formatting.AQUA)
+                .append(Text.literal(String.format("%d/%d/%d", CastRateLimiter.getRejectedCasts(),
+                        CastRateLimiter.getCoalescedCasts(), CastRateLimiter.getDeferredCasts()))
+                        .formatted(Formatting.WHITE)),
+                false);
+
+        return 1;
+    }
+
     // === RELOAD COMMAND IMPLEMENTATION ===
 
     private static int reloadRegistry(CommandContext<ServerCommandSource> ctx) {
-        try {
-            MagicRegistry.reload();
-            ctx.getSource().sendFeedback(() -> Text.literal("Reloaded spell and ritual registry")
-                    .formatted(Formatting.GREEN), true);
-            return 1;
-        } catch (Exception e) {
-            ctx.getSource().sendError(Text.literal("Failed to reload registry: " + e.getMessage()));
-            MAM.LOGGER.error("Failed to reload registry", e);
-            return 0;
-        }
+        ServerCommandSource source = ctx.getSource();
+        // Both reloads read files, keep them off the server thread
+        CompletableFuture.runAsync(ManaConfig::reload)
+                .thenCompose(v -> MagicRegistry.reload(source.getServer()))
+                .whenComplete((loaded, e) -> {
+                    if (e != null) {
+                        source.sendError(
+                                Text.literal("Failed to reload registry: " + e.getMessage()));
+                        MAM.LOGGER.error("Failed to reload registry", e);
+                    } else {
+                        SpellCastNetworkHandler.sendSpellIds(source.getServer());
+                        source.sendFeedback(() -> Text.literal(String.format(
+                                "Reloaded configuration and registry (files: %d reparsed, "
+                                        + "%d reused, %d removed)",
+                                loaded.parsedFiles(), loaded.reusedFiles(),
+                                loaded.removedFiles())).formatted(Formatting.GREEN), true);
+                    }
+                });
+        return 1;
     }
 }
@@ -2,6 +2,7 @@
 // ...existing code...
 package dk.mosberg.entity;
 
+import java.lang.ref.WeakReference;
 import java.util.UUID;
 import org.jetbrains.annotations.Nullable;
 import net.minecraft.entity.EntityType;
@@ -20,10 +21,31 @@ import net.minecraft.world.World;
 
 /**
  * Fire Elemental summoned entity. Fights for the summoner with fire-based attacks.
+ *
+ * <p>
+ * The owner is held through a weak reference that is dropped once the owner disconnects, dies or
+ * changes dimension, so the owner goals do not look the player up by UUID on every AI tick; while
+ * the owner is away the lookup is retried once per {@link #OWNER_LOOKUP_INTERVAL} ticks. Goals are
+ * also ticked at a lower rate the further the elemental is from the nearest player, unless its
+ * owner is within {@link #OWNER_DISTANCE} or it is fighting, so combat keeps vanilla timing.
  */
 public class FireElementalEntity extends PathAwareEntity {
+    private static final int OWNER_LOOKUP_INTERVAL = 20;
+
+    // AI level of detail: goal ticks are spread out beyond these distances to the nearest player,
+    // but never while the owner is within OWNER_DISTANCE
+    private static final int LOD_CHECK_INTERVAL = 20;
+    private static final double OWNER_DISTANCE = 64.0;
+    private static final double NEAR_DISTANCE = 32.0;
+    private static final double MID_DISTANCE = 64.0;
+    private static final int MID_AI_INTERVAL = 4;
+    private static final int FAR_AI_INTERVAL = 16;
+
     @Nullable
     private UUID ownerUuid;
+    private WeakReference<PlayerEntity> cachedOwner = new WeakReference<>(null);
+    private int nextOwnerLookup;
+    private int aiInterval = 1;
     private int lifetime = 600; // 30 seconds (20 ticks per second)
 
     public FireElementalEntity(EntityType<? extends PathAwareEntity> entityType, World world) {
@@ -40,31 +62,76 @@ public class FireElementalEntity extends PathAwareEntity {
 
     @Override
     protected void initGoals() {
+        // Swimming is never throttled, the elemental must not drown while nobody is near
         this.goalSelector.add(1, new SwimGoal(this));
-        this.goalSelector.add(2, new MeleeAttackGoal(this, 1.0, false));
-        this.goalSelector.add(3, new FollowOwnerGoal(this));
-        this.goalSelector.add(4, new WanderAroundFarGoal(this, 0.8));
-        this.goalSelector.add(5, new LookAtEntityGoal(this, PlayerEntity.class, 8.0F));
-        this.goalSelector.add(6, new LookAroundGoal(this));
-
-        this.targetSelector.add(1, new TrackOwnerAttackerGoal(this));
-        this.targetSelector.add(2, new AttackWithOwnerGoal(this));
-        this.targetSelector.add(3, new RevengeGoal(this));
+        this.goalSelector.add(2, new LodGoal(this, new MeleeAttackGoal(this, 1.0, false)));
+        this.goalSelector.add(3, new LodGoal(this, new FollowOwnerGoal(this)));
+        this.goalSelector.add(4, new LodGoal(this, new WanderAroundFarGoal(this, 0.8)));
+        this.goalSelector.add(5,
+                new LodGoal(this, new LookAtEntityGoal(this, PlayerEntity.class, 8.0F)));
+        this.goalSelector.add(6, new LodGoal(this, new LookAroundGoal(this)));
+
+        this.targetSelector.add(1, new LodGoal(this, new TrackOwnerAttackerGoal(this)));
+        this.targetSelector.add(2, new LodGoal(this, new AttackWithOwnerGoal(this)));
+        this.targetSelector.add(3, new LodGoal(this, new RevengeGoal(this)));
     }
 
     public void setOwner(@Nullable PlayerEntity owner) {
         if (owner != null) {
             this.ownerUuid = owner.getUuid();
+            this.cachedOwner = new WeakReference<>(owner);
         }
     }
 
     @Nullable
     public PlayerEntity getOwner() {
         World world = this.getEntityWorld();
-        if (this.ownerUuid != null && world instanceof net.minecraft.server.world.ServerWorld) {
-            return ((net.minecraft.server.world.ServerWorld) world).getPlayerByUuid(this.ownerUuid);
+        if (this.ownerUuid == null || !(world instanceof net.minecraft.server.world.ServerWorld)) {
+            return null;
+        }
+
+        PlayerEntity owner = cachedOwner.get();
+        if (owner != null) {
+            // A disconnected or dead owner is removed, one that changed dimension is elsewhere
+            if (!owner.isRemoved() && owner.getEntityWorld() == world) {
+                return owner;
+            }
+            cachedOwner = new WeakReference<>(null);
+        }
+
+        // Look the owner up again, e.g. after a respawn or rejoin, but not on every call
+        if (this.age < nextOwnerLookup) {
+            return null;
+        }
+        nextOwnerLookup = this.age + OWNER_LOOKUP_INTERVAL;
+        owner = ((net.minecraft.server.world.ServerWorld) world).getPlayerByUuid(this.ownerUuid);
+        if (owner != null) {
+            cachedOwner = new WeakReference<>(owner);
+        }
+        return owner;
+    }
+
+    /**
+     * Check whether the throttled goals run on this tick. They always do while the elemental has a
+     * target or was attacked, so attacking and retaliating are never delayed.
+     */
+    boolean isAiTickDue() {
+        return aiInterval == 1 || this.getTarget() != null || this.getAttacker() != null
+                || (this.age + this.getId()) % aiInterval == 0;
+    }
+
+    private void updateAiInterval(World world) {
+        // The elemental follows and fights for its owner, so it keeps up with them at full rate
+        PlayerEntity owner = getOwner();
+        if (owner != null && this.squaredDistanceTo(owner) <= OWNER_DISTANCE * OWNER_DISTANCE) {
+            aiInterval = 1;
+        } else if (world.isPlayerInRange(this.getX(), this.getY(), this.getZ(), NEAR_DISTANCE)) {
+            aiInterval = 1;
+        } else if (world.isPlayerInRange(this.getX(), this.getY(), this.getZ(), MID_DISTANCE)) {
+            aiInterval = MID_AI_INTERVAL;
+        } else {
+            aiInterval = FAR_AI_INTERVAL;
         }
-        return null;
     }
 
     @Override
@@ -75,6 +142,11 @@ public class FireElementalEntity extends PathAwareEntity {
 
         // Countdown lifetime (server-side only)
         if (world instanceof net.minecraft.server.world.ServerWorld) {
+            // Staggered by entity id so summons spawned together do not all check on one tick
+            if ((this.age + this.getId()) % LOD_CHECK_INTERVAL == 0) {
+                updateAiInterval(world);
+            }
+
             lifetime--;
             if (lifetime <= 0) {
                 this.discard();
@@ -87,6 +159,59 @@ public class FireElementalEntity extends PathAwareEntity {
     // Fire elementals are immune to fire damage
     // Override damage handling if needed
 
+    /**
+     * Goal wrapper for AI level of detail. The wrapped goal only starts, and only ticks while
+     * running, on ticks the elemental's AI is due, which is every tick in combat; continuing and
+     * stopping are not throttled.
+     */
+    private static class LodGoal extends Goal {
+        private final FireElementalEntity elemental;
+        private final Goal goal;
+
+        LodGoal(FireElementalEntity elemental, Goal goal) {
+            this.elemental = elemental;
+            this.goal = goal;
+            this.setControls(goal.getControls());
+        }
+
+        @Override
+        public boolean canStart() {
+            return elemental.isAiTickDue() && goal.canStart();
+        }
+
+        @Override
+        public boolean shouldContinue() {
+            return goal.shouldContinue();
+        }
+
+        @Override
+        public boolean canStop() {
+            return goal.canStop();
+        }
+
+        @Override
+        public void start() {
+            goal.start();
+        }
+
+        @Override
+        public void stop() {
+            goal.stop();
+        }
+
+        @Override
+        public boolean shouldRunEveryTick() {
+            return goal.shouldRunEveryTick();
+        }
+
+        @Override
+        public void tick() {
+            if (elemental.isAiTickDue()) {
+                goal.tick();
+            }
+        }
+    }
+
     /**
      * Custom AI goal to follow the summoner.
      */
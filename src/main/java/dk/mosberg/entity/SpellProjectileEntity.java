@@ -1,8 +1,9 @@
 package dk.mosberg.entity;
 
 import dk.mosberg.MAM;
+import dk.mosberg.network.ParticleBatcher;
 import dk.mosberg.spell.Spell;
-import dk.mosberg.spell.StatusEffectData;
+import dk.mosberg.spell.SpellPlan;
 import net.minecraft.entity.EntityType;
 import net.minecraft.entity.LivingEntity;
 import net.minecraft.entity.projectile.thrown.ThrownItemEntity;
@@ -34,18 +35,9 @@ public class SpellProjectileEntity extends ThrownItemEntity {
     public void setSpell(Spell spell) {
         this.spell = spell;
 
-        // Set particle type based on spell school
+        // Impact particle resolved from the spell school at load time
         if (spell != null) {
-            this.particleType = switch (spell.getSchool()) {
-                case FIRE -> ParticleTypes.FLAME;
-                case ICE -> ParticleTypes.SNOWFLAKE;
-                case NATURE -> ParticleTypes.HAPPY_VILLAGER;
-                case DARK -> ParticleTypes.SMOKE;
-                case LIGHT -> ParticleTypes.END_ROD;
-                case THUNDER -> ParticleTypes.ELECTRIC_SPARK;
-                case WATER -> ParticleTypes.DRIPPING_WATER;
-                default -> ParticleTypes.WITCH;
-            };
+            this.particleType = spell.getPlan().getImpactParticle();
         }
     }
 
@@ -92,18 +84,10 @@ public class SpellProjectileEntity extends ThrownItemEntity {
         // Apply spell effects to hit entity
         if (entityHitResult.getEntity() instanceof LivingEntity target) {
             ServerWorld world = (ServerWorld) this.getEntityWorld();
+            SpellPlan plan = spell.getPlan();
 
-            // Apply damage
-            if (spell.getDamage() > 0) {
-                target.damage(world, this.getDamageSources().magic(), (float) spell.getDamage());
-            }
-
-            // Apply status effects
-            if (spell.getStatusEffects() != null) {
-                for (StatusEffectData effectData : spell.getStatusEffects()) {
-                    applyStatusEffect(target, effectData);
-                }
-            }
+            // Apply damage and status effects
+            plan.applyHit(world, this.getDamageSources().magic(), target);
 
             MAM.LOGGER.debug("Spell projectile hit {}, applied {} damage",
                     target.getName().getString(), spell.getDamage());
@@ -118,10 +102,10 @@ public class SpellProjectileEntity extends ThrownItemEntity {
         super.onCollision(hitResult);
 
         if (!this.getEntityWorld().isClient()) {
-            // Create particle effect on impact
+            // Create particle effect on impact, sent with the other particles of this tick
             ServerWorld world = (ServerWorld) this.getEntityWorld();
-            world.spawnParticles(particleType, this.getX(), this.getY(), this.getZ(), 10, 0.3, 0.3,
-                    0.3, 0.1);
+            ParticleBatcher.emit(world, particleType, this.getX(), this.getY(), this.getZ(), 10,
+                    0.3, 0.3, 0.3, 0.1);
 
             this.discard();
         }
@@ -133,54 +117,4 @@ public class SpellProjectileEntity extends ThrownItemEntity {
 
         // Particle trail handled by client rendering code
     }
-
-    /**
-     * Apply status effect to entity.
-     */
-    private void applyStatusEffect(LivingEntity entity, StatusEffectData effectData) {
-        try {
-            var effect = getStatusEffectFromString(effectData.getEffect());
-
-            if (effect != null) {
-                entity.addStatusEffect(new net.minecraft.entity.effect.StatusEffectInstance(effect,
-                        effectData.getDuration(), effectData.getAmplifier(), false, true, true));
-            }
-        } catch (Exception e) {
-            MAM.LOGGER.error("Failed to apply status effect: {}", effectData.getEffect(), e);
-        }
-    }
-
-    /**
-     * Convert effect string to StatusEffect registry entry.
-     */
-    private static net.minecraft.registry.entry.RegistryEntry<net.minecraft.entity.effect.StatusEffect> getStatusEffectFromString(
-            String effectName) {
-
-        return switch (effectName.toLowerCase()) {
-            case "fire", "burning" -> net.minecraft.registry.Registries.STATUS_EFFECT
-                    .getEntry(net.minecraft.util.Identifier.ofVanilla("wither")).orElse(null);
-            case "speed", "swiftness" -> net.minecraft.registry.Registries.STATUS_EFFECT
-                    .getEntry(net.minecraft.util.Identifier.ofVanilla("speed")).orElse(null);
-            case "strength" -> net.minecraft.registry.Registries.STATUS_EFFECT
-                    .getEntry(net.minecraft.util.Identifier.ofVanilla("strength")).orElse(null);
-            case "regeneration", "regen" -> net.minecraft.registry.Registries.STATUS_EFFECT
-                    .getEntry(net.minecraft.util.Identifier.ofVanilla("regeneration")).orElse(null);
-            case "poison" -> net.minecraft.registry.Registries.STATUS_EFFECT
-                    .getEntry(net.minecraft.util.Identifier.ofVanilla("poison")).orElse(null);
-            case "weakness" -> net.minecraft.registry.Registries.STATUS_EFFECT
-                    .getEntry(net.minecraft.util.Identifier.ofVanilla("weakness")).orElse(null);
-            case "slowness", "slow" -> net.minecraft.registry.Registries.STATUS_EFFECT
-                    .getEntry(net.minecraft.util.Identifier.ofVanilla("slowness")).orElse(null);
-            default -> {
-                try {
-                    net.minecraft.util.Identifier id =
-                            effectName.contains(":") ? net.minecraft.util.Identifier.of(effectName)
-                                    : net.minecraft.util.Identifier.ofVanilla(effectName);
-                    yield net.minecraft.registry.Registries.STATUS_EFFECT.getEntry(id).orElse(null);
-                } catch (Exception e) {
-                    yield null;
-                }
-            }
-        };
-    }
 }
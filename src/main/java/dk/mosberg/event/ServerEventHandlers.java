@@ -1,68 +1,136 @@
 package dk.mosberg.event;
 
 import dk.mosberg.MAM;
-import dk.mosberg.mana.ManaComponent;
 import dk.mosberg.mana.ManaManager;
+import dk.mosberg.mana.ManaPersistence;
+import dk.mosberg.network.CastRateLimiter;
 import dk.mosberg.network.ManaNetworkHandler;
+import dk.mosberg.network.ManaSyncScheduler;
+import dk.mosberg.network.ParticleBatcher;
+import dk.mosberg.network.SpellCastNetworkHandler;
+import dk.mosberg.spell.AoeResolver;
+import dk.mosberg.spell.ProjectileSimulator;
+import dk.mosberg.spell.SpellCastScheduler;
+import dk.mosberg.spell.SpellCaster;
+import net.fabricmc.fabric.api.entity.event.v1.ServerLivingEntityEvents;
 import net.fabricmc.fabric.api.entity.event.v1.ServerPlayerEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.minecraft.server.network.ServerPlayerEntity;
 
 /**
- * Registers server-side event handlers for the mod. Handles player join/leave events and server
- * ticking for mana regeneration.
+ * Registers server-side event handlers for the mod. Handles server lifecycle, player
+ * join/disconnect/respawn events and server ticking for mana regeneration and sync.
  */
 public class ServerEventHandlers {
-    private static int tickCounter = 0;
-    private static final int SYNC_INTERVAL = 20; // Sync every 20 ticks (1 second)
-
     /**
      * Register all server event handlers.
      */
     public static void register() {
-        // Player join event - initialize mana component
-        ServerPlayerEvents.AFTER_RESPAWN.register((oldPlayer, newPlayer, alive) -> {
-            if (alive) {
-                // Transfer mana data on respawn
-                // Data is automatically transferred through UUID lookup
-                ManaManager.getComponent(newPlayer); // Ensure component exists
+        // Server start - open the world's mana save
+        ServerLifecycleEvents.SERVER_STARTED.register(ManaPersistence::open);
 
-                // Send initial mana sync to client
-                ManaNetworkHandler.sendManaUpdate(newPlayer);
+        // Data pack reload - the spell registry was rebuilt, resend the spell id table
+        ServerLifecycleEvents.END_DATA_PACK_RELOAD.register((server, resourceManager, success) -> {
+            if (success) {
+                SpellCastNetworkHandler.sendSpellIds(server);
+            }
+        });
 
-                MAM.LOGGER.debug("Player {} respawned, mana component restored",
-                        newPlayer.getName().getString());
+        // Server stop - write all mana and drop the components
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> {
+            ManaPersistence.close();
+            ManaManager.clear();
+            ManaSyncScheduler.clear();
+            CastRateLimiter.clear();
+            SpellCastScheduler.clear();
+            AoeResolver.clear();
+            ProjectileSimulator.clear();
+            ParticleBatcher.clear();
+        });
+
+        // Player join - send the spell id table, then resume a cached component or restore saved
+        // mana off-thread and send a full sync
+        ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> {
+            ServerPlayerEntity player = handler.getPlayer();
+            SpellCastNetworkHandler.sendSpellIds(player);
+            if (ManaManager.onJoin(player)) {
+                ManaNetworkHandler.sendManaUpdate(player);
+                return;
             }
+            ManaPersistence.load(player, server).thenRun(() -> {
+                if (server.getPlayerManager().getPlayer(player.getUuid()) == player) {
+                    ManaNetworkHandler.sendManaUpdate(player);
+                }
+            });
         });
 
-        // Player disconnect event - cleanup mana component
-        ServerPlayerEvents.AFTER_RESPAWN.register((oldPlayer, newPlayer, alive) -> {
-            if (!alive) {
-                ManaManager.removeComponent(oldPlayer.getUuid());
-                MAM.LOGGER.debug("Player {} disconnected, mana component removed",
-                        oldPlayer.getName().getString());
+        // Player disconnect - move the component to the offline cache
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
+            ServerPlayerEntity player = handler.getPlayer();
+            ManaManager.onDisconnect(player.getUuid());
+            ManaSyncScheduler.forget(player.getUuid());
+            CastRateLimiter.forget(player.getUuid());
+            SpellCastScheduler.interrupt(player.getUuid());
+            MAM.LOGGER.debug("Player {} disconnected, mana component cached",
+                    player.getName().getString());
+        });
+
+        // Taking damage breaks a channelled cast
+        ServerLivingEntityEvents.AFTER_DAMAGE
+                .register((entity, source, baseDamageTaken, damageTaken, blocked) -> {
+                    if (entity instanceof ServerPlayerEntity player && damageTaken > 0) {
+                        SpellCaster.interruptCast(player);
+                    }
+                });
+
+        // Player death - drop the channelled cast
+        ServerLivingEntityEvents.AFTER_DEATH.register((entity, source) -> {
+            if (entity instanceof ServerPlayerEntity player) {
+                SpellCastScheduler.interrupt(player.getUuid());
             }
         });
 
-        // Server tick event - regenerate mana for all players
+        // Player respawn - rebind the component to the new player entity
+        ServerPlayerEvents.AFTER_RESPAWN.register((oldPlayer, newPlayer, alive) -> {
+            ManaManager.getComponent(newPlayer).bind(newPlayer);
+
+            // Resend everything, the client state was reset with the old entity
+            ManaNetworkHandler.sendManaUpdate(newPlayer);
+
+            MAM.LOGGER.debug("Player {} respawned, mana component restored",
+                    newPlayer.getName().getString());
+        });
+
+        // Server tick event - advance the mana clock and sync clients
         ServerTickEvents.END_SERVER_TICK.register(server -> {
-            tickCounter++;
+            // Regeneration is applied lazily against the mana clock
+            ManaManager.advanceTick();
 
-            // Tick mana regeneration for all online players
-            for (ServerPlayerEntity player : server.getPlayerManager().getPlayerList()) {
-                ManaComponent mana = ManaManager.getComponent(player);
-                mana.tick();
+            // Resolve finished channels and expire cooldowns
+            SpellCastScheduler.tick();
 
-                // Send periodic mana sync to client
-                if (tickCounter >= SYNC_INTERVAL) {
-                    ManaNetworkHandler.sendManaUpdate(player);
-                }
-            }
+            // Execute admitted spell casts within the per-tick budget
+            SpellCastNetworkHandler.tick(server);
 
-            // Reset counter
-            if (tickCounter >= SYNC_INTERVAL) {
-                tickCounter = 0;
-            }
+            // Resolve the area effects queued this tick, one entity sweep per overlapping group
+            AoeResolver.tick();
+
+            // Move simulated projectiles and send this tick's spawns and impacts
+            ProjectileSimulator.tickAll();
+
+            // Send this tick's spell and ritual particles, one bundle per player
+            ParticleBatcher.flush();
+
+            // Push changed mana to clients, rate limited per player
+            ManaSyncScheduler.tick(server);
+
+            // Write changed mana behind in batches
+            ManaPersistence.tick();
+
+            // Drop offline components past their TTL
+            ManaManager.evictExpired();
         });
 
         MAM.LOGGER.info("Registered server event handlers");
@@ -43,7 +43,8 @@ public class MagicWandItem extends Item {
         }
 
         // Get the first spell of the wand's school
-        Spell spell = MagicRegistry.getSpellsBySchool(school).stream().findFirst().orElse(null);
+        List<Spell> spells = MagicRegistry.getSpellsBySchool(school);
+        Spell spell = spells.isEmpty() ? null : spells.get(0);
 
         if (spell == null) {
             player.sendMessage(Text.literal("No spells available for " + school.getDisplayName())
@@ -55,7 +56,8 @@ public class MagicWandItem extends Item {
         ManaComponent mana = ManaManager.getComponent(player);
         double manaCost = spell.getManaCost() * tier.getManaCostMultiplier();
 
-        if (!mana.getPool(dk.mosberg.mana.ManaPoolType.PERSONAL).has(manaCost)) {
+        if (mana.getAvailable(dk.mosberg.spell.ManaCostPolicy.getOrder(spell.getSchool(),
+                spell.getCastType())) < manaCost) {
             player.sendMessage(Text.literal("Not enough mana!").formatted(Formatting.RED), true);
             return ActionResult.FAIL;
         }
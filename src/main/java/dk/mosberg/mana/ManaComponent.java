@@ -1,29 +1,137 @@
 package dk.mosberg.mana;
 
+import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.Map;
+import java.util.UUID;
 import dk.mosberg.MAM;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.server.network.ServerPlayerEntity;
 
 /**
  * Thread-safe component that stores mana data for a player. This is attached to players and
- * persists across sessions via NBT.
+ * persists across sessions via NBT. Pool values live in the shared {@link ManaStore}; the component
+ * only owns a slot there and one pool view per type.
+ *
+ * <p>
+ * Pool operations are lock-free compare-and-set updates, so mana can be read and spent from any
+ * thread. Debits spanning several pools go through {@link #tryConsumeAll(double[])} or a
+ * {@link ManaTransaction}.
+ *
+ * <p>
+ * A component outlives the player entity it is attached to: it is rebound on respawn and detached
+ * on disconnect, after which it may sit in the offline cache of {@link ManaManager} with its pools
+ * frozen until the player returns or it is evicted.
+ *
+ * <p>
+ * A component created for a joining player is loading until {@link ManaPersistence} has looked up
+ * the saved mana: nothing can be spent from it and it is not saved, so neither a cast nor a save
+ * made with the default pools survives the restore.
  */
 public class ManaComponent {
-    private final EnumMap<ManaPoolType, ManaPool> pools = new EnumMap<>(ManaPoolType.class);
-    private final ServerPlayerEntity player;
+    /** Fixed-point scale of synced pool values (tenths of a mana point). */
+    public static final int SYNC_SCALE = 10;
+    private static final int ALL_SYNC_BITS = (1 << (ManaStore.POOL_COUNT * 2)) - 1;
+
+    private final ManaPool[] pools = new ManaPool[ManaStore.POOL_COUNT];
+    private final int[] lastSynced = new int[ManaStore.POOL_COUNT * 2];
+    private final UUID playerId;
+    private volatile ServerPlayerEntity player;
+    private final ManaStore store;
+    private final int slot;
+    private volatile boolean loading;
+    private boolean released;
 
     public ManaComponent(ServerPlayerEntity player) {
+        this(player, ManaManager.getStore());
+    }
+
+    ManaComponent(ServerPlayerEntity player, ManaStore store) {
         if (player == null) {
             throw new IllegalArgumentException("Player cannot be null");
         }
+        this.playerId = player.getUuid();
         this.player = player;
+        this.store = store;
+        this.slot = store.allocate();
 
-        // Initialize all pool types
+        // Initialize all pool views
         for (ManaPoolType type : ManaPoolType.values()) {
-            pools.put(type, new ManaPool(type));
+            pools[type.ordinal()] = new ManaPool(store, slot, type);
+        }
+        Arrays.fill(lastSynced, -1);
+    }
+
+    /**
+     * Bind this component to a player entity, e.g. the new entity created on respawn.
+     *
+     * @param player The player entity
+     * @throws IllegalArgumentException if the player is null or a different player
+     */
+    public void bind(ServerPlayerEntity player) {
+        if (player == null || !player.getUuid().equals(playerId)) {
+            throw new IllegalArgumentException("Player must be the component's owner");
+        }
+        this.player = player;
+    }
+
+    /**
+     * Detach from the player entity on disconnect. Pools are frozen: they leave the active regen set
+     * and do not regenerate while offline, but can still be read and written, e.g. by a refund or
+     * a restore that completes after the player left.
+     */
+    synchronized void detach() {
+        store.freeze(slot);
+        player = null;
+    }
+
+    /**
+     * Reattach to a returning player. Time spent offline is skipped rather than regenerated.
+     *
+     * @param player The player entity
+     */
+    synchronized void attach(ServerPlayerEntity player) {
+        bind(player);
+        store.thaw(slot);
+    }
+
+    /**
+     * Release this component's storage slot. The component must not be used afterwards.
+     */
+    synchronized void release() {
+        released = true;
+        store.release(slot);
+    }
+
+    /**
+     * Hold spending and saving until {@link #finishLoading(double[])} applies the saved mana.
+     */
+    void startLoading() {
+        loading = true;
+    }
+
+    /**
+     * Apply the saved mana looked up for a joining player and allow spending again. Does nothing if
+     * the component is not loading, e.g. when a second lookup for it completes.
+     *
+     * @param values {@code current, max} pairs by pool ordinal, or null to keep the defaults
+     */
+    synchronized void finishLoading(double[] values) {
+        if (!loading) {
+            return;
         }
+        if (values != null && !released) {
+            restore(values);
+        }
+        loading = false;
+    }
+
+    /**
+     * Check whether the saved mana of the player is still being loaded. No mana can be spent until
+     * it is.
+     */
+    public boolean isLoading() {
+        return loading;
     }
 
     /**
@@ -37,7 +145,7 @@ public class ManaComponent {
         if (type == null) {
             throw new IllegalArgumentException("Pool type cannot be null");
         }
-        return pools.get(type);
+        return pools[type.ordinal()];
     }
 
     /**
@@ -48,11 +156,148 @@ public class ManaComponent {
      * @return true if mana was consumed, false if insufficient mana
      */
     public boolean consume(ManaPoolType type, double amount) {
+        return tryConsume(type, amount);
+    }
+
+    /**
+     * Atomically check and consume mana from a specific pool.
+     *
+     * @param type The pool type
+     * @param amount The amount to consume
+     * @return true if mana was consumed, false if insufficient mana
+     */
+    public boolean tryConsume(ManaPoolType type, double amount) {
         if (type == null || amount < 0) {
             MAM.LOGGER.warn("Invalid consume request: type={}, amount={}", type, amount);
             return false;
         }
-        return pools.get(type).consume(amount);
+        if (loading) {
+            return false;
+        }
+        return pools[type.ordinal()].tryConsume(amount);
+    }
+
+    /**
+     * Consume from several pools all-or-nothing. Pools are debited in ordinal order; if one lacks
+     * mana, the debits already made are refunded and nothing is consumed. A refund can only be
+     * clamped by max if the pool regenerated to full in the meantime, where it would have ended up
+     * full anyway.
+     *
+     * @param amounts Amount to consume per pool ordinal, length {@code POOL_COUNT}
+     * @return true if every amount was consumed, false if nothing was
+     */
+    public boolean tryConsumeAll(double[] amounts) {
+        if (amounts == null || amounts.length != pools.length) {
+            throw new IllegalArgumentException("Amounts must have one entry per pool type");
+        }
+        if (loading) {
+            return false;
+        }
+        for (int p = 0; p < pools.length; p++) {
+            if (amounts[p] > 0 && !pools[p].tryConsume(amounts[p])) {
+                // Roll back the debits made so far
+                for (int q = 0; q < p; q++) {
+                    if (amounts[q] > 0) {
+                        pools[q].add(amounts[q]);
+                    }
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the mana available across the given pools.
+     *
+     * @param order Pool types to sum
+     * @return Sum of their current mana
+     */
+    public double getAvailable(ManaPoolType[] order) {
+        double total = 0.0;
+        for (ManaPoolType type : order) {
+            total += pools[type.ordinal()].getCurrent();
+        }
+        return total;
+    }
+
+    /**
+     * Consume {@code amount} across pools in cascade order: each pool gives what it has and the
+     * rest spills over to the next. All-or-nothing: if the pools together hold too little, every
+     * partial debit is refunded. Allocation-free.
+     *
+     * @param order Pool types in spill order, without duplicates
+     * @param amount The amount to consume
+     * @param taken Optional output receiving the amount taken per pool ordinal, or null
+     * @return true if the full amount was consumed
+     */
+    public boolean tryConsumeCascade(ManaPoolType[] order, double amount, double[] taken) {
+        if (taken != null) {
+            Arrays.fill(taken, 0.0);
+        }
+        if (amount <= 0) {
+            return amount == 0;
+        }
+        // Cheap pre-check so clearly unaffordable casts touch no pool
+        if (loading || getAvailable(order) < amount) {
+            return false;
+        }
+        return cascade(order, 0, amount, taken);
+    }
+
+    private boolean cascade(ManaPoolType[] order, int i, double remaining, double[] taken) {
+        if (i == order.length) {
+            return false;
+        }
+        ManaPool pool = pools[order[i].ordinal()];
+        double got = pool.tryConsumeUpTo(remaining);
+        if (got >= remaining || cascade(order, i + 1, remaining - got, taken)) {
+            if (taken != null) {
+                taken[order[i].ordinal()] = got;
+            }
+            return true;
+        }
+        // A concurrent debit left the later pools short; undo this one on the way back
+        if (got > 0) {
+            pool.add(got);
+        }
+        return false;
+    }
+
+    /**
+     * Give back amounts taken by {@link #tryConsumeCascade(ManaPoolType[], double, double[])}.
+     *
+     * @param taken Amount per pool ordinal
+     */
+    public void refund(double[] taken) {
+        for (int p = 0; p < pools.length; p++) {
+            if (taken[p] > 0) {
+                pools[p].add(taken[p]);
+            }
+        }
+    }
+
+    /**
+     * Move mana from one pool to another. The source is debited atomically; whatever the
+     * destination cannot hold is refunded to the source.
+     *
+     * @param from Source pool type
+     * @param to Destination pool type
+     * @param amount Amount to move (must be >= 0)
+     * @return Amount actually moved, 0 if the source had insufficient mana
+     */
+    public double transfer(ManaPoolType from, ManaPoolType to, double amount) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Pool type cannot be null");
+        }
+        if (amount <= 0 || from == to || loading || !pools[from.ordinal()].tryConsume(amount)) {
+            return 0.0;
+        }
+        double moved = pools[to.ordinal()].add(amount);
+        if (moved < amount) {
+            pools[from.ordinal()].add(amount - moved);
+        }
+        return moved;
     }
 
     /**
@@ -69,7 +314,7 @@ public class ManaComponent {
             MAM.LOGGER.warn("Cannot add negative mana: {}", amount);
             return;
         }
-        pools.get(type).add(amount);
+        pools[type.ordinal()].add(amount);
     }
 
     /**
@@ -83,15 +328,89 @@ public class ManaComponent {
         if (type == null) {
             return false;
         }
-        return pools.get(type).has(amount);
+        return pools[type.ordinal()].has(amount);
     }
 
     /**
-     * Regenerate all mana pools. Should be called every tick for the player.
+     * Check whether a pool was explicitly changed (consumed, set, refunded...) since the last sync
+     * and should be pushed to the client without waiting for the regen heartbeat.
      */
-    public void tick() {
-        for (ManaPool pool : pools.values()) {
-            pool.regenerate();
+    public boolean isSyncPending() {
+        return (store.peekDirty(slot) & ManaStore.SYNC_URGENT) != 0;
+    }
+
+    /**
+     * Collect the pool values that changed visibly since the last sync. Values are quantised to
+     * {@code 1 / SYNC_SCALE}; bit {@code ordinal} of the returned mask flags a current value and bit
+     * {@code POOL_COUNT + ordinal} a max value, and {@code quantized} receives each included value
+     * at its bit position.
+     *
+     * @param quantized Output array of length {@code 2 * POOL_COUNT}
+     * @param full Whether to include every value regardless of what changed
+     * @return Mask of included values, or 0 if nothing visible changed
+     */
+    public synchronized int pollSyncDelta(int[] quantized, boolean full) {
+        int mask = store.takeDirty(slot, ALL_SYNC_BITS | ManaStore.SYNC_URGENT) & ALL_SYNC_BITS;
+        if (full) {
+            mask = ALL_SYNC_BITS;
+        }
+
+        for (ManaPool pool : pools) {
+            int ordinal = pool.getType().ordinal();
+            mask = quantizeIfChanged(mask, ordinal, pool.getCurrent(), quantized, full);
+            mask = quantizeIfChanged(mask, ManaStore.POOL_COUNT + ordinal, pool.getMax(), quantized,
+                    full);
+        }
+        return mask;
+    }
+
+    private int quantizeIfChanged(int mask, int bit, double value, int[] quantized, boolean full) {
+        if ((mask & (1 << bit)) == 0) {
+            return mask;
+        }
+        int q = (int) Math.round(value * SYNC_SCALE);
+        if (!full && q == lastSynced[bit]) {
+            return mask & ~(1 << bit);
+        }
+        lastSynced[bit] = q;
+        quantized[bit] = q;
+        return mask;
+    }
+
+    /**
+     * Copy the pool values into {@code out} as {@code current, max} pairs by pool ordinal, if they
+     * changed since the last snapshot.
+     *
+     * @param out Output array of length {@code 2 * POOL_COUNT}
+     * @param force Whether to take the snapshot even if nothing changed
+     * @return true if {@code out} was filled, never while loading
+     */
+    synchronized boolean snapshot(double[] out, boolean force) {
+        if (loading) {
+            return false;
+        }
+        boolean changed = store.takeDirty(slot, ManaStore.PERSIST_DIRTY) != 0;
+        if (!changed && !force) {
+            return false;
+        }
+        for (ManaPool pool : pools) {
+            int i = pool.getType().ordinal() * 2;
+            out[i] = pool.getCurrent();
+            out[i + 1] = pool.getMax();
+        }
+        return true;
+    }
+
+    /**
+     * Restore pool values from a snapshot taken by {@link #snapshot(double[], boolean)}.
+     *
+     * @param values {@code current, max} pairs by pool ordinal
+     */
+    synchronized void restore(double[] values) {
+        for (ManaPool pool : pools) {
+            int i = pool.getType().ordinal() * 2;
+            pool.setMax(values[i + 1]);
+            pool.set(Math.min(values[i], values[i + 1]));
         }
     }
 
@@ -109,9 +428,8 @@ public class ManaComponent {
         try {
             NbtCompound manaData = new NbtCompound();
 
-            for (Map.Entry<ManaPoolType, ManaPool> entry : pools.entrySet()) {
-                ManaPoolType type = entry.getKey();
-                ManaPool pool = entry.getValue();
+            for (ManaPool pool : pools) {
+                ManaPoolType type = pool.getType();
 
                 NbtCompound poolData = new NbtCompound();
                 poolData.putDouble("current", pool.getCurrent());
@@ -121,10 +439,9 @@ public class ManaComponent {
             }
 
             nbt.put("mana", manaData);
-            MAM.LOGGER.trace("Wrote mana data for player: {}", player.getName().getString());
+            MAM.LOGGER.trace("Wrote mana data for player: {}", playerId);
         } catch (Exception e) {
-            MAM.LOGGER.error("Failed to write mana NBT for player: {}",
-                    player.getName().getString(), e);
+            MAM.LOGGER.error("Failed to write mana NBT for player: {}", playerId, e);
         }
     }
 
@@ -147,7 +464,7 @@ public class ManaComponent {
                     if (manaData.contains(type.getId())) {
                         NbtCompound poolData =
                                 manaData.getCompound(type.getId()).orElse(new NbtCompound());
-                        ManaPool pool = pools.get(type);
+                        ManaPool pool = pools[type.ordinal()];
 
                         double max = poolData.contains("max")
                                 ? poolData.getDouble("max").orElse(type.getMaxPool())
@@ -161,33 +478,44 @@ public class ManaComponent {
                     }
                 }
 
-                MAM.LOGGER.trace("Read mana data for player: {}", player.getName().getString());
+                MAM.LOGGER.trace("Read mana data for player: {}", playerId);
             } else {
-                MAM.LOGGER.debug("No mana data found for player: {}, using defaults",
-                        player.getName().getString());
+                MAM.LOGGER.debug("No mana data found for player: {}, using defaults", playerId);
             }
         } catch (Exception e) {
-            MAM.LOGGER.error("Failed to read mana NBT for player: {}", player.getName().getString(),
-                    e);
+            MAM.LOGGER.error("Failed to read mana NBT for player: {}", playerId, e);
         }
     }
 
     /**
      * Get the player this component is attached to.
      *
-     * @return The server player entity, never null
+     * @return The server player entity, or null while the player is offline
      */
     public ServerPlayerEntity getPlayer() {
         return player;
     }
 
+    /**
+     * Get the UUID of the player owning this component.
+     *
+     * @return The player UUID, never null
+     */
+    public UUID getPlayerUuid() {
+        return playerId;
+    }
+
     /**
      * Get all mana pools.
      *
      * @return Immutable copy of all mana pools
      */
     public Map<ManaPoolType, ManaPool> getAllPools() {
-        return Map.copyOf(pools);
+        EnumMap<ManaPoolType, ManaPool> all = new EnumMap<>(ManaPoolType.class);
+        for (ManaPool pool : pools) {
+            all.put(pool.getType(), pool);
+        }
+        return Map.copyOf(all);
     }
 
     /**
@@ -199,20 +527,19 @@ public class ManaComponent {
         if (type == null) {
             throw new IllegalArgumentException("Pool type cannot be null");
         }
-        ManaPool pool = pools.get(type);
+        ManaPool pool = pools[type.ordinal()];
         pool.set(pool.getMax());
-        MAM.LOGGER.debug("Restored {} pool for player: {}", type.getId(),
-                player.getName().getString());
+        MAM.LOGGER.debug("Restored {} pool for player: {}", type.getId(), playerId);
     }
 
     /**
      * Restore all pools to their maximum.
      */
     public void restoreAllPools() {
-        for (ManaPool pool : pools.values()) {
+        for (ManaPool pool : pools) {
             pool.set(pool.getMax());
         }
-        MAM.LOGGER.debug("Restored all mana pools for player: {}", player.getName().getString());
+        MAM.LOGGER.debug("Restored all mana pools for player: {}", playerId);
     }
 
     /**
@@ -221,7 +548,11 @@ public class ManaComponent {
      * @return Sum of current mana in all pools
      */
     public double getTotalMana() {
-        return pools.values().stream().mapToDouble(ManaPool::getCurrent).sum();
+        double total = 0.0;
+        for (ManaPool pool : pools) {
+            total += pool.getCurrent();
+        }
+        return total;
     }
 
     /**
@@ -230,6 +561,10 @@ public class ManaComponent {
      * @return Sum of max mana in all pools
      */
     public double getTotalMaxMana() {
-        return pools.values().stream().mapToDouble(ManaPool::getMax).sum();
+        double total = 0.0;
+        for (ManaPool pool : pools) {
+            total += pool.getMax();
+        }
+        return total;
     }
 }
@@ -1,87 +1,251 @@
 package dk.mosberg.mana;
 
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 import dk.mosberg.MAM;
 
 /**
  * Configuration for the mana system, loaded from mam.properties.
+ *
+ * <p>
+ * Values are parsed into an immutable {@link Snapshot} published through a single volatile
+ * reference, so readers always see one consistent configuration. When mam.properties exists in the
+ * run directory it is watched: edits are re-parsed on a background thread and swapped in
+ * atomically, and the mana store picks up changed regen rates and pool maximums on the next server
+ * tick.
  */
 public class ManaConfig {
-    private static final Properties properties = new Properties();
-    private static boolean loaded = false;
+    private static final String FILE_NAME = "mam.properties";
+    private static final long RELOAD_DEBOUNCE_MS = 200;
 
-    // Personal pool settings
-    private static double personalMaxPool = 1000.0;
-    private static double personalRegenRate = 0.5;
+    private static volatile Snapshot current = Snapshot.DEFAULTS;
+    private static Thread watcher;
 
-    // Aura pool settings
-    private static double auraMaxPool = 500.0;
-    private static double auraRegenRate = 0.2;
+    /**
+     * Immutable set of configuration values.
+     */
+    public record Snapshot(double personalMaxPool, double personalRegenRate, double auraMaxPool,
+            double auraRegenRate, double reserveMaxPool, double reserveRegenRate,
+            int syncMaxPacketsPerSecond, int syncHeartbeatTicks, int persistenceFlushTicks,
+            int offlineCacheSize, int offlineCacheTtlSeconds, double castRatePerSecond,
+            int castBurst, int castBudgetPerTick, int particleBudgetPerTick,
+            Map<String, String> properties) {
+
+        static final Snapshot DEFAULTS = new Snapshot(1000.0, 0.5, 500.0, 0.2, 3000.0, 0.05, 4, 100,
+                600, 64, 300, 5.0, 8, 64, 512, Map.of());
+
+        public Snapshot {
+            properties = Map.copyOf(properties);
+        }
 
-    // Reserve pool settings
-    private static double reserveMaxPool = 3000.0;
-    private static double reserveRegenRate = 0.05;
+        /**
+         * Get the configured maximum of a pool type.
+         */
+        public double maxPool(ManaPoolType type) {
+            return switch (type) {
+                case PERSONAL -> personalMaxPool;
+                case AURA -> auraMaxPool;
+                case RESERVE -> reserveMaxPool;
+            };
+        }
+
+        /**
+         * Get the configured regeneration rate (per tick) of a pool type.
+         */
+        public double regenRate(ManaPoolType type) {
+            return switch (type) {
+                case PERSONAL -> personalRegenRate;
+                case AURA -> auraRegenRate;
+                case RESERVE -> reserveRegenRate;
+            };
+        }
+
+        /**
+         * Get a raw configuration value.
+         *
+         * @param key The property key
+         * @return The trimmed value, or null if not set
+         */
+        public String getString(String key) {
+            String value = properties.get(key);
+            return value != null ? value.trim() : null;
+        }
+    }
 
     /**
-     * Load configuration from the properties file.
+     * Load configuration from the properties file and start watching it for changes.
      */
     public static void load() {
-        if (loaded)
-            return;
+        reload();
+        startWatcher();
+    }
+
+    /**
+     * Re-parse the properties file and publish the result. Safe to call from any thread.
+     */
+    public static void reload() {
+        current = parse();
+    }
+
+    /**
+     * Get the current configuration snapshot.
+     */
+    public static Snapshot get() {
+        return current;
+    }
 
+    private static Snapshot parse() {
+        Properties properties = new Properties();
         try {
             // Try to load from run directory
-            Path configPath = Paths.get("mam.properties");
+            Path configPath = Paths.get(FILE_NAME);
 
             // If not found, try to load from resources
             InputStream input;
             if (Files.exists(configPath)) {
-                input = new FileInputStream(configPath.toFile());
+                input = Files.newInputStream(configPath);
                 MAM.LOGGER.info("Loading mana configuration from: {}", configPath.toAbsolutePath());
             } else {
-                input = ManaConfig.class.getClassLoader().getResourceAsStream("mam.properties");
+                input = ManaConfig.class.getClassLoader().getResourceAsStream(FILE_NAME);
                 MAM.LOGGER.info("Loading mana configuration from resources");
             }
 
-            if (input != null) {
+            if (input == null) {
+                MAM.LOGGER.warn("Could not find mam.properties, using defaults");
+                return Snapshot.DEFAULTS;
+            }
+            try (input) {
                 properties.load(input);
-                input.close();
+            }
+        } catch (IOException e) {
+            MAM.LOGGER.error("Failed to load mana configuration", e);
+            return current; // Keep the last good configuration
+        }
+
+        Map<String, String> values = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            values.put(key, properties.getProperty(key));
+        }
 
-                // Load personal pool settings
-                personalMaxPool = getDouble("mana.personal.max_pool", 1000.0);
-                personalRegenRate = getDouble("mana.personal.regen_rate", 0.5);
+        Snapshot defaults = Snapshot.DEFAULTS;
+        Snapshot snapshot = new Snapshot(
+                // Pool settings
+                getDouble(properties, "mana.personal.max_pool", defaults.personalMaxPool()),
+                getDouble(properties, "mana.personal.regen_rate", defaults.personalRegenRate()),
+                getDouble(properties, "mana.aura.max_pool", defaults.auraMaxPool()),
+                getDouble(properties, "mana.aura.regen_rate", defaults.auraRegenRate()),
+                getDouble(properties, "mana.reserve.max_pool", defaults.reserveMaxPool()),
+                getDouble(properties, "mana.reserve.regen_rate", defaults.reserveRegenRate()),
+                // Client sync settings
+                Math.max(1, getInt(properties, "mana.sync.max_packets_per_second",
+                        defaults.syncMaxPacketsPerSecond())),
+                Math.max(1, getInt(properties, "mana.sync.heartbeat_ticks",
+                        defaults.syncHeartbeatTicks())),
+                // Persistence settings
+                Math.max(20, getInt(properties, "mana.persistence.flush_ticks",
+                        defaults.persistenceFlushTicks())),
+                Math.max(0, getInt(properties, "mana.offline_cache.max_size",
+                        defaults.offlineCacheSize())),
+                Math.max(0, getInt(properties, "mana.offline_cache.ttl_seconds",
+                        defaults.offlineCacheTtlSeconds())),
+                // Cast flood protection
+                Math.max(0.1, getDouble(properties, "spell.cast.rate_per_second",
+                        defaults.castRatePerSecond())),
+                Math.max(1, getInt(properties, "spell.cast.burst", defaults.castBurst())),
+                Math.max(1, getInt(properties, "spell.cast.budget_per_tick",
+                        defaults.castBudgetPerTick())),
+                // Particle batching
+                Math.max(0, getInt(properties, "particle.budget_per_tick",
+                        defaults.particleBudgetPerTick())),
+                values);
 
-                // Load aura pool settings
-                auraMaxPool = getDouble("mana.aura.max_pool", 500.0);
-                auraRegenRate = getDouble("mana.aura.regen_rate", 0.2);
+        MAM.LOGGER.info("Mana configuration loaded successfully");
+        return snapshot;
+    }
 
-                // Load reserve pool settings
-                reserveMaxPool = getDouble("mana.reserve.max_pool", 3000.0);
-                reserveRegenRate = getDouble("mana.reserve.regen_rate", 0.05);
+    /**
+     * Watch the run directory copy of mam.properties and reload it when it changes.
+     */
+    private static synchronized void startWatcher() {
+        Path configPath = Paths.get(FILE_NAME).toAbsolutePath();
+        if (watcher != null || !Files.exists(configPath)) {
+            return;
+        }
 
-                loaded = true;
-                MAM.LOGGER.info("Mana configuration loaded successfully");
-            } else {
-                MAM.LOGGER.warn("Could not find mam.properties, using defaults");
-                loaded = true;
+        WatchService service;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+            configPath.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            MAM.LOGGER.warn("Could not watch {} for changes", configPath, e);
+            return;
+        }
+
+        watcher = new Thread(() -> watch(service, configPath.getFileName()), "MAM Config Watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private static void watch(WatchService service, Path fileName) {
+        try (service) {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= fileName.equals(event.context());
+                }
+                key.reset();
+
+                if (changed) {
+                    // Editors often write in several steps; let the file settle first
+                    Thread.sleep(RELOAD_DEBOUNCE_MS);
+                    WatchKey pending = service.poll();
+                    if (pending != null) {
+                        pending.pollEvents();
+                        pending.reset();
+                    }
+                    MAM.LOGGER.info("Detected change to {}, reloading", fileName);
+                    reload();
+                }
             }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
         } catch (IOException e) {
-            MAM.LOGGER.error("Failed to load mana configuration", e);
-            loaded = true; // Use defaults
+            MAM.LOGGER.warn("Stopped watching mana configuration", e);
+        }
+    }
+
+    private static double getDouble(Properties properties, String key, double defaultValue) {
+        String value = properties.getProperty(key);
+        if (value != null) {
+            try {
+                return Double.parseDouble(value.trim());
+            } catch (NumberFormatException e) {
+                MAM.LOGGER.warn("Invalid value for {}: {}, using default: {}", key, value,
+                        defaultValue);
+            }
         }
+        return defaultValue;
     }
 
-    private static double getDouble(String key, double defaultValue) {
+    private static int getInt(Properties properties, String key, int defaultValue) {
         String value = properties.getProperty(key);
         if (value != null) {
             try {
-                return Double.parseDouble(value);
+                return Integer.parseInt(value.trim());
             } catch (NumberFormatException e) {
                 MAM.LOGGER.warn("Invalid value for {}: {}, using default: {}", key, value,
                         defaultValue);
@@ -90,36 +254,74 @@ public class ManaConfig {
         return defaultValue;
     }
 
+    /**
+     * Get a raw configuration value.
+     *
+     * @param key The property key
+     * @return The value, or null if not set
+     */
+    public static String getString(String key) {
+        return current.getString(key);
+    }
+
     // Getters
     public static double getPersonalMaxPool() {
-        return personalMaxPool;
+        return current.personalMaxPool();
     }
 
     public static double getPersonalRegenRate() {
-        return personalRegenRate;
+        return current.personalRegenRate();
     }
 
     public static double getAuraMaxPool() {
-        return auraMaxPool;
+        return current.auraMaxPool();
     }
 
     public static double getAuraRegenRate() {
-        return auraRegenRate;
+        return current.auraRegenRate();
     }
 
     public static double getReserveMaxPool() {
-        return reserveMaxPool;
+        return current.reserveMaxPool();
     }
 
     public static double getReserveRegenRate() {
-        return reserveRegenRate;
+        return current.reserveRegenRate();
     }
 
-    /**
-     * Reload configuration from disk.
-     */
-    public static void reload() {
-        loaded = false;
-        load();
+    public static int getSyncMaxPacketsPerSecond() {
+        return current.syncMaxPacketsPerSecond();
+    }
+
+    public static int getSyncHeartbeatTicks() {
+        return current.syncHeartbeatTicks();
+    }
+
+    public static int getPersistenceFlushTicks() {
+        return current.persistenceFlushTicks();
+    }
+
+    public static int getOfflineCacheSize() {
+        return current.offlineCacheSize();
+    }
+
+    public static int getOfflineCacheTtlSeconds() {
+        return current.offlineCacheTtlSeconds();
+    }
+
+    public static double getCastRatePerSecond() {
+        return current.castRatePerSecond();
+    }
+
+    public static int getCastBurst() {
+        return current.castBurst();
+    }
+
+    public static int getCastBudgetPerTick() {
+        return current.castBudgetPerTick();
+    }
+
+    public static int getParticleBudgetPerTick() {
+        return current.particleBudgetPerTick();
     }
 }
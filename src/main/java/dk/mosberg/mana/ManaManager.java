@@ -1,5 +1,9 @@
 package dk.mosberg.mana;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -8,14 +12,35 @@ import net.minecraft.server.network.ServerPlayerEntity;
 
 /**
  * Thread-safe manager for player mana components. Provides centralized access to player mana data
- * with automatic cleanup.
+ * with automatic cleanup. Pool values for all players are kept in one dense {@link ManaStore}.
+ *
+ * <p>
+ * Components of online players live in the component map. On disconnect a component moves to a
+ * size- and time-bounded offline cache in departure order, so a quick reconnect resumes it without
+ * a reload; evicted components are written to {@link ManaPersistence} and their slots released.
  */
 public class ManaManager {
     private static final Map<UUID, ManaComponent> components = new ConcurrentHashMap<>();
+    // In departure order, guarded by itself; values are the component and its departure time.
+    // Lookups must not reorder it, the TTL eviction relies on the oldest entries coming first.
+    private static final LinkedHashMap<UUID, OfflineEntry> offline = new LinkedHashMap<>();
+    private static final ManaStore store = new ManaStore();
+
+    // Mana clock, advanced once per server tick together with the store's regen clocks.
+    // Only the server thread writes it, so a volatile field is sufficient.
+    private static volatile long currentTick = 0;
+    // Configuration whose pool maximums the components were last given; server thread only
+    private static ManaConfig.Snapshot appliedConfig = ManaConfig.get();
 
     /**
      * Get or create a mana component for a player. Thread-safe operation.
      *
+     * <p>
+     * A player entity left over from a disconnect, e.g. captured by a task that runs later, gets
+     * the component from the offline cache. If none is cached, a detached component that is
+     * loading (see {@link ManaComponent#isLoading()}) is parked in the cache, so it cannot spend
+     * mana, is never saved over the player's record and is released by the cache's eviction.
+     *
      * @param player The server player
      * @return The mana component for this player
      */
@@ -23,6 +48,13 @@ public class ManaManager {
         if (player == null) {
             throw new IllegalArgumentException("Player cannot be null");
         }
+        ManaComponent online = components.get(player.getUuid());
+        if (online != null) {
+            return online;
+        }
+        if (player.isDisconnected()) {
+            return getStaleComponent(player);
+        }
         return components.computeIfAbsent(player.getUuid(), uuid -> {
             MAM.LOGGER.debug("Creating new mana component for player: {}",
                     player.getName().getString());
@@ -30,26 +62,200 @@ public class ManaManager {
         });
     }
 
+    private static ManaComponent getStaleComponent(ServerPlayerEntity player) {
+        synchronized (offline) {
+            OfflineEntry cached = offline.get(player.getUuid());
+            if (cached != null) {
+                return cached.component();
+            }
+            ManaComponent parked = new ManaComponent(player);
+            parked.startLoading();
+            parked.detach();
+            offline.put(player.getUuid(), new OfflineEntry(parked, System.currentTimeMillis()));
+            return parked;
+        }
+    }
+
+    /**
+     * Attach a joining player's component, resuming it from the offline cache if present.
+     *
+     * @param player The player that joined
+     * @return true if the component was resumed from the cache, false if it was created fresh or
+     *         is still loading, and saved data has to be loaded with {@link ManaPersistence#load};
+     *         the component cannot spend mana until then
+     */
+    public static boolean onJoin(ServerPlayerEntity player) {
+        if (player == null) {
+            throw new IllegalArgumentException("Player cannot be null");
+        }
+        OfflineEntry cached;
+        synchronized (offline) {
+            cached = offline.remove(player.getUuid());
+        }
+        if (cached != null) {
+            ManaComponent component = cached.component();
+            component.attach(player);
+            ManaComponent replaced = components.put(player.getUuid(), component);
+            if (replaced != null && replaced != component) {
+                // Created for the new entity before it joined; the cached one holds the mana
+                replaced.release();
+            }
+            MAM.LOGGER.debug("Resumed cached mana component for player: {}",
+                    player.getName().getString());
+            // A parked component, or one whose load is still running, gets its record from a load
+            return !component.isLoading();
+        }
+        getComponent(player).startLoading();
+        return false;
+    }
+
+    /**
+     * Move a departing player's component into the offline cache, evicting the earliest departed
+     * entries if the cache is over capacity.
+     *
+     * @param playerUuid The player's UUID
+     */
+    public static void onDisconnect(UUID playerUuid) {
+        ManaComponent component = components.remove(playerUuid);
+        if (component == null) {
+            return;
+        }
+        component.detach();
+
+        int maxSize = ManaConfig.getOfflineCacheSize();
+        synchronized (offline) {
+            offline.put(playerUuid, new OfflineEntry(component, System.currentTimeMillis()));
+            Iterator<Map.Entry<UUID, OfflineEntry>> it = offline.entrySet().iterator();
+            while (offline.size() > maxSize && it.hasNext()) {
+                Map.Entry<UUID, OfflineEntry> eldest = it.next();
+                it.remove();
+                evict(eldest.getKey(), eldest.getValue().component());
+            }
+        }
+    }
+
     /**
-     * Remove a player's mana component (called when player leaves).
+     * Evict offline components that have been cached longer than the configured TTL. Cheap when
+     * nothing is due, since only the head of the departure order is inspected.
+     */
+    public static void evictExpired() {
+        long cutoff = System.currentTimeMillis() - ManaConfig.getOfflineCacheTtlSeconds() * 1000L;
+        synchronized (offline) {
+            Iterator<Map.Entry<UUID, OfflineEntry>> it = offline.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<UUID, OfflineEntry> entry = it.next();
+                if (entry.getValue().departedAt() > cutoff) {
+                    break;
+                }
+                it.remove();
+                evict(entry.getKey(), entry.getValue().component());
+            }
+        }
+    }
+
+    /**
+     * Remove a player's mana component, online or cached, saving it first.
      * 
      * @param playerUuid The player's UUID
      * @return true if component was removed, false if it didn't exist
      */
     public static boolean removeComponent(UUID playerUuid) {
         ManaComponent removed = components.remove(playerUuid);
+        if (removed == null) {
+            synchronized (offline) {
+                OfflineEntry cached = offline.remove(playerUuid);
+                removed = cached != null ? cached.component() : null;
+            }
+        }
         if (removed != null) {
+            evict(playerUuid, removed);
             MAM.LOGGER.debug("Removed mana component for UUID: {}", playerUuid);
             return true;
         }
         return false;
     }
 
+    private static void evict(UUID playerUuid, ManaComponent component) {
+        ManaPersistence.save(playerUuid, component);
+        component.release();
+    }
+
     /**
-     * Tick all player mana components (regeneration). Should be called once per server tick.
+     * Advance the mana clock by one tick, regenerating every pool at the currently configured rates.
+     * A changed pool maximum from a configuration reload is applied to every component in memory.
+     * Should be called once per server tick.
+     */
+    public static void advanceTick() {
+        currentTick++;
+        store.advance();
+        applyConfiguredMax();
+    }
+
+    private static void applyConfiguredMax() {
+        ManaConfig.Snapshot config = ManaConfig.get();
+        if (config == appliedConfig) {
+            return;
+        }
+        appliedConfig = config;
+
+        List<ManaComponent> loaded = new ArrayList<>(components.values());
+        synchronized (offline) {
+            for (OfflineEntry entry : offline.values()) {
+                loaded.add(entry.component());
+            }
+        }
+        for (ManaPoolType type : ManaPoolType.values()) {
+            double max = config.maxPool(type);
+            for (ManaComponent component : loaded) {
+                ManaPool pool = component.getPool(type);
+                if (pool.getMax() != max) {
+                    pool.setMax(max);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the current mana clock tick.
+     */
+    public static long getCurrentTick() {
+        return currentTick;
+    }
+
+    /**
+     * Settle regeneration for every component in the active regen set and drop the ones whose
+     * pools are all full again. Cost scales with the number of regenerating players; components at
+     * full mana are never touched.
      */
     public static void tickAll() {
-        components.values().forEach(ManaComponent::tick);
+        store.settleActive();
+    }
+
+    /**
+     * Get the number of components in the active regen set, i.e. with at least one pool below max.
+     */
+    public static int getActiveRegenCount() {
+        return store.getActiveCount();
+    }
+
+    /**
+     * Get all components, online and cached offline.
+     */
+    static List<ManaComponent> getAllComponents() {
+        List<ManaComponent> all = new ArrayList<>(components.values());
+        synchronized (offline) {
+            for (OfflineEntry entry : offline.values()) {
+                all.add(entry.component());
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Get the dense pool store backing all components.
+     */
+    static ManaStore getStore() {
+        return store;
     }
 
     /**
@@ -58,6 +264,11 @@ public class ManaManager {
     public static void clear() {
         int count = components.size();
         components.clear();
+        synchronized (offline) {
+            count += offline.size();
+            offline.clear();
+        }
+        store.reset();
         MAM.LOGGER.info("Cleared {} mana components", count);
     }
 
@@ -68,10 +279,22 @@ public class ManaManager {
         return components.size();
     }
 
+    /**
+     * Get the number of components held in the offline cache.
+     */
+    public static int getOfflineCachedCount() {
+        synchronized (offline) {
+            return offline.size();
+        }
+    }
+
     /**
      * Check if a player has a mana component.
      */
     public static boolean hasComponent(UUID playerUuid) {
         return components.containsKey(playerUuid);
     }
+
+    private record OfflineEntry(ManaComponent component, long departedAt) {
+    }
 }
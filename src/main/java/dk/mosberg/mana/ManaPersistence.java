@@ -0,0 +1,285 @@
+package dk.mosberg.mana;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import dk.mosberg.MAM;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.WorldSavePath;
+
+/**
+ * Persists player mana per world in one compact binary file, {@code data/mam_mana.dat} in the world
+ * save. Changed components are snapshotted on the server thread and written behind by a single
+ * background I/O thread, at most once per {@link ManaConfig#getPersistenceFlushTicks()} ticks:
+ * single saves, e.g. on offline-cache eviction, only update the saved records and go out with the
+ * next flush. The new file is forced to disk before it atomically replaces the old one, so a crash
+ * mid-write leaves the previous save intact.
+ *
+ * <p>
+ * The saved records are owned by the I/O thread. Joins look a record up there and apply it back on
+ * the server thread, so the tick loop never touches the disk.
+ */
+public final class ManaPersistence {
+    private static final String FILE_NAME = "mam_mana.dat";
+    private static final int MAGIC = 0x4D414D4D; // "MAMM"
+    private static final int VERSION = 1;
+    private static final int RECORD_LENGTH = ManaStore.POOL_COUNT * 2;
+
+    // Only accessed on the I/O thread
+    private static final Map<UUID, double[]> saved = new HashMap<>();
+    private static boolean unwritten;
+
+    private static ExecutorService ioExecutor;
+    private static Path file;
+    private static int ticksSinceFlush = 0;
+
+    private ManaPersistence() {}
+
+    /**
+     * Open the mana save of a server's world and start reading it in the background.
+     *
+     * @param server The server that started
+     */
+    public static void open(MinecraftServer server) {
+        if (ioExecutor != null) {
+            close();
+        }
+        file = server.getSavePath(WorldSavePath.ROOT).resolve("data").resolve(FILE_NAME);
+        ioExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MAM Mana IO");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticksSinceFlush = 0;
+
+        Path target = file;
+        ioExecutor.execute(() -> readFile(target));
+    }
+
+    /**
+     * Flush every component and stop the I/O thread, waiting for pending writes to finish. Called on
+     * server shutdown, the only time the server thread waits for the disk.
+     */
+    public static void close() {
+        if (ioExecutor == null) {
+            return;
+        }
+        flush(true);
+        ioExecutor.shutdown();
+        try {
+            if (!ioExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                MAM.LOGGER.warn("Timed out waiting for mana data to be saved");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ioExecutor = null;
+        file = null;
+    }
+
+    /**
+     * Count server ticks and write changed components every
+     * {@link ManaConfig#getPersistenceFlushTicks()} ticks.
+     */
+    public static void tick() {
+        if (ioExecutor != null && ++ticksSinceFlush >= ManaConfig.getPersistenceFlushTicks()) {
+            ticksSinceFlush = 0;
+            flush(false);
+        }
+    }
+
+    /**
+     * Load a joining player's saved mana in the background and apply it on the server thread. The
+     * player's component stays loading, unable to spend mana, until the saved data is applied.
+     *
+     * @param player The player that joined
+     * @param server The server, used to hop back to the server thread
+     * @return A future completing on the server thread once the saved data (if any) is applied
+     */
+    public static CompletableFuture<Void> load(ServerPlayerEntity player, MinecraftServer server) {
+        ManaComponent component = ManaManager.getComponent(player);
+        if (ioExecutor == null) {
+            component.finishLoading(null);
+            return CompletableFuture.completedFuture(null);
+        }
+        UUID playerId = player.getUuid();
+        return CompletableFuture.supplyAsync(() -> {
+            double[] record = saved.get(playerId);
+            return record != null ? record.clone() : null;
+        }, ioExecutor).handleAsync((record, error) -> {
+            if (error != null) {
+                MAM.LOGGER.error("Failed to look up saved mana for player: {}", playerId, error);
+            }
+            // Applied even if the player left meanwhile: the component is then frozen in the
+            // offline cache, and restoring writes its frozen values
+            component.finishLoading(record);
+            if (record != null) {
+                MAM.LOGGER.debug("Loaded saved mana for player: {}", player.getName().getString());
+            }
+            return null;
+        }, server);
+    }
+
+    /**
+     * Queue a single component for writing, e.g. before its slot is released. The record is
+     * written with the next periodic flush rather than on its own.
+     *
+     * @param playerId The owning player's UUID
+     * @param component The component to save
+     */
+    static void save(UUID playerId, ManaComponent component) {
+        if (ioExecutor == null) {
+            return;
+        }
+        double[] record = new double[RECORD_LENGTH];
+        if (component.snapshot(record, false)) {
+            submit(Map.of(playerId, record));
+        }
+    }
+
+    private static void flush(boolean all) {
+        Map<UUID, double[]> batch = new HashMap<>();
+        for (ManaComponent component : ManaManager.getAllComponents()) {
+            double[] record = new double[RECORD_LENGTH];
+            if (component.snapshot(record, all)) {
+                batch.put(component.getPlayerUuid(), record);
+            }
+        }
+        // Also writes the records queued by single saves since the last flush
+        Path target = file;
+        ioExecutor.execute(() -> {
+            if (!batch.isEmpty()) {
+                saved.putAll(batch);
+                unwritten = true;
+            }
+            if (unwritten) {
+                unwritten = false;
+                writeFile(target);
+            }
+        });
+    }
+
+    private static void submit(Map<UUID, double[]> batch) {
+        ioExecutor.execute(() -> {
+            saved.putAll(batch);
+            unwritten = true;
+        });
+    }
+
+    private static void readFile(Path target) {
+        saved.clear();
+        unwritten = false;
+        try {
+            saved.putAll(read(target));
+            MAM.LOGGER.info("Loaded mana data for {} players", saved.size());
+        } catch (IOException e) {
+            MAM.LOGGER.error("Failed to read mana save: {}", target, e);
+        }
+    }
+
+    private static void writeFile(Path target) {
+        try {
+            write(target, saved);
+            MAM.LOGGER.trace("Saved mana data for {} players", saved.size());
+        } catch (IOException e) {
+            MAM.LOGGER.error("Failed to write mana save: {}", target, e);
+        }
+    }
+
+    /**
+     * Read a mana save. Pools missing from the save, e.g. added since, are full at their configured
+     * maximum.
+     *
+     * @param target The save file
+     * @return Records by player UUID, empty if the file does not exist or has an unknown format
+     * @throws IOException if the file cannot be read
+     */
+    static Map<UUID, double[]> read(Path target) throws IOException {
+        Map<UUID, double[]> records = new HashMap<>();
+        if (!Files.exists(target)) {
+            return records;
+        }
+        try (DataInputStream in =
+                new DataInputStream(new BufferedInputStream(Files.newInputStream(target)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                MAM.LOGGER.warn("Ignoring mana save with unknown format: {}", target);
+                return records;
+            }
+            int poolCount = in.readInt();
+            int count = in.readInt();
+            for (int n = 0; n < count; n++) {
+                UUID playerId = new UUID(in.readLong(), in.readLong());
+                double[] record = new double[RECORD_LENGTH];
+                for (int p = 0; p < poolCount; p++) {
+                    double current = in.readDouble();
+                    double max = in.readDouble();
+                    // Pools added since the save keep their defaults
+                    if (p < ManaStore.POOL_COUNT) {
+                        record[p * 2] = current;
+                        record[p * 2 + 1] = max;
+                    }
+                }
+                for (int p = poolCount; p < ManaStore.POOL_COUNT; p++) {
+                    record[p * 2] = record[p * 2 + 1] = ManaPoolType.values()[p].getMaxPool();
+                }
+                records.put(playerId, record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Write a mana save. The records go to a temporary file that is forced to disk and then moved
+     * over the target, atomically where the file system supports it.
+     *
+     * @param target The save file
+     * @param records Records by player UUID, {@code current, max} pairs by pool ordinal
+     * @throws IOException if the file cannot be written
+     */
+    static void write(Path target, Map<UUID, double[]> records) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.createDirectories(target.getParent());
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(ManaStore.POOL_COUNT);
+            out.writeInt(records.size());
+            for (Map.Entry<UUID, double[]> entry : records.entrySet()) {
+                out.writeLong(entry.getKey().getMostSignificantBits());
+                out.writeLong(entry.getKey().getLeastSignificantBits());
+                for (double value : entry.getValue()) {
+                    out.writeDouble(value);
+                }
+            }
+            out.flush();
+            // The rename must not become durable before the data it points to
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
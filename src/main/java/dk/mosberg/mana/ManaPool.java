@@ -1,75 +1,189 @@
 package dk.mosberg.mana;
 
 /**
- * Represents a single mana pool with current and maximum values.
+ * Represents a single mana pool with current and maximum values. Regeneration is computed in closed
+ * form: the pool stores one anchor double in the {@link ManaStore} and its current value is
+ * {@code min(max, anchor + clock)} against the regen clock of its type, so idle pools cost nothing
+ * per tick.
+ *
+ * <p>
+ * A pool is a thin view onto one entry of the {@link ManaStore} page arrays; it holds no mana state
+ * of its own. Every read-modify-write is a compare-and-set loop on the anchor, so pools can be used
+ * from any thread without locks. The max value is only changed on the server thread. While the slot
+ * is frozen for an offline player the same operations read and write its plain frozen values.
  */
 public class ManaPool {
     private final ManaPoolType type;
-    private double current;
-    private double max;
+    private final ManaStore store;
+    private final int slot;
+    private final double[] anchor;
+    private final double[] max;
+    private final int index;
 
-    public ManaPool(ManaPoolType type) {
+    /**
+     * Dirty bit flagging a changed current value of a pool type.
+     */
+    static int currentDirtyBit(ManaPoolType type) {
+        return 1 << type.ordinal();
+    }
+
+    /**
+     * Dirty bit flagging a changed max value of a pool type.
+     */
+    static int maxDirtyBit(ManaPoolType type) {
+        return 1 << (ManaStore.POOL_COUNT + type.ordinal());
+    }
+
+    ManaPool(ManaStore store, int slot, ManaPoolType type) {
+        ManaStore.Page page = store.page(slot);
         this.type = type;
-        this.max = type.getMaxPool();
-        this.current = this.max; // Start full
+        this.store = store;
+        this.slot = slot;
+        this.anchor = page.anchor;
+        this.max = page.max;
+        this.index = ManaStore.offset(slot, type.ordinal());
+    }
+
+    private double readAnchor() {
+        return (double) ManaStore.ANCHOR.getVolatile(anchor, index);
+    }
+
+    private boolean casAnchor(double expected, double value) {
+        return ManaStore.ANCHOR.compareAndSet(anchor, index, expected, value);
+    }
+
+    /**
+     * Flag the current value as changed, request an immediate sync and join the active regen set if
+     * this pool is below max.
+     */
+    private void onCurrentChanged() {
+        store.markDirty(slot, currentDirtyBit(type) | ManaStore.SYNC_URGENT);
+        if (readAnchor() != ManaStore.FULL) {
+            store.markActive(slot);
+        }
     }
 
     /**
-     * Add mana to this pool.
+     * Add mana to this pool atomically.
      *
      * @param amount Amount to add
      * @return Actual amount added (may be less than requested if pool is near full)
      */
     public double add(double amount) {
-        double oldCurrent = current;
-        current = Math.min(current + amount, max);
-        return current - oldCurrent;
+        double clock = store.clock(slot, type.ordinal());
+        while (true) {
+            double a = readAnchor();
+            double limit = max[index];
+            double oldCurrent = ManaStore.valueAt(a, limit, clock);
+            double newCurrent = Math.min(oldCurrent + amount, limit);
+            if (newCurrent == oldCurrent) {
+                return 0.0;
+            }
+            if (casAnchor(a, ManaStore.anchorFor(newCurrent, limit, clock))) {
+                onCurrentChanged();
+                return newCurrent - oldCurrent;
+            }
+        }
     }
 
     /**
-     * Consume mana from this pool.
+     * Atomically consume mana from this pool if enough is available. The check and the debit are a
+     * single compare-and-set, so concurrent callers can never overdraw the pool.
      *
      * @param amount Amount to consume
      * @return true if sufficient mana was available and consumed, false otherwise
      */
-    public boolean consume(double amount) {
-        if (current >= amount) {
-            current -= amount;
-            return true;
+    public boolean tryConsume(double amount) {
+        if (amount < 0) {
+            return false;
+        }
+        double clock = store.clock(slot, type.ordinal());
+        while (true) {
+            double a = readAnchor();
+            double limit = max[index];
+            double current = ManaStore.valueAt(a, limit, clock);
+            if (current < amount) {
+                return false;
+            }
+            if (casAnchor(a, ManaStore.anchorFor(current - amount, limit, clock))) {
+                onCurrentChanged();
+                return true;
+            }
         }
-        return false;
     }
 
     /**
-     * Check if this pool has at least the specified amount.
+     * Atomically consume as much as is available, up to {@code amount}.
+     *
+     * @param amount Maximum amount to consume
+     * @return Amount actually consumed
      */
-    public boolean has(double amount) {
-        return current >= amount;
+    public double tryConsumeUpTo(double amount) {
+        if (amount <= 0) {
+            return 0.0;
+        }
+        double clock = store.clock(slot, type.ordinal());
+        while (true) {
+            double a = readAnchor();
+            double limit = max[index];
+            double current = ManaStore.valueAt(a, limit, clock);
+            double taken = Math.min(current, amount);
+            if (taken <= 0) {
+                return 0.0;
+            }
+            if (casAnchor(a, ManaStore.anchorFor(current - taken, limit, clock))) {
+                onCurrentChanged();
+                return taken;
+            }
+        }
+    }
+
+    /**
+     * Consume mana from this pool. Equivalent to {@link #tryConsume(double)}.
+     *
+     * @param amount Amount to consume
+     * @return true if sufficient mana was available and consumed, false otherwise
+     */
+    public boolean consume(double amount) {
+        return tryConsume(amount);
     }
 
     /**
-     * Regenerate mana based on the pool's regen rate.
+     * Check if this pool has at least the specified amount. The answer may be stale by the time it
+     * is acted on; use {@link #tryConsume(double)} to check and debit atomically.
      */
-    public void regenerate() {
-        add(type.getRegenRate());
+    public boolean has(double amount) {
+        return getCurrent() >= amount;
     }
 
     /**
      * Set the current mana to a specific value.
      */
     public void set(double amount) {
-        current = Math.max(0, Math.min(amount, max));
+        double limit = max[index];
+        double value = Math.max(0, Math.min(amount, limit));
+        ManaStore.ANCHOR.setVolatile(anchor, index,
+                ManaStore.anchorFor(value, limit, store.clock(slot, type.ordinal())));
+        onCurrentChanged();
     }
 
     /**
-     * Set the maximum mana capacity.
+     * Set the maximum mana capacity. Current mana is clamped to the new max.
      */
     public void setMax(double max) {
-        this.max = Math.max(0, max);
-        // Clamp current to new max
-        if (current > this.max) {
-            current = this.max;
+        double clock = store.clock(slot, type.ordinal());
+        double limit = Math.max(0, max);
+        while (true) {
+            double a = readAnchor();
+            double current = ManaStore.valueAt(a, this.max[index], clock);
+            double clamped = Math.min(current, limit);
+            this.max[index] = limit;
+            if (casAnchor(a, ManaStore.anchorFor(clamped, limit, clock))) {
+                break;
+            }
         }
+        store.markDirty(slot, maxDirtyBit(type) | ManaStore.SYNC_URGENT);
+        onCurrentChanged();
     }
 
     // Getters
@@ -78,15 +192,16 @@ public class ManaPool {
     }
 
     public double getCurrent() {
-        return current;
+        return ManaStore.valueAt(readAnchor(), max[index], store.clock(slot, type.ordinal()));
     }
 
     public double getMax() {
-        return max;
+        return max[index];
     }
 
     public double getPercentage() {
-        return max > 0 ? (current / max) * 100.0 : 0.0;
+        double limit = max[index];
+        return limit > 0 ? (getCurrent() / limit) * 100.0 : 0.0;
     }
 
     /**
@@ -100,14 +215,15 @@ public class ManaPool {
      * Restore pool to maximum.
      */
     public void restore() {
-        current = max;
+        ManaStore.ANCHOR.setVolatile(anchor, index, ManaStore.FULL);
+        store.markDirty(slot, currentDirtyBit(type) | ManaStore.SYNC_URGENT);
     }
 
     public boolean isFull() {
-        return current >= max;
+        return getCurrent() >= max[index];
     }
 
     public boolean isEmpty() {
-        return current <= 0;
+        return getCurrent() <= 0;
     }
 }
@@ -17,19 +17,11 @@ public enum ManaPoolType {
     }
 
     public double getMaxPool() {
-        return switch (this) {
-            case PERSONAL -> ManaConfig.getPersonalMaxPool();
-            case AURA -> ManaConfig.getAuraMaxPool();
-            case RESERVE -> ManaConfig.getReserveMaxPool();
-        };
+        return ManaConfig.get().maxPool(this);
     }
 
     public double getRegenRate() {
-        return switch (this) {
-            case PERSONAL -> ManaConfig.getPersonalRegenRate();
-            case AURA -> ManaConfig.getAuraRegenRate();
-            case RESERVE -> ManaConfig.getReserveRegenRate();
-        };
+        return ManaConfig.get().regenRate(this);
     }
 
     public String getDisplayName() {
@@ -39,4 +31,13 @@ public enum ManaPoolType {
             case RESERVE -> "Reserve";
         };
     }
+
+    public static ManaPoolType fromId(String id) {
+        for (ManaPoolType type : values()) {
+            if (type.id.equals(id)) {
+                return type;
+            }
+        }
+        return null;
+    }
 }
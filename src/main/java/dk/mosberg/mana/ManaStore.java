@@ -0,0 +1,421 @@
+package dk.mosberg.mana;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Dense struct-of-arrays storage for every player's mana pools. Each component owns an int slot and
+ * its pool values live in parallel primitive arrays at {@code slot * POOL_COUNT + ordinal}.
+ *
+ * <p>
+ * Arrays are allocated in fixed-size pages that are never moved or copied, so {@link ManaPool}
+ * views can hold direct references to their page arrays while the store keeps growing.
+ *
+ * <p>
+ * A pool's whole regenerating state is one double, its <em>anchor</em>: its current value is
+ * {@code min(max, anchor + clock)}, where {@code clock} is the regen clock of its pool type, the
+ * mana regenerated since startup. A full pool has an infinite anchor. Because a single word carries
+ * the state, pools are updated lock-free with compare-and-set through {@link #ANCHOR}, and
+ * regeneration needs no per-pool writes at all.
+ *
+ * <p>
+ * The regen clocks advance by the configured rate once per server tick in {@link #advance()}.
+ * Anchors do not depend on the rate, so a hot-reloaded rate simply takes effect on the next tick
+ * with no re-encoding of stored pools.
+ *
+ * <p>
+ * Each page also carries an "active regen" bitmap with one bit per slot. A slot is marked when one
+ * of its pools drops below max and cleared by {@link #settleActive()} once all pools are full,
+ * so bulk settling only visits players that are actually regenerating.
+ *
+ * <p>
+ * A frozen slot, one whose player is offline, has a "frozen" bit set instead: its anchors hold
+ * plain values and {@link #clock(int, int)} is 0 for it, so pool reads and writes through the usual
+ * anchor encoding work on frozen values unchanged and never regenerate.
+ *
+ * <p>
+ * Pages also hold per-slot sync dirty bits: bit {@code ordinal} flags a changed current value and
+ * bit {@code POOL_COUNT + ordinal} a changed max, so client sync only encodes what moved. Explicit
+ * mutations additionally set {@link #SYNC_URGENT} so the change is pushed without waiting for the
+ * regen heartbeat, and every change sets {@link #PERSIST_DIRTY} for the write-behind in
+ * {@link ManaPersistence}.
+ */
+final class ManaStore {
+    static final int POOL_COUNT = ManaPoolType.values().length;
+    static final int PAGE_SLOTS = 256;
+    static final int PAGE_SIZE = PAGE_SLOTS * POOL_COUNT;
+    private static final int ACTIVE_WORDS = PAGE_SLOTS / Long.SIZE;
+    /** Dirty flag requesting an immediate client sync. */
+    static final int SYNC_URGENT = 1 << 30;
+    /** Dirty flag marking a slot as changed since it was last persisted; set with any other bit. */
+    static final int PERSIST_DIRTY = 1 << 29;
+    /** Anchor of a full pool. */
+    static final double FULL = Double.POSITIVE_INFINITY;
+
+    /** Atomic access to elements of {@link Page#anchor}. */
+    static final VarHandle ANCHOR = MethodHandles.arrayElementVarHandle(double[].class);
+
+    /**
+     * One page of pool data for {@link #PAGE_SLOTS} consecutive slots.
+     */
+    static final class Page {
+        final double[] anchor = new double[PAGE_SIZE];
+        final double[] max = new double[PAGE_SIZE];
+        final AtomicLongArray active = new AtomicLongArray(ACTIVE_WORDS);
+        final AtomicLongArray frozen = new AtomicLongArray(ACTIVE_WORDS);
+        final AtomicIntegerArray dirty = new AtomicIntegerArray(PAGE_SLOTS);
+    }
+
+    private volatile Page[] pages = new Page[0];
+    private int[] freeSlots = new int[16];
+    private int freeCount = 0;
+    private int nextSlot = 0;
+    private int usedSlots = 0;
+    private final AtomicInteger activeCount = new AtomicInteger();
+    // Mana regenerated since startup per pool ordinal; written by the server thread only
+    private final double[] regenClock = new double[POOL_COUNT];
+
+    /**
+     * Advance every regen clock by its currently configured rate. Called once per server tick.
+     */
+    void advance() {
+        ManaConfig.Snapshot config = ManaConfig.get();
+        for (ManaPoolType type : ManaPoolType.values()) {
+            int p = type.ordinal();
+            ANCHOR.setVolatile(regenClock, p, clock(p) + config.regenRate(type));
+        }
+    }
+
+    /**
+     * Get the regen clock of a pool ordinal.
+     */
+    double clock(int ordinal) {
+        return (double) ANCHOR.getVolatile(regenClock, ordinal);
+    }
+
+    /**
+     * Get the regen clock that the anchors of a slot are relative to: the clock of the pool
+     * ordinal, or 0 while the slot is frozen.
+     */
+    double clock(int slot, int ordinal) {
+        return isFrozen(slot) ? 0.0 : clock(ordinal);
+    }
+
+    /**
+     * Check whether a slot is frozen by {@link #freeze(int)}.
+     */
+    boolean isFrozen(int slot) {
+        int local = slot % PAGE_SLOTS;
+        return (page(slot).frozen.get(local >>> 6) & (1L << (local & 63))) != 0;
+    }
+
+    /**
+     * Current value of a pool with the given anchor.
+     */
+    static double valueAt(double anchor, double max, double clock) {
+        return Math.min(max, anchor + clock);
+    }
+
+    /**
+     * Anchor encoding {@code value} at the given regen clock.
+     */
+    static double anchorFor(double value, double max, double clock) {
+        return value >= max ? FULL : value - clock;
+    }
+
+    /**
+     * Allocate a slot and initialise all of its pools to full at their configured maximum.
+     *
+     * @return The allocated slot
+     */
+    synchronized int allocate() {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            slot = nextSlot++;
+            int pageIndex = slot / PAGE_SLOTS;
+            if (pageIndex >= pages.length) {
+                Page[] grown = Arrays.copyOf(pages, pageIndex + 1);
+                grown[pageIndex] = new Page();
+                pages = grown;
+            }
+        }
+
+        Page page = page(slot);
+        int base = offset(slot, 0);
+        ManaConfig.Snapshot config = ManaConfig.get();
+        for (ManaPoolType type : ManaPoolType.values()) {
+            int i = base + type.ordinal();
+            page.max[i] = config.maxPool(type);
+            ANCHOR.setVolatile(page.anchor, i, FULL); // Start full
+        }
+        page.dirty.set(slot % PAGE_SLOTS, 0);
+        setFrozen(page, slot, false);
+        usedSlots++;
+        return slot;
+    }
+
+    /**
+     * Release a slot so it can be reused. Views onto the slot must not be used afterwards.
+     *
+     * @param slot The slot to release
+     */
+    synchronized void release(int slot) {
+        deactivate(slot);
+        Page page = page(slot);
+        int base = offset(slot, 0);
+        for (int p = 0; p < POOL_COUNT; p++) {
+            // Zeroed pools are inert in the bulk settle loop
+            page.max[base + p] = 0.0;
+            ANCHOR.setVolatile(page.anchor, base + p, FULL);
+        }
+        setFrozen(page, slot, false);
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        usedSlots--;
+    }
+
+    /**
+     * Release every slot.
+     */
+    synchronized void reset() {
+        pages = new Page[0];
+        freeCount = 0;
+        nextSlot = 0;
+        usedSlots = 0;
+        activeCount.set(0);
+        Arrays.fill(regenClock, 0.0);
+    }
+
+    Page page(int slot) {
+        return pages[slot / PAGE_SLOTS];
+    }
+
+    static int offset(int slot, int ordinal) {
+        return (slot % PAGE_SLOTS) * POOL_COUNT + ordinal;
+    }
+
+    /**
+     * Mark a slot as regenerating. Cheap when the slot is already marked.
+     *
+     * @param slot The slot whose pool dropped below max
+     */
+    void markActive(int slot) {
+        if (isFrozen(slot)) {
+            // Frozen pools do not regenerate; thawing marks the slot if needed
+            return;
+        }
+        AtomicLongArray bits = page(slot).active;
+        int local = slot % PAGE_SLOTS;
+        int word = local >>> 6;
+        long bit = 1L << (local & 63);
+        if ((bits.get(word) & bit) != 0) {
+            return;
+        }
+        long previous = bits.getAndAccumulate(word, bit, (a, b) -> a | b);
+        if ((previous & bit) == 0) {
+            activeCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Flag pool values of a slot as changed since the last client sync.
+     *
+     * @param slot The slot
+     * @param bits Dirty bits to set
+     */
+    void markDirty(int slot, int bits) {
+        AtomicIntegerArray dirty = page(slot).dirty;
+        int local = slot % PAGE_SLOTS;
+        bits |= PERSIST_DIRTY;
+        if ((dirty.get(local) & bits) != bits) {
+            dirty.getAndAccumulate(local, bits, (a, b) -> a | b);
+        }
+    }
+
+    /**
+     * Read the dirty bits of a slot without clearing them.
+     *
+     * @param slot The slot
+     * @return The dirty bits currently set
+     */
+    int peekDirty(int slot) {
+        return page(slot).dirty.get(slot % PAGE_SLOTS);
+    }
+
+    /**
+     * Read and clear some of the dirty bits of a slot, leaving the others for their own consumer.
+     *
+     * @param slot The slot
+     * @param bits Dirty bits to take
+     * @return The requested dirty bits set since they were last taken
+     */
+    int takeDirty(int slot, int bits) {
+        return page(slot).dirty.getAndAccumulate(slot % PAGE_SLOTS, bits, (a, b) -> a & ~b) & bits;
+    }
+
+    /**
+     * Remove a slot from the active regen set without settling it.
+     *
+     * @param slot The slot
+     */
+    void deactivate(int slot) {
+        clearActive(page(slot).active, slot % PAGE_SLOTS);
+    }
+
+    /**
+     * Freeze the pools of a slot at their current value: anchors then hold plain values that do not
+     * regenerate, and the slot leaves the active set. Does nothing if the slot is already frozen.
+     *
+     * @param slot The slot
+     */
+    void freeze(int slot) {
+        if (isFrozen(slot)) {
+            return;
+        }
+        deactivate(slot);
+        Page page = page(slot);
+        int base = offset(slot, 0);
+        for (int p = 0; p < POOL_COUNT; p++) {
+            int i = base + p;
+            double anchor = (double) ANCHOR.getVolatile(page.anchor, i);
+            if (anchor != FULL) {
+                ANCHOR.setVolatile(page.anchor, i, valueAt(anchor, page.max[i], clock(p)));
+            }
+        }
+        setFrozen(page, slot, true);
+    }
+
+    /**
+     * Resume regeneration of a slot frozen by {@link #freeze(int)} from the current regen clocks,
+     * and rejoin the active set if any pool is below max. Does nothing if the slot is not frozen.
+     *
+     * @param slot The slot
+     */
+    void thaw(int slot) {
+        if (!isFrozen(slot)) {
+            return;
+        }
+        Page page = page(slot);
+        int base = offset(slot, 0);
+        boolean full = true;
+        for (int p = 0; p < POOL_COUNT; p++) {
+            int i = base + p;
+            double value = (double) ANCHOR.getVolatile(page.anchor, i);
+            if (value != FULL) {
+                ANCHOR.setVolatile(page.anchor, i, anchorFor(value, page.max[i], clock(p)));
+                full &= value >= page.max[i];
+            }
+        }
+        setFrozen(page, slot, false);
+        if (!full) {
+            markActive(slot);
+        }
+    }
+
+    private static void setFrozen(Page page, int slot, boolean frozen) {
+        int local = slot % PAGE_SLOTS;
+        long bit = 1L << (local & 63);
+        if (frozen) {
+            page.frozen.getAndAccumulate(local >>> 6, bit, (a, b) -> a | b);
+        } else {
+            page.frozen.getAndAccumulate(local >>> 6, ~bit, (a, b) -> a & b);
+        }
+    }
+
+    private boolean clearActive(AtomicLongArray bits, int local) {
+        int word = local >>> 6;
+        long bit = 1L << (local & 63);
+        long previous = bits.getAndAccumulate(word, ~bit, (a, b) -> a & b);
+        if ((previous & bit) != 0) {
+            activeCount.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Settle every regenerating slot, walking the active bitmaps page by page. Regenerating pools
+     * are flagged dirty for sync, pools that reached max get the canonical full anchor, and slots
+     * whose pools are all full leave the active set, so the cost scales with the number of
+     * regenerating players rather than the number of components.
+     */
+    void settleActive() {
+        ManaConfig.Snapshot config = ManaConfig.get();
+        double[] clocks = new double[POOL_COUNT];
+        boolean[] regenerating = new boolean[POOL_COUNT];
+        for (ManaPoolType type : ManaPoolType.values()) {
+            clocks[type.ordinal()] = clock(type.ordinal());
+            regenerating[type.ordinal()] = config.regenRate(type) != 0.0;
+        }
+
+        Page[] snapshot = pages;
+        for (int pageIndex = 0; pageIndex < snapshot.length; pageIndex++) {
+            Page page = snapshot[pageIndex];
+            double[] anchors = page.anchor;
+            double[] max = page.max;
+            for (int word = 0; word < ACTIVE_WORDS; word++) {
+                long bits = page.active.get(word);
+                while (bits != 0) {
+                    int local = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+
+                    int base = local * POOL_COUNT;
+                    boolean full = true;
+                    int changed = 0;
+                    for (int p = 0; p < POOL_COUNT; p++) {
+                        int i = base + p;
+                        double anchor = (double) ANCHOR.getVolatile(anchors, i);
+                        if (anchor == FULL) {
+                            continue;
+                        }
+                        if (valueAt(anchor, max[i], clocks[p]) >= max[i]) {
+                            // A lost race means a concurrent write, which re-marks the slot itself
+                            ANCHOR.compareAndSet(anchors, i, anchor, FULL);
+                        } else {
+                            full = false;
+                        }
+                        if (regenerating[p]) {
+                            changed |= 1 << p;
+                        }
+                    }
+                    if (changed != 0) {
+                        page.dirty.getAndAccumulate(local, changed | PERSIST_DIRTY,
+                                (a, b) -> a | b);
+                    }
+
+                    if (full && clearActive(page.active, local)) {
+                        // A pool may have been drained between the settle and the clear
+                        for (int p = 0; p < POOL_COUNT; p++) {
+                            if ((double) ANCHOR.getVolatile(anchors, base + p) != FULL) {
+                                markActive(pageIndex * PAGE_SLOTS + local);
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of slots in the active regen set.
+     */
+    int getActiveCount() {
+        return activeCount.get();
+    }
+
+    /**
+     * Get the number of slots currently in use.
+     */
+    synchronized int getUsedSlots() {
+        return usedSlots;
+    }
+}
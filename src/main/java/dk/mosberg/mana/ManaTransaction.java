@@ -0,0 +1,62 @@
+package dk.mosberg.mana;
+
+/**
+ * All-or-nothing debit across several mana pools of one component. Amounts are collected with
+ * {@link #debit(ManaPoolType, double)} and applied by {@link #commit()}, which either consumes every
+ * amount or none of them. Commit is lock-free and safe to call from any thread.
+ *
+ * <pre>
+ * boolean paid = ManaTransaction.on(mana).debit(ManaPoolType.PERSONAL, 20)
+ *         .debit(ManaPoolType.AURA, 5).commit();
+ * </pre>
+ */
+public final class ManaTransaction {
+    private final ManaComponent component;
+    private final double[] amounts = new double[ManaStore.POOL_COUNT];
+
+    private ManaTransaction(ManaComponent component) {
+        this.component = component;
+    }
+
+    /**
+     * Start a transaction on a component.
+     *
+     * @param component The component to debit
+     * @return A new, empty transaction
+     * @throws IllegalArgumentException if component is null
+     */
+    public static ManaTransaction on(ManaComponent component) {
+        if (component == null) {
+            throw new IllegalArgumentException("Component cannot be null");
+        }
+        return new ManaTransaction(component);
+    }
+
+    /**
+     * Add a debit. Debits of the same pool accumulate.
+     *
+     * @param type The pool type
+     * @param amount The amount to consume (must be >= 0)
+     * @return This transaction
+     * @throws IllegalArgumentException if type is null or amount is negative
+     */
+    public ManaTransaction debit(ManaPoolType type, double amount) {
+        if (type == null) {
+            throw new IllegalArgumentException("Pool type cannot be null");
+        }
+        if (amount < 0) {
+            throw new IllegalArgumentException("Amount cannot be negative: " + amount);
+        }
+        amounts[type.ordinal()] += amount;
+        return this;
+    }
+
+    /**
+     * Apply all debits atomically with respect to their outcome.
+     *
+     * @return true if every debit was applied, false if none was
+     */
+    public boolean commit() {
+        return component.tryConsumeAll(amounts);
+    }
+}
@@ -0,0 +1,175 @@
+package dk.mosberg.network;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import dk.mosberg.mana.ManaConfig;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+
+/**
+ * Flood protection for spell cast requests. Each player has a token bucket refilled at
+ * {@link ManaConfig#getCastRatePerSecond()} tokens per second up to
+ * {@link ManaConfig#getCastBurst()}; a request arriving without a token is dropped as soon as it is
+ * received, before anything is scheduled. Admitted requests wait in a queue holding at most one
+ * request per player, where a newer request replaces one still waiting, and at most
+ * {@link ManaConfig#getCastBudgetPerTick()} requests are executed per server tick.
+ *
+ * <p>
+ * {@link #offer} is thread-safe and may be called from the network thread; the queue is drained on
+ * the server thread.
+ */
+public final class CastRateLimiter {
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private static final Map<UUID, Bucket> buckets = new ConcurrentHashMap<>();
+    // Admitted requests in arrival order, one per player; guarded by itself
+    private static final Map<UUID, SpellCastNetworkHandler.SpellCastPayload> pending =
+            new LinkedHashMap<>();
+
+    private static final AtomicLong rejectedCasts = new AtomicLong();
+    private static final AtomicLong coalescedCasts = new AtomicLong();
+    private static final AtomicLong deferredCasts = new AtomicLong();
+
+    private CastRateLimiter() {}
+
+    private static final class Bucket {
+        private double tokens;
+        private long lastRefill;
+
+        Bucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.lastRefill = now;
+        }
+
+        synchronized boolean tryAcquire(long now, double ratePerSecond, int burst) {
+            double refill = (now - lastRefill) * ratePerSecond / NANOS_PER_SECOND;
+            tokens = Math.min(burst, tokens + refill);
+            lastRefill = now;
+            if (tokens < 1.0) {
+                return false;
+            }
+            tokens -= 1.0;
+            return true;
+        }
+    }
+
+    /**
+     * Admit a cast request if the player has a token left and queue it for the next drain.
+     *
+     * @param playerId The casting player's UUID
+     * @param payload The cast request
+     * @return true if the request was queued, false if it was dropped
+     */
+    public static boolean offer(UUID playerId, SpellCastNetworkHandler.SpellCastPayload payload) {
+        return offer(playerId, payload, System.nanoTime());
+    }
+
+    static boolean offer(UUID playerId, SpellCastNetworkHandler.SpellCastPayload payload,
+            long now) {
+        int burst = ManaConfig.getCastBurst();
+        Bucket bucket = buckets.computeIfAbsent(playerId, id -> new Bucket(burst, now));
+        if (!bucket.tryAcquire(now, ManaConfig.getCastRatePerSecond(), burst)) {
+            rejectedCasts.incrementAndGet();
+            return false;
+        }
+
+        synchronized (pending) {
+            if (pending.put(playerId, payload) != null) {
+                coalescedCasts.incrementAndGet();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Execute queued requests in arrival order, up to the per-tick budget. Requests over the budget
+     * stay queued for the next tick. Must be called on the server thread.
+     *
+     * @param server The server
+     * @param handler Executes a request for its online player
+     */
+    public static void drain(MinecraftServer server,
+            BiConsumer<ServerPlayerEntity, SpellCastNetworkHandler.SpellCastPayload> handler) {
+        for (Map.Entry<UUID, SpellCastNetworkHandler.SpellCastPayload> entry : takeBatch()) {
+            ServerPlayerEntity player = server.getPlayerManager().getPlayer(entry.getKey());
+            if (player != null) {
+                handler.accept(player, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Take the queued requests to run this tick, in arrival order and up to the per-tick budget.
+     *
+     * @return The requests with their players' UUIDs
+     */
+    static List<Map.Entry<UUID, SpellCastNetworkHandler.SpellCastPayload>> takeBatch() {
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return List.of();
+            }
+            int budget = ManaConfig.getCastBudgetPerTick();
+            List<Map.Entry<UUID, SpellCastNetworkHandler.SpellCastPayload>> batch =
+                    new ArrayList<>(Math.min(budget, pending.size()));
+            Iterator<Map.Entry<UUID, SpellCastNetworkHandler.SpellCastPayload>> it =
+                    pending.entrySet().iterator();
+            while (it.hasNext() && batch.size() < budget) {
+                Map.Entry<UUID, SpellCastNetworkHandler.SpellCastPayload> entry = it.next();
+                batch.add(Map.entry(entry.getKey(), entry.getValue()));
+                it.remove();
+            }
+            deferredCasts.addAndGet(pending.size());
+            return batch;
+        }
+    }
+
+    /**
+     * Forget the bucket and any queued request of a player that left.
+     *
+     * @param playerId The player UUID
+     */
+    public static void forget(UUID playerId) {
+        buckets.remove(playerId);
+        synchronized (pending) {
+            pending.remove(playerId);
+        }
+    }
+
+    /**
+     * Clear all limiter state (e.g., on server shutdown). Counters are kept.
+     */
+    public static void clear() {
+        buckets.clear();
+        synchronized (pending) {
+            pending.clear();
+        }
+    }
+
+    /**
+     * Get the number of requests dropped because the player ran out of tokens.
+     */
+    public static long getRejectedCasts() {
+        return rejectedCasts.get();
+    }
+
+    /**
+     * Get the number of queued requests replaced by a newer request from the same player.
+     */
+    public static long getCoalescedCasts() {
+        return coalescedCasts.get();
+    }
+
+    /**
+     * Get the number of times a queued request was held over to the next tick by the budget.
+     */
+    public static long getDeferredCasts() {
+        return deferredCasts.get();
+    }
+}
@@ -2,71 +2,197 @@ package dk.mosberg.network;
 
 import dk.mosberg.MAM;
 import dk.mosberg.mana.ManaComponent;
+import dk.mosberg.mana.ManaConfig;
 import dk.mosberg.mana.ManaManager;
 import dk.mosberg.mana.ManaPoolType;
 import net.fabricmc.fabric.api.networking.v1.PayloadTypeRegistry;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.minecraft.network.RegistryByteBuf;
 import net.minecraft.network.codec.PacketCodec;
-import net.minecraft.network.codec.PacketCodecs;
 import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.Identifier;
 
 /**
  * Network handler for syncing mana data between server and client. Uses Fabric's networking API for
- * reliable packet transmission.
+ * reliable packet transmission. Only pool values that changed since the last sync are sent.
  */
 public class ManaNetworkHandler {
-    public static final Identifier MANA_SYNC_ID = Identifier.of(MAM.MOD_ID, "mana_sync");
+    public static final Identifier MANA_DELTA_ID = Identifier.of(MAM.MOD_ID, "mana_delta");
+    public static final Identifier MANA_REGEN_ID = Identifier.of(MAM.MOD_ID, "mana_regen");
+
+    private static final int POOL_COUNT = ManaPoolType.values().length;
 
     /**
      * Register network handlers.
      */
     public static void register() {
         // Register payload type
-        PayloadTypeRegistry.playS2C().register(ManaSyncPayload.ID, ManaSyncPayload.CODEC);
+        PayloadTypeRegistry.playS2C().register(ManaDeltaPayload.ID, ManaDeltaPayload.CODEC);
+        PayloadTypeRegistry.playS2C().register(ManaRegenPayload.ID, ManaRegenPayload.CODEC);
 
         MAM.LOGGER.info("Registered mana network handlers");
     }
 
     /**
-     * Send mana update to client.
+     * Send the full mana state to a client, e.g. after join or respawn, together with the regen
+     * rates it extrapolates the pools with between syncs.
      *
      * @param player The player to send to
      */
     public static void sendManaUpdate(ServerPlayerEntity player) {
+        ServerPlayNetworking.send(player, ManaRegenPayload.of(ManaConfig.get()));
+        send(player, true);
+    }
+
+    /**
+     * Send the configured regen rates to every client, e.g. after the configuration was reloaded.
+     *
+     * @param server The server
+     */
+    public static void sendRegenRates(MinecraftServer server) {
+        ManaRegenPayload payload = ManaRegenPayload.of(ManaConfig.get());
+        for (ServerPlayerEntity player : server.getPlayerManager().getPlayerList()) {
+            ServerPlayNetworking.send(player, payload);
+        }
+    }
+
+    /**
+     * Send only the pool values that changed since the last sync. Does nothing if no value changed
+     * visibly.
+     *
+     * @param player The player to send to
+     * @return true if a packet was sent
+     */
+    public static boolean sendManaDelta(ServerPlayerEntity player) {
+        return send(player, false);
+    }
+
+    private static boolean send(ServerPlayerEntity player, boolean full) {
         ManaComponent mana = ManaManager.getComponent(player);
 
-        double personal = mana.getPool(ManaPoolType.PERSONAL).getCurrent();
-        double aura = mana.getPool(ManaPoolType.AURA).getCurrent();
-        double reserve = mana.getPool(ManaPoolType.RESERVE).getCurrent();
+        int[] values = new int[POOL_COUNT * 2];
+        int mask = mana.pollSyncDelta(values, full);
+        if (mask == 0) {
+            return false;
+        }
+
+        ServerPlayNetworking.send(player, new ManaDeltaPayload(mask, values));
+        return true;
+    }
+
+    /**
+     * Payload for mana sync packets. A one-byte mask header selects which values follow: bit
+     * {@code ordinal} is a pool's current value and bit {@code POOL_COUNT + ordinal} its max. Each
+     * value is a varint in fixed point with scale {@link ManaComponent#SYNC_SCALE}.
+     */
+    public record ManaDeltaPayload(int mask, int[] values) implements CustomPayload {
+
+        public static final CustomPayload.Id<ManaDeltaPayload> ID =
+                new CustomPayload.Id<>(MANA_DELTA_ID);
 
-        double personalMax = mana.getPool(ManaPoolType.PERSONAL).getMax();
-        double auraMax = mana.getPool(ManaPoolType.AURA).getMax();
-        double reserveMax = mana.getPool(ManaPoolType.RESERVE).getMax();
+        public static final PacketCodec<RegistryByteBuf, ManaDeltaPayload> CODEC =
+                CustomPayload.codecOf(ManaDeltaPayload::write, ManaDeltaPayload::read);
 
-        ManaSyncPayload payload =
-                new ManaSyncPayload(personal, aura, reserve, personalMax, auraMax, reserveMax);
+        private void write(RegistryByteBuf buf) {
+            buf.writeByte(mask);
+            for (int bit = 0; bit < POOL_COUNT * 2; bit++) {
+                if ((mask & (1 << bit)) != 0) {
+                    buf.writeVarInt(values[bit]);
+                }
+            }
+        }
 
-        ServerPlayNetworking.send(player, payload);
+        private static ManaDeltaPayload read(RegistryByteBuf buf) {
+            int mask = buf.readUnsignedByte();
+            int[] values = new int[POOL_COUNT * 2];
+            for (int bit = 0; bit < POOL_COUNT * 2; bit++) {
+                if ((mask & (1 << bit)) != 0) {
+                    values[bit] = buf.readVarInt();
+                }
+            }
+            return new ManaDeltaPayload(mask, values);
+        }
+
+        /**
+         * Check whether the current value of a pool is included.
+         */
+        public boolean hasCurrent(ManaPoolType type) {
+            return (mask & (1 << type.ordinal())) != 0;
+        }
+
+        /**
+         * Check whether the max value of a pool is included.
+         */
+        public boolean hasMax(ManaPoolType type) {
+            return (mask & (1 << (POOL_COUNT + type.ordinal()))) != 0;
+        }
+
+        /**
+         * Get the decoded current value of a pool. Only meaningful if {@link #hasCurrent} is true.
+         */
+        public double getCurrent(ManaPoolType type) {
+            return values[type.ordinal()] / (double) ManaComponent.SYNC_SCALE;
+        }
+
+        /**
+         * Get the decoded max value of a pool. Only meaningful if {@link #hasMax} is true.
+         */
+        public double getMax(ManaPoolType type) {
+            return values[POOL_COUNT + type.ordinal()] / (double) ManaComponent.SYNC_SCALE;
+        }
+
+        @Override
+        public Id<? extends CustomPayload> getId() {
+            return ID;
+        }
     }
 
     /**
-     * Payload for mana sync packets.
+     * Payload carrying the regen rate of each pool in mana per tick, one float per pool by
+     * ordinal. Regeneration is only synced on a slow heartbeat, so clients extrapolate the last
+     * synced values with these rates to keep the display moving in between.
      */
-    public record ManaSyncPayload(double personalCurrent, double auraCurrent, double reserveCurrent,
-            double personalMax, double auraMax, double reserveMax) implements CustomPayload {
-
-        public static final CustomPayload.Id<ManaSyncPayload> ID =
-                new CustomPayload.Id<>(MANA_SYNC_ID);
-
-        public static final PacketCodec<RegistryByteBuf, ManaSyncPayload> CODEC =
-                PacketCodec.tuple(PacketCodecs.DOUBLE, ManaSyncPayload::personalCurrent,
-                        PacketCodecs.DOUBLE, ManaSyncPayload::auraCurrent, PacketCodecs.DOUBLE,
-                        ManaSyncPayload::reserveCurrent, PacketCodecs.DOUBLE,
-                        ManaSyncPayload::personalMax, PacketCodecs.DOUBLE, ManaSyncPayload::auraMax,
-                        PacketCodecs.DOUBLE, ManaSyncPayload::reserveMax, ManaSyncPayload::new);
+    public record ManaRegenPayload(double[] rates) implements CustomPayload {
+
+        public static final CustomPayload.Id<ManaRegenPayload> ID =
+                new CustomPayload.Id<>(MANA_REGEN_ID);
+
+        public static final PacketCodec<RegistryByteBuf, ManaRegenPayload> CODEC =
+                CustomPayload.codecOf(ManaRegenPayload::write, ManaRegenPayload::read);
+
+        /**
+         * Create the payload for the rates of a configuration.
+         */
+        static ManaRegenPayload of(ManaConfig.Snapshot config) {
+            double[] rates = new double[POOL_COUNT];
+            for (ManaPoolType type : ManaPoolType.values()) {
+                rates[type.ordinal()] = config.regenRate(type);
+            }
+            return new ManaRegenPayload(rates);
+        }
+
+        private void write(RegistryByteBuf buf) {
+            for (int p = 0; p < POOL_COUNT; p++) {
+                buf.writeFloat((float) rates[p]);
+            }
+        }
+
+        private static ManaRegenPayload read(RegistryByteBuf buf) {
+            double[] rates = new double[POOL_COUNT];
+            for (int p = 0; p < POOL_COUNT; p++) {
+                rates[p] = buf.readFloat();
+            }
+            return new ManaRegenPayload(rates);
+        }
+
+        /**
+         * Get the regen rate of a pool in mana per tick.
+         */
+        public double getRate(ManaPoolType type) {
+            return rates[type.ordinal()];
+        }
 
         @Override
         public Id<? extends CustomPayload> getId() {
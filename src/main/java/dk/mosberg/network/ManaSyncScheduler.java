@@ -0,0 +1,100 @@
+package dk.mosberg.network;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import dk.mosberg.mana.ManaConfig;
+import dk.mosberg.mana.ManaManager;
+import dk.mosberg.mana.ManaPoolType;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+
+/**
+ * Decides when each player's mana is synced to their client. Explicit changes such as a spell cast,
+ * a command or a refund are pushed on the same tick; regeneration-only drift goes out on a slow
+ * heartbeat, and clients extrapolate it in between from the regen rates they are sent on join and
+ * whenever the configured rates change. Each player is limited to
+ * {@link ManaConfig#getSyncMaxPacketsPerSecond()} packets per second, and changes made inside the
+ * window are coalesced into the next packet.
+ *
+ * <p>
+ * All methods must be called on the server thread.
+ */
+public final class ManaSyncScheduler {
+    private static final int TICKS_PER_SECOND = 20;
+
+    private static final Map<UUID, Long> lastSentTick = new HashMap<>();
+    // Configuration whose regen rates clients were last sent
+    private static ManaConfig.Snapshot syncedConfig = ManaConfig.get();
+
+    private ManaSyncScheduler() {}
+
+    /**
+     * Run the scheduler for the current mana clock tick.
+     *
+     * @param server The server
+     */
+    public static void tick(MinecraftServer server) {
+        long now = ManaManager.getCurrentTick();
+        int heartbeatTicks = ManaConfig.getSyncHeartbeatTicks();
+        int maxPerSecond = ManaConfig.getSyncMaxPacketsPerSecond();
+        int minInterval = Math.max(1, (TICKS_PER_SECOND + maxPerSecond - 1) / maxPerSecond);
+
+        // Clients extrapolate regeneration between heartbeats, keep their rates current
+        ManaConfig.Snapshot config = ManaConfig.get();
+        if (config != syncedConfig) {
+            if (!sameRegenRates(config, syncedConfig)) {
+                ManaNetworkHandler.sendRegenRates(server);
+            }
+            syncedConfig = config;
+        }
+
+        // Bulk settle once per heartbeat so full pools leave the active regen set
+        if (now % heartbeatTicks == 0) {
+            ManaManager.tickAll();
+        }
+
+        for (ServerPlayerEntity player : server.getPlayerManager().getPlayerList()) {
+            // Heartbeats are staggered by entity id to spread packets across ticks
+            boolean heartbeat = Math.floorMod(now + player.getId(), heartbeatTicks) == 0;
+            if (!heartbeat && !ManaManager.getComponent(player).isSyncPending()) {
+                continue;
+            }
+
+            Long last = lastSentTick.get(player.getUuid());
+            if (last != null && now - last < minInterval) {
+                // Pending changes stay flagged and are sent once the window opens
+                continue;
+            }
+
+            if (ManaNetworkHandler.sendManaDelta(player)) {
+                lastSentTick.put(player.getUuid(), now);
+            }
+        }
+    }
+
+    private static boolean sameRegenRates(ManaConfig.Snapshot a, ManaConfig.Snapshot b) {
+        for (ManaPoolType type : ManaPoolType.values()) {
+            if (a.regenRate(type) != b.regenRate(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Forget the rate limit state of a player that left.
+     *
+     * @param playerId The player UUID
+     */
+    public static void forget(UUID playerId) {
+        lastSentTick.remove(playerId);
+    }
+
+    /**
+     * Clear all scheduler state (e.g., on server shutdown).
+     */
+    public static void clear() {
+        lastSentTick.clear();
+    }
+}
@@ -0,0 +1,305 @@
+package dk.mosberg.network;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import dk.mosberg.MAM;
+import dk.mosberg.mana.ManaConfig;
+import net.fabricmc.fabric.api.networking.v1.PayloadTypeRegistry;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.network.RegistryByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.particle.ParticleEffect;
+import net.minecraft.particle.ParticleTypes;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.ChunkPos;
+
+/**
+ * Batches the particles emitted by spells and rituals during a server tick. Emissions are merged
+ * per chunk and particle type as they are queued, and at the end of the tick every player receives
+ * the emissions near them in one {@link ParticleBatchPayload} instead of one particle packet per
+ * emission. Each player gets at most {@link ManaConfig#getParticleBudgetPerTick()} particles per
+ * tick (unlimited if 0); a busier tick is thinned out evenly across its emissions.
+ *
+ * <p>
+ * All methods must be called on the server thread.
+ */
+public final class ParticleBatcher {
+    public static final Identifier PARTICLE_BATCH_ID = Identifier.of(MAM.MOD_ID, "particle_batch");
+
+    /** Values per emission in {@link Group#values()}: position, spread and speed. */
+    public static final int EMISSION_STRIDE = 7;
+
+    // Players see particles within this distance, as with ServerWorld.spawnParticles
+    private static final double VIEW_DISTANCE = 32.0;
+    private static final double VIEW_DISTANCE_SQUARED = VIEW_DISTANCE * VIEW_DISTANCE;
+    private static final int MAX_PAYLOAD_EMISSIONS = 4096;
+    private static final int INITIAL_CAPACITY = 8;
+
+    private static Map<ServerWorld, Map<GroupKey, Pending>> queued = new HashMap<>();
+
+    private ParticleBatcher() {}
+
+    private record GroupKey(long chunk, ParticleEffect effect) {
+    }
+
+    /**
+     * Emissions of one particle type in one chunk, with the bounds of their positions.
+     */
+    private static final class Pending {
+        private final ParticleEffect effect;
+        private float[] values = new float[INITIAL_CAPACITY * EMISSION_STRIDE];
+        private int[] counts = new int[INITIAL_CAPACITY];
+        private int size;
+        private double minX = Double.MAX_VALUE;
+        private double minY = Double.MAX_VALUE;
+        private double minZ = Double.MAX_VALUE;
+        private double maxX = -Double.MAX_VALUE;
+        private double maxY = -Double.MAX_VALUE;
+        private double maxZ = -Double.MAX_VALUE;
+
+        Pending(ParticleEffect effect) {
+            this.effect = effect;
+        }
+
+        void add(double x, double y, double z, int count, double dx, double dy, double dz,
+                double speed) {
+            if (size == counts.length) {
+                counts = Arrays.copyOf(counts, size * 2);
+                values = Arrays.copyOf(values, size * 2 * EMISSION_STRIDE);
+            }
+            int offset = size * EMISSION_STRIDE;
+            values[offset] = (float) x;
+            values[offset + 1] = (float) y;
+            values[offset + 2] = (float) z;
+            values[offset + 3] = (float) dx;
+            values[offset + 4] = (float) dy;
+            values[offset + 5] = (float) dz;
+            values[offset + 6] = (float) speed;
+            counts[size++] = count;
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            maxZ = Math.max(maxZ, z);
+        }
+
+        /**
+         * Get the squared distance from a point to the bounds of the emissions.
+         */
+        double squaredDistanceTo(double x, double y, double z) {
+            double dx = Math.max(0, Math.max(minX - x, x - maxX));
+            double dy = Math.max(0, Math.max(minY - y, y - maxY));
+            double dz = Math.max(0, Math.max(minZ - z, z - maxZ));
+            return dx * dx + dy * dy + dz * dz;
+        }
+    }
+
+    /**
+     * Register network handlers.
+     */
+    public static void register() {
+        PayloadTypeRegistry.playS2C().register(ParticleBatchPayload.ID, ParticleBatchPayload.CODEC);
+
+        MAM.LOGGER.info("Registered particle batch network handlers");
+    }
+
+    /**
+     * Queue a particle emission for the end of the tick. Takes the same arguments as
+     * {@code ServerWorld.spawnParticles} and is shown the same way by clients.
+     *
+     * @param world The world
+     * @param effect The particle
+     * @param x Center x
+     * @param y Center y
+     * @param z Center z
+     * @param count Number of particles, or 0 for one particle moving along the spread
+     * @param dx Spread along x
+     * @param dy Spread along y
+     * @param dz Spread along z
+     * @param speed Particle speed
+     */
+    public static void emit(ServerWorld world, ParticleEffect effect, double x, double y, double z,
+            int count, double dx, double dy, double dz, double speed) {
+        if (world == null || effect == null) {
+            throw new IllegalArgumentException("World and particle cannot be null");
+        }
+        long chunk = ChunkPos.toLong((int) Math.floor(x) >> 4, (int) Math.floor(z) >> 4);
+        queued.computeIfAbsent(world, w -> new LinkedHashMap<>())
+                .computeIfAbsent(new GroupKey(chunk, effect), key -> new Pending(effect))
+                .add(x, y, z, Math.max(0, count), dx, dy, dz, speed);
+    }
+
+    /**
+     * Send the emissions queued this tick to nearby players.
+     */
+    public static void flush() {
+        if (queued.isEmpty()) {
+            return;
+        }
+        Map<ServerWorld, Map<GroupKey, Pending>> batch = queued;
+        queued = new HashMap<>();
+        int budget = ManaConfig.getParticleBudgetPerTick();
+        for (Map.Entry<ServerWorld, Map<GroupKey, Pending>> entry : batch.entrySet()) {
+            for (ServerPlayerEntity player : entry.getKey().getPlayers()) {
+                send(player, entry.getValue().values(), budget);
+            }
+        }
+    }
+
+    /**
+     * Drop all queued emissions (e.g., on server shutdown).
+     */
+    public static void clear() {
+        queued.clear();
+    }
+
+    private static void send(ServerPlayerEntity player, Iterable<Pending> pending, int budget) {
+        double px = player.getX();
+        double py = player.getY();
+        double pz = player.getZ();
+
+        // Select the emissions in view; whole chunks out of view are skipped by their bounds
+        List<Pending> groups = new ArrayList<>();
+        List<int[]> selections = new ArrayList<>();
+        long requested = 0;
+        for (Pending group : pending) {
+            if (group.squaredDistanceTo(px, py, pz) > VIEW_DISTANCE_SQUARED) {
+                continue;
+            }
+            // Matching emission indices, preceded by their number
+            int[] selected = new int[group.size + 1];
+            int matched = 0;
+            for (int e = 0; e < group.size; e++) {
+                int offset = e * EMISSION_STRIDE;
+                if (player.squaredDistanceTo(group.values[offset], group.values[offset + 1],
+                        group.values[offset + 2]) <= VIEW_DISTANCE_SQUARED) {
+                    selected[++matched] = e;
+                    requested += Math.max(1, group.counts[e]);
+                }
+            }
+            if (matched > 0) {
+                selected[0] = matched;
+                groups.add(group);
+                selections.add(selected);
+            }
+        }
+        if (groups.isEmpty()) {
+            return;
+        }
+
+        // Thin out evenly when over budget, carrying the fractional part across emissions
+        double scale = budget > 0 && requested > budget ? (double) budget / requested : 1.0;
+        double carry = 0.0;
+        List<Group> out = new ArrayList<>(groups.size());
+        int emissions = 0;
+        for (int g = 0; g < groups.size(); g++) {
+            Pending group = groups.get(g);
+            int[] selected = selections.get(g);
+            float[] values = new float[selected[0] * EMISSION_STRIDE];
+            int[] counts = new int[selected[0]];
+            int size = 0;
+            for (int s = 1; s <= selected[0]; s++) {
+                int e = selected[s];
+                int count = group.counts[e];
+                if (scale < 1.0) {
+                    carry += Math.max(1, count) * scale;
+                    int allowed = (int) carry;
+                    if (allowed == 0) {
+                        continue;
+                    }
+                    carry -= allowed;
+                    count = count == 0 ? 0 : Math.min(count, allowed);
+                }
+                System.arraycopy(group.values, e * EMISSION_STRIDE, values, size * EMISSION_STRIDE,
+                        EMISSION_STRIDE);
+                counts[size++] = count;
+            }
+            if (size == 0) {
+                continue;
+            }
+            if (emissions + size > MAX_PAYLOAD_EMISSIONS && !out.isEmpty()) {
+                ServerPlayNetworking.send(player, new ParticleBatchPayload(out));
+                out = new ArrayList<>();
+                emissions = 0;
+            }
+            out.add(new Group(group.effect, Arrays.copyOf(values, size * EMISSION_STRIDE),
+                    Arrays.copyOf(counts, size)));
+            emissions += size;
+        }
+        if (!out.isEmpty()) {
+            ServerPlayNetworking.send(player, new ParticleBatchPayload(out));
+        }
+    }
+
+    /**
+     * Emissions of one particle type.
+     *
+     * @param effect The particle
+     * @param values Position, spread and speed, {@link #EMISSION_STRIDE} values per emission
+     * @param counts Number of particles per emission
+     */
+    public record Group(ParticleEffect effect, float[] values, int[] counts) {
+    }
+
+    /**
+     * Payload bundling a tick's particle emissions near a player (server to client). Each group is
+     * its particle, then its emissions as seven floats and a varint count.
+     *
+     * @param groups Emissions grouped by chunk and particle type
+     */
+    public record ParticleBatchPayload(List<Group> groups) implements CustomPayload {
+        public static final CustomPayload.Id<ParticleBatchPayload> ID =
+                new CustomPayload.Id<>(PARTICLE_BATCH_ID);
+
+        public static final PacketCodec<RegistryByteBuf, ParticleBatchPayload> CODEC =
+                CustomPayload.codecOf(ParticleBatchPayload::write, ParticleBatchPayload::read);
+
+        private void write(RegistryByteBuf buf) {
+            buf.writeVarInt(groups.size());
+            for (Group group : groups) {
+                ParticleTypes.PACKET_CODEC.encode(buf, group.effect());
+                int[] counts = group.counts();
+                float[] values = group.values();
+                buf.writeVarInt(counts.length);
+                for (int e = 0; e < counts.length; e++) {
+                    for (int j = 0; j < EMISSION_STRIDE; j++) {
+                        buf.writeFloat(values[e * EMISSION_STRIDE + j]);
+                    }
+                    buf.writeVarInt(counts[e]);
+                }
+            }
+        }
+
+        private static ParticleBatchPayload read(RegistryByteBuf buf) {
+            int groupCount = buf.readVarInt();
+            List<Group> groups = new ArrayList<>(groupCount);
+            for (int g = 0; g < groupCount; g++) {
+                ParticleEffect effect = ParticleTypes.PACKET_CODEC.decode(buf);
+                int size = buf.readVarInt();
+                float[] values = new float[size * EMISSION_STRIDE];
+                int[] counts = new int[size];
+                for (int e = 0; e < size; e++) {
+                    for (int j = 0; j < EMISSION_STRIDE; j++) {
+                        values[e * EMISSION_STRIDE + j] = buf.readFloat();
+                    }
+                    counts[e] = buf.readVarInt();
+                }
+                groups.add(new Group(effect, values, counts));
+            }
+            return new ParticleBatchPayload(groups);
+        }
+
+        @Override
+        public Id<? extends CustomPayload> getId() {
+            return ID;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package dk.mosberg.network;
+
+import dk.mosberg.MAM;
+import net.fabricmc.fabric.api.networking.v1.PayloadTypeRegistry;
+import net.minecraft.network.RegistryByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.util.Identifier;
+
+/**
+ * Network handler for simulated spell projectiles. Projectiles started and ended during a tick are
+ * sent to each nearby client in one spawn and one impact packet; clients simulate the flight in
+ * between themselves, so no entity tracking or per-projectile packets are involved.
+ */
+public class ProjectileNetworkHandler {
+    public static final Identifier PROJECTILE_SPAWN_ID =
+            Identifier.of(MAM.MOD_ID, "projectile_spawn");
+    public static final Identifier PROJECTILE_IMPACT_ID =
+            Identifier.of(MAM.MOD_ID, "projectile_impact");
+
+    /** Values per projectile in {@link ProjectileSpawnPayload#motion()}. */
+    public static final int MOTION_STRIDE = 6;
+    /** Values per projectile in {@link ProjectileImpactPayload#positions()}. */
+    public static final int POSITION_STRIDE = 3;
+
+    /** The projectile hit an entity or a block. */
+    public static final byte IMPACT_HIT = 0;
+    /** The projectile ran out of time or left the loaded world. */
+    public static final byte IMPACT_EXPIRED = 1;
+
+    /**
+     * Register network handlers.
+     */
+    public static void register() {
+        PayloadTypeRegistry.playS2C().register(ProjectileSpawnPayload.ID,
+                ProjectileSpawnPayload.CODEC);
+        PayloadTypeRegistry.playS2C().register(ProjectileImpactPayload.ID,
+                ProjectileImpactPayload.CODEC);
+
+        MAM.LOGGER.info("Registered projectile network handlers");
+    }
+
+    /**
+     * Batch of projectiles launched this tick. Each projectile is its id as a varint, its spell
+     * school ordinal as a byte, then position and velocity as six floats.
+     *
+     * @param ids Projectile ids
+     * @param schools Spell school ordinals
+     * @param motion Position and velocity, {@link #MOTION_STRIDE} values per projectile
+     */
+    public record ProjectileSpawnPayload(int[] ids, byte[] schools, float[] motion)
+            implements CustomPayload {
+        public static final CustomPayload.Id<ProjectileSpawnPayload> ID =
+                new CustomPayload.Id<>(PROJECTILE_SPAWN_ID);
+
+        public static final PacketCodec<RegistryByteBuf, ProjectileSpawnPayload> CODEC =
+                CustomPayload.codecOf(ProjectileSpawnPayload::write, ProjectileSpawnPayload::read);
+
+        private void write(RegistryByteBuf buf) {
+            buf.writeVarInt(ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                buf.writeVarInt(ids[i]);
+                buf.writeByte(schools[i]);
+                for (int j = 0; j < MOTION_STRIDE; j++) {
+                    buf.writeFloat(motion[i * MOTION_STRIDE + j]);
+                }
+            }
+        }
+
+        private static ProjectileSpawnPayload read(RegistryByteBuf buf) {
+            int count = buf.readVarInt();
+            int[] ids = new int[count];
+            byte[] schools = new byte[count];
+            float[] motion = new float[count * MOTION_STRIDE];
+            for (int i = 0; i < count; i++) {
+                ids[i] = buf.readVarInt();
+                schools[i] = buf.readByte();
+                for (int j = 0; j < MOTION_STRIDE; j++) {
+                    motion[i * MOTION_STRIDE + j] = buf.readFloat();
+                }
+            }
+            return new ProjectileSpawnPayload(ids, schools, motion);
+        }
+
+        @Override
+        public Id<? extends CustomPayload> getId() {
+            return ID;
+        }
+    }
+
+    /**
+     * Batch of projectiles that ended this tick. Each projectile is its id as a varint, the kind of
+     * impact as a byte, then its final position as three floats.
+     *
+     * @param ids Projectile ids
+     * @param kinds {@link #IMPACT_HIT} or {@link #IMPACT_EXPIRED}
+     * @param positions Final positions, {@link #POSITION_STRIDE} values per projectile
+     */
+    public record ProjectileImpactPayload(int[] ids, byte[] kinds, float[] positions)
+            implements CustomPayload {
+        public static final CustomPayload.Id<ProjectileImpactPayload> ID =
+                new CustomPayload.Id<>(PROJECTILE_IMPACT_ID);
+
+        public static final PacketCodec<RegistryByteBuf, ProjectileImpactPayload> CODEC =
+                CustomPayload.codecOf(ProjectileImpactPayload::write,
+                        ProjectileImpactPayload::read);
+
+        private void write(RegistryByteBuf buf) {
+            buf.writeVarInt(ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                buf.writeVarInt(ids[i]);
+                buf.writeByte(kinds[i]);
+                for (int j = 0; j < POSITION_STRIDE; j++) {
+                    buf.writeFloat(positions[i * POSITION_STRIDE + j]);
+                }
+            }
+        }
+
+        private static ProjectileImpactPayload read(RegistryByteBuf buf) {
+            int count = buf.readVarInt();
+            int[] ids = new int[count];
+            byte[] kinds = new byte[count];
+            float[] positions = new float[count * POSITION_STRIDE];
+            for (int i = 0; i < count; i++) {
+                ids[i] = buf.readVarInt();
+                kinds[i] = buf.readByte();
+                for (int j = 0; j < POSITION_STRIDE; j++) {
+                    positions[i * POSITION_STRIDE + j] = buf.readFloat();
+                }
+            }
+            return new ProjectileImpactPayload(ids, kinds, positions);
+        }
+
+        @Override
+        public Id<? extends CustomPayload> getId() {
+            return ID;
+        }
+    }
+}
@@ -1,9 +1,13 @@
-// Implement the SpellCastPayload class and its codec
-// Handle potential exceptions during spell casting
-// ...existing code...
 package dk.mosberg.network;
 
+import java.util.List;
 import dk.mosberg.MAM;
+import dk.mosberg.mana.ManaComponent;
+import dk.mosberg.mana.ManaPoolType;
+import dk.mosberg.registry.MagicRegistry;
+import dk.mosberg.registry.RegistrySnapshot;
+import dk.mosberg.spell.Spell;
+import dk.mosberg.spell.SpellCastScheduler;
 import dk.mosberg.spell.SpellCaster;
 import net.fabricmc.fabric.api.networking.v1.PayloadTypeRegistry;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
@@ -11,56 +15,229 @@ import net.minecraft.network.RegistryByteBuf;
 import net.minecraft.network.codec.PacketCodec;
 import net.minecraft.network.codec.PacketCodecs;
 import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.Identifier;
 
 /**
  * Network handler for spell casting. Allows clients to request spell casts on the server.
+ *
+ * <p>
+ * Spells are referred to by the dense network ids of the current {@link RegistrySnapshot}. The id
+ * table is sent to each client on join and whenever the registry is reloaded, and cast requests
+ * carry the table's epoch, so a request made against an outdated table is dropped instead of
+ * casting the wrong spell.
+ *
+ * <p>
+ * Requests pass through the {@link CastRateLimiter} as soon as they are received and are executed
+ * from its queue on the server tick, so a flooding client cannot stall the server.
+ *
+ * <p>
+ * Clients predict the outcome of their casts and tag each request with a sequence number. Every
+ * request the server executes or drops for a stale id table is answered with a
+ * {@link CastResultPayload} for its sequence number, carrying what the cast actually charged to
+ * each pool. A player's requests are answered in the order they were sent, so a client can also
+ * roll back any older prediction that was never answered, e.g. because the rate limiter dropped or
+ * replaced its request.
  */
 public class SpellCastNetworkHandler {
     public static final Identifier SPELL_CAST_ID = Identifier.of(MAM.MOD_ID, "spell_cast");
+    public static final Identifier SPELL_IDS_ID = Identifier.of(MAM.MOD_ID, "spell_ids");
+    public static final Identifier CAST_RESULT_ID = Identifier.of(MAM.MOD_ID, "cast_result");
+
+    private static final int POOL_COUNT = ManaPoolType.values().length;
+    // Charge of a rejected or channelled cast, never written to
+    private static final double[] NOTHING_CHARGED = new double[POOL_COUNT];
 
     /**
      * Register network handlers.
      */
     public static void register() {
-        // Register payload type
+        // Register payload types
         PayloadTypeRegistry.playC2S().register(SpellCastPayload.ID, SpellCastPayload.CODEC);
+        PayloadTypeRegistry.playS2C().register(SpellIdsPayload.ID, SpellIdsPayload.CODEC);
+        PayloadTypeRegistry.playS2C().register(CastResultPayload.ID, CastResultPayload.CODEC);
 
-        // Register server-side receiver
+        // Register server-side receiver; requests over the player's rate are dropped here
         ServerPlayNetworking.registerGlobalReceiver(SpellCastPayload.ID, (payload, context) -> {
-            context.server().execute(() -> {
-                ServerPlayerEntity player = context.player();
-                Identifier spellId = Identifier.of(payload.spellId());
-
-                MAM.LOGGER.debug("Received spell cast request from {}: {}",
-                        player.getName().getString(), spellId);
-
-                // Attempt to cast the spell
-                boolean success = SpellCaster.castSpell(player, spellId);
-
-                if (success) {
-                    MAM.LOGGER.info("Player {} successfully cast spell {}",
-                            player.getName().getString(), spellId);
-                } else {
-                    MAM.LOGGER.debug("Player {} failed to cast spell {}",
-                            player.getName().getString(), spellId);
-                }
-            });
+            CastRateLimiter.offer(context.player().getUuid(), payload);
         });
 
         MAM.LOGGER.info("Registered spell cast network handlers");
     }
 
     /**
-     * Payload for spell cast packets (client to server).
+     * Execute the spell cast requests admitted since the last tick. Must be called on the server
+     * thread.
+     *
+     * @param server The server
      */
-    public record SpellCastPayload(String spellId) implements CustomPayload {
+    public static void tick(MinecraftServer server) {
+        CastRateLimiter.drain(server, SpellCastNetworkHandler::handleCast);
+    }
+
+    private static void handleCast(ServerPlayerEntity player, SpellCastPayload payload) {
+        RegistrySnapshot snapshot = MagicRegistry.getSnapshot();
+        if (payload.epoch() != snapshot.getNetworkEpoch()) {
+            // The client cast against an older registry, bring its id table up to date
+            MAM.LOGGER.debug("Dropped spell cast from {} with outdated spell ids",
+                    player.getName().getString());
+            sendSpellIds(player);
+            sendCastResult(player, payload.sequence(), false, 0, NOTHING_CHARGED);
+            return;
+        }
+
+        Spell spell = snapshot.getSpellByNetworkId(payload.spellId());
+        if (spell == null) {
+            MAM.LOGGER.debug("Dropped spell cast from {} with invalid spell id {}",
+                    player.getName().getString(), payload.spellId());
+            sendCastResult(player, payload.sequence(), false, 0, NOTHING_CHARGED);
+            return;
+        }
+
+        MAM.LOGGER.debug("Received spell cast request from {}: {}",
+                player.getName().getString(), spell.getId());
+
+        // Attempt to cast the spell, the client settles its prediction against the real charge
+        double[] charged = new double[POOL_COUNT];
+        boolean success = SpellCaster.castSpell(player, spell, charged);
+        sendCastResult(player, payload.sequence(), success,
+                (int) SpellCastScheduler.getRemainingCooldown(player, spell), charged);
+
+        if (success) {
+            MAM.LOGGER.info("Player {} successfully cast spell {}", player.getName().getString(),
+                    spell.getId());
+        } else {
+            MAM.LOGGER.debug("Player {} failed to cast spell {}", player.getName().getString(),
+                    spell.getId());
+        }
+    }
+
+    private static void sendCastResult(ServerPlayerEntity player, int sequence, boolean accepted,
+            int cooldownTicks, double[] charged) {
+        ServerPlayNetworking.send(player,
+                new CastResultPayload(sequence, accepted, cooldownTicks, charged));
+    }
+
+    /**
+     * Send the spell id table of the current registry to a client.
+     *
+     * @param player The player to send to
+     */
+    public static void sendSpellIds(ServerPlayerEntity player) {
+        RegistrySnapshot snapshot = MagicRegistry.getSnapshot();
+        ServerPlayNetworking.send(player,
+                new SpellIdsPayload(snapshot.getNetworkEpoch(), snapshot.getSpellNetworkIds()));
+    }
+
+    /**
+     * Send the spell id table of the current registry to every client, e.g. after a reload.
+     *
+     * @param server The server
+     */
+    public static void sendSpellIds(MinecraftServer server) {
+        RegistrySnapshot snapshot = MagicRegistry.getSnapshot();
+        SpellIdsPayload payload =
+                new SpellIdsPayload(snapshot.getNetworkEpoch(), snapshot.getSpellNetworkIds());
+        for (ServerPlayerEntity player : server.getPlayerManager().getPlayerList()) {
+            ServerPlayNetworking.send(player, payload);
+        }
+    }
+
+    /**
+     * Payload for spell cast packets (client to server). All values are varints.
+     *
+     * @param sequence Client sequence number of the cast, echoed in its {@link CastResultPayload}
+     * @param epoch Epoch of the id table the client used
+     * @param spellId Network id of the spell
+     */
+    public record SpellCastPayload(int sequence, int epoch, int spellId) implements CustomPayload {
         public static final CustomPayload.Id<SpellCastPayload> ID =
                 new CustomPayload.Id<>(SPELL_CAST_ID);
 
-        public static final PacketCodec<RegistryByteBuf, SpellCastPayload> CODEC = PacketCodec
-                .tuple(PacketCodecs.STRING, SpellCastPayload::spellId, SpellCastPayload::new);
+        public static final PacketCodec<RegistryByteBuf, SpellCastPayload> CODEC =
+                PacketCodec.tuple(PacketCodecs.VAR_INT, SpellCastPayload::sequence,
+                        PacketCodecs.VAR_INT, SpellCastPayload::epoch, PacketCodecs.VAR_INT,
+                        SpellCastPayload::spellId, SpellCastPayload::new);
+
+        @Override
+        public CustomPayload.Id<? extends CustomPayload> getId() {
+            return ID;
+        }
+    }
+
+    /**
+     * Payload for the spell id table (server to client).
+     *
+     * @param epoch Epoch of the table
+     * @param spellIds Spell identifiers indexed by network id
+     */
+    public record SpellIdsPayload(int epoch, List<Identifier> spellIds) implements CustomPayload {
+        public static final CustomPayload.Id<SpellIdsPayload> ID =
+                new CustomPayload.Id<>(SPELL_IDS_ID);
+
+        public static final PacketCodec<RegistryByteBuf, SpellIdsPayload> CODEC =
+                PacketCodec.tuple(PacketCodecs.VAR_INT, SpellIdsPayload::epoch,
+                        Identifier.PACKET_CODEC.collect(PacketCodecs.toList()),
+                        SpellIdsPayload::spellIds, SpellIdsPayload::new);
+
+        @Override
+        public CustomPayload.Id<? extends CustomPayload> getId() {
+            return ID;
+        }
+    }
+
+    /**
+     * Payload answering a spell cast request (server to client). After the varint header a
+     * one-byte mask selects the pools the cast charged, bit {@code ordinal} per pool, and each
+     * selected amount follows as a varint in fixed point with scale
+     * {@link ManaComponent#SYNC_SCALE}.
+     *
+     * @param sequence Sequence number of the request
+     * @param accepted Whether the spell was cast or started channelling
+     * @param cooldownTicks Ticks left on the spell's cooldown for the player after the request
+     * @param charged Amount the server charged to each pool by ordinal; all zero unless an instant
+     *        cast was accepted
+     */
+    public record CastResultPayload(int sequence, boolean accepted, int cooldownTicks,
+            double[] charged) implements CustomPayload {
+        public static final CustomPayload.Id<CastResultPayload> ID =
+                new CustomPayload.Id<>(CAST_RESULT_ID);
+
+        public static final PacketCodec<RegistryByteBuf, CastResultPayload> CODEC =
+                CustomPayload.codecOf(CastResultPayload::write, CastResultPayload::read);
+
+        private void write(RegistryByteBuf buf) {
+            buf.writeVarInt(sequence);
+            buf.writeBoolean(accepted);
+            buf.writeVarInt(cooldownTicks);
+            int mask = 0;
+            for (int p = 0; p < POOL_COUNT; p++) {
+                if (charged[p] != 0) {
+                    mask |= 1 << p;
+                }
+            }
+            buf.writeByte(mask);
+            for (int p = 0; p < POOL_COUNT; p++) {
+                if ((mask & (1 << p)) != 0) {
+                    buf.writeVarInt((int) Math.round(charged[p] * ManaComponent.SYNC_SCALE));
+                }
+            }
+        }
+
+        private static CastResultPayload read(RegistryByteBuf buf) {
+            int sequence = buf.readVarInt();
+            boolean accepted = buf.readBoolean();
+            int cooldownTicks = buf.readVarInt();
+            int mask = buf.readUnsignedByte();
+            double[] charged = new double[POOL_COUNT];
+            for (int p = 0; p < POOL_COUNT; p++) {
+                if ((mask & (1 << p)) != 0) {
+                    charged[p] = buf.readVarInt() / (double) ManaComponent.SYNC_SCALE;
+                }
+            }
+            return new CastResultPayload(sequence, accepted, cooldownTicks, charged);
+        }
 
         @Override
         public CustomPayload.Id<? extends CustomPayload> getId() {
@@ -0,0 +1,394 @@
+package dk.mosberg.registry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import com.google.gson.JsonObject;
+import dk.mosberg.MAM;
+import dk.mosberg.ritual.Ritual;
+import dk.mosberg.ritual.RitualLoader;
+import dk.mosberg.spell.Spell;
+import dk.mosberg.spell.SpellLoader;
+import net.minecraft.util.Identifier;
+
+/**
+ * Versioned binary cache of parsed spells and rituals, stored under {@code mam_cache/} in the run
+ * directory. Each cache file is keyed by a SHA-256 hash of the source files it was built from and
+ * by the mod version that parsed them; when both match, the file is memory-mapped and decoded
+ * directly instead of parsing the JSON again. Otherwise the JSON is parsed and the cache rewritten.
+ * A file written by another mod version is discarded as a whole, since its parser may have read
+ * the same sources differently.
+ *
+ * <p>
+ * Loads are incremental: the parsed result of every file is kept per content source together with
+ * the file's hash, in memory and in the cache file. Only added and changed files are parsed again;
+ * unchanged files reuse their previous result and removed files drop out, after which the snapshot
+ * is rebuilt from the per-file results.
+ *
+ * <p>
+ * Layout: magic, format version, mod version, source hash, time of the last rebuild in ms, then the
+ * spell files followed by the ritual files. Each is a count and per file its identifier, content
+ * hash and parsed value (a presence flag followed by the format of its {@code write} method).
+ * Strings are a length in bytes (-1 for null) followed by UTF-8.
+ */
+public final class ContentCache {
+    private static final Path DIRECTORY = Paths.get("mam_cache");
+    private static final int MAGIC = 0x4D414D43; // "MAMC"
+    private static final int VERSION = 3;
+    private static final String MOD_VERSION = MAM.getModVersion();
+    private static final int HASH_LENGTH = 32;
+
+    private static final Kind<Spell> SPELLS =
+            new Kind<>("spell", SpellLoader::parseFile, Spell::write, Spell::read);
+    private static final Kind<Ritual> RITUALS =
+            new Kind<>("ritual", RitualLoader::parseFile, Ritual::write, Ritual::read);
+
+    // Last loaded state of each content source
+    private static final Map<String, State> STATES = new HashMap<>();
+
+    /**
+     * Result of a load.
+     *
+     * @param snapshot The loaded content
+     * @param fromCache true if the content was decoded from the cache
+     * @param loadMillis Time the load took, including reading and hashing the sources
+     * @param parseMillis Time parsing the JSON and rebuilding the snapshot took, when it was last
+     *        done
+     * @param reusedFiles Number of unchanged files whose previous result was reused
+     * @param parsedFiles Number of added or changed files that were parsed
+     * @param removedFiles Number of files that no longer exist
+     */
+    public record Loaded(RegistrySnapshot snapshot, boolean fromCache, long loadMillis,
+            long parseMillis, int reusedFiles, int parsedFiles, int removedFiles) {
+    }
+
+    // The parsed value of one file, null if the file failed to parse or validate
+    private record ParsedFile<T>(byte[] hash, T value) {
+    }
+
+    // Per-file results in load order, and the snapshot built from them if it is current
+    private record State(byte[] hash, long parseMillis, Map<Identifier, ParsedFile<Spell>> spells,
+            Map<Identifier, ParsedFile<Ritual>> rituals, RegistrySnapshot snapshot) {
+    }
+
+    private record Kind<T>(String name, Function<JsonObject, T> parser, Writer<T> writer,
+            Function<ByteBuffer, T> reader) {
+    }
+
+    @FunctionalInterface
+    private interface Writer<T> {
+        void write(T value, DataOutput out) throws IOException;
+    }
+
+    private record Update<T>(Map<Identifier, ParsedFile<T>> files, int reused, int parsed,
+            int removed) {
+    }
+
+    private ContentCache() {}
+
+    /**
+     * Load spells and rituals from their source files, through the cache if it is up to date and
+     * reparsing only the files that changed since the last load otherwise.
+     *
+     * @param name Cache file name, one per content source
+     * @param spellFiles Spell file contents
+     * @param ritualFiles Ritual file contents
+     * @return The loaded content
+     */
+    public static Loaded load(String name, List<DataFileScanner.Content> spellFiles,
+            List<DataFileScanner.Content> ritualFiles) {
+        return load(DIRECTORY, name, spellFiles, ritualFiles);
+    }
+
+    static synchronized Loaded load(Path directory, String name,
+            List<DataFileScanner.Content> spellFiles, List<DataFileScanner.Content> ritualFiles) {
+        long startTime = System.currentTimeMillis();
+        Path file = directory.resolve(name + ".bin");
+        byte[] hash = hash(spellFiles, ritualFiles);
+        int fileCount = spellFiles.size() + ritualFiles.size();
+
+        State previous = STATES.get(name);
+        boolean fromCache = false;
+        if (previous == null) {
+            previous = read(file, hash);
+            fromCache = previous != null;
+        }
+        if (previous != null && Arrays.equals(previous.hash(), hash)) {
+            if (previous.snapshot() == null) {
+                previous = withSnapshot(previous, previous.parseMillis());
+                STATES.put(name, previous);
+            }
+            return new Loaded(previous.snapshot(), fromCache,
+                    System.currentTimeMillis() - startTime, previous.parseMillis(), fileCount, 0,
+                    0);
+        }
+
+        Update<Spell> spells =
+                update(SPELLS, spellFiles, previous != null ? previous.spells() : Map.of());
+        Update<Ritual> rituals =
+                update(RITUALS, ritualFiles, previous != null ? previous.rituals() : Map.of());
+        State state = withSnapshot(new State(hash, 0, spells.files(), rituals.files(), null),
+                System.currentTimeMillis() - startTime);
+        STATES.put(name, state);
+        write(file, state);
+
+        return new Loaded(state.snapshot(), false, state.parseMillis(), state.parseMillis(),
+                spells.reused() + rituals.reused(), spells.parsed() + rituals.parsed(),
+                spells.removed() + rituals.removed());
+    }
+
+    /**
+     * Drop the in-memory state of a content source, so its next load starts from the cache file as
+     * after a restart.
+     *
+     * @param name Cache file name of the content source
+     */
+    static synchronized void forget(String name) {
+        STATES.remove(name);
+    }
+
+    private static State withSnapshot(State state, long parseMillis) {
+        RegistrySnapshot snapshot =
+                new RegistrySnapshot(SpellLoader.collect(values(state.spells())),
+                        RitualLoader.collect(values(state.rituals())));
+        return new State(state.hash(), parseMillis, state.spells(), state.rituals(), snapshot);
+    }
+
+    private static <T> List<T> values(Map<Identifier, ParsedFile<T>> files) {
+        List<T> values = new ArrayList<>(files.size());
+        for (ParsedFile<T> file : files.values()) {
+            values.add(file.value());
+        }
+        return values;
+    }
+
+    private static <T> Update<T> update(Kind<T> kind, List<DataFileScanner.Content> contents,
+            Map<Identifier, ParsedFile<T>> previous) {
+        Map<Identifier, ParsedFile<T>> files = new LinkedHashMap<>();
+        List<DataFileScanner.Content> changed = new ArrayList<>();
+        int reused = 0;
+        for (DataFileScanner.Content content : contents) {
+            if (files.containsKey(content.id())) {
+                continue; // Another mod's copy of the same file, keep the first
+            }
+            ParsedFile<T> old = previous.get(content.id());
+            if (old != null && Arrays.equals(old.hash(), content.hash())) {
+                files.put(content.id(), old);
+                reused++;
+            } else {
+                files.put(content.id(), null); // Filled in below, keeps the load order
+                changed.add(content);
+            }
+        }
+
+        List<T> parsed = DataFileScanner.parseAll(changed, kind.parser(), kind.name());
+        for (int i = 0; i < changed.size(); i++) {
+            DataFileScanner.Content content = changed.get(i);
+            files.put(content.id(), new ParsedFile<>(content.hash(), parsed.get(i)));
+        }
+
+        int removed = 0;
+        for (Identifier id : previous.keySet()) {
+            if (!files.containsKey(id)) {
+                removed++;
+            }
+        }
+        return new Update<>(files, reused, changed.size(), removed);
+    }
+
+    private static byte[] hash(List<DataFileScanner.Content> spellFiles,
+            List<DataFileScanner.Content> ritualFiles) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (List<DataFileScanner.Content> files : List.of(spellFiles, ritualFiles)) {
+                digest.update(ByteBuffer.allocate(4).putInt(files.size()).array());
+                for (DataFileScanner.Content content : files) {
+                    byte[] id = content.id().toString().getBytes(StandardCharsets.UTF_8);
+                    digest.update(ByteBuffer.allocate(4).putInt(id.length).array());
+                    digest.update(id);
+                    digest.update(content.hash());
+                }
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static State read(Path file, byte[] hash) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        // Check the header with a plain read first; only up to date files are mapped, since a
+        // mapped file cannot be replaced on some platforms until it is unmapped
+        boolean current;
+        try (DataInputStream in =
+                new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || !MOD_VERSION.equals(readString(in))) {
+                return null;
+            }
+            byte[] stored = new byte[HASH_LENGTH];
+            in.readFully(stored);
+            current = Arrays.equals(stored, hash);
+        } catch (IOException e) {
+            MAM.LOGGER.warn("Failed to read content cache header: {}", file, e);
+            return null;
+        }
+
+        try {
+            ByteBuffer in;
+            if (current) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            } else {
+                in = ByteBuffer.wrap(Files.readAllBytes(file));
+            }
+            in.position(4 + 4); // Magic and version
+            readString(in); // Mod version, checked above
+            byte[] stored = new byte[HASH_LENGTH];
+            in.get(stored);
+            long parseMillis = in.getLong();
+            Map<Identifier, ParsedFile<Spell>> spells = readFiles(in, SPELLS);
+            Map<Identifier, ParsedFile<Ritual>> rituals = readFiles(in, RITUALS);
+            return new State(stored, parseMillis, spells, rituals, null);
+        } catch (Exception e) {
+            MAM.LOGGER.warn("Discarding unreadable content cache: {}", file, e);
+            return null;
+        }
+    }
+
+    private static <T> Map<Identifier, ParsedFile<T>> readFiles(ByteBuffer in, Kind<T> kind) {
+        int count = in.getInt();
+        Map<Identifier, ParsedFile<T>> files = new LinkedHashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            Identifier id = Identifier.of(readString(in));
+            byte[] hash = new byte[HASH_LENGTH];
+            in.get(hash);
+            T value = in.get() != 0 ? kind.reader().apply(in) : null;
+            files.put(id, new ParsedFile<>(hash, value));
+        }
+        return files;
+    }
+
+    private static void write(Path file, State state) {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            try (DataOutputStream out =
+                    new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeString(out, MOD_VERSION);
+                out.write(state.hash());
+                out.writeLong(state.parseMillis());
+                writeFiles(out, state.spells(), SPELLS);
+                writeFiles(out, state.rituals(), RITUALS);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            MAM.LOGGER.warn("Failed to write content cache: {}", file, e);
+        }
+    }
+
+    private static <T> void writeFiles(DataOutput out, Map<Identifier, ParsedFile<T>> files,
+            Kind<T> kind) throws IOException {
+        out.writeInt(files.size());
+        for (Map.Entry<Identifier, ParsedFile<T>> entry : files.entrySet()) {
+            writeString(out, entry.getKey().toString());
+            out.write(entry.getValue().hash());
+            T value = entry.getValue().value();
+            out.writeBoolean(value != null);
+            if (value != null) {
+                kind.writer().write(value, out);
+            }
+        }
+    }
+
+    /**
+     * Write a nullable string.
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a string written by {@link #writeString(DataOutput, String)}.
+     */
+    public static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write a list of strings.
+     */
+    public static void writeStrings(DataOutput out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    /**
+     * Read a list written by {@link #writeStrings(DataOutput, List)}.
+     */
+    public static List<String> readStrings(ByteBuffer in) {
+        int count = in.getInt();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,224 @@
+package dk.mosberg.registry;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import dk.mosberg.MAM;
+import net.fabricmc.loader.api.FabricLoader;
+import net.fabricmc.loader.api.ModContainer;
+import net.minecraft.resource.Resource;
+import net.minecraft.resource.ResourceFinder;
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.util.Identifier;
+
+/**
+ * Discovers JSON data files under {@code data/<namespace>/<directory>/**}, either in every loaded
+ * mod or through a resource manager (which includes data packs), then reads and parses them in
+ * parallel on a shared worker pool. Nothing is registered here; callers merge the parsed results
+ * and publish them in one step.
+ */
+public final class DataFileScanner {
+    private static final int WORKER_COUNT =
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private static ExecutorService workers;
+
+    /**
+     * A discovered data file.
+     *
+     * @param id Identifier derived from the namespace and the path below the directory
+     * @param source Opens the file for reading
+     */
+    public record DataFile(Identifier id, Source source) {
+    }
+
+    /**
+     * Opens a data file for reading.
+     */
+    @FunctionalInterface
+    public interface Source {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * The raw content of a data file.
+     *
+     * @param id The file's identifier
+     * @param bytes The file's bytes
+     * @param hash SHA-256 hash of the file's bytes
+     */
+    public record Content(Identifier id, byte[] bytes, byte[] hash) {
+    }
+
+    private DataFileScanner() {}
+
+    /**
+     * Find every JSON file in {@code data/<namespace>/<directory>/} and its subdirectories across
+     * all loaded mods, sorted by identifier so duplicate resolution is deterministic.
+     *
+     * @param directory The data directory, e.g. "spells"
+     * @return The discovered files
+     */
+    public static List<DataFile> scan(String directory) {
+        List<DataFile> files = new ArrayList<>();
+        for (ModContainer mod : FabricLoader.getInstance().getAllMods()) {
+            for (Path root : mod.getRootPaths()) {
+                Path data = root.resolve("data");
+                if (!Files.isDirectory(data)) {
+                    continue;
+                }
+                try (Stream<Path> namespaces = Files.list(data)) {
+                    for (Path namespace : namespaces.toList()) {
+                        collect(namespace, directory, files);
+                    }
+                } catch (IOException e) {
+                    MAM.LOGGER.error("Failed to scan data of mod {}", mod.getMetadata().getId(), e);
+                }
+            }
+        }
+        files.sort(Comparator.comparing(DataFile::id));
+        return files;
+    }
+
+    private static void collect(Path namespaceDir, String directory, List<DataFile> out)
+            throws IOException {
+        Path base = namespaceDir.resolve(directory);
+        if (!Files.isDirectory(base)) {
+            return;
+        }
+        String namespace = namespaceDir.getFileName().toString().replace("/", "");
+        try (Stream<Path> walk = Files.walk(base)) {
+            for (Path file : walk.filter(p -> p.toString().endsWith(".json")).toList()) {
+                String relative = base.relativize(file).toString().replace('\\', '/');
+                String path = relative.substring(0, relative.length() - ".json".length());
+                Identifier id = Identifier.tryParse(namespace + ":" + path);
+                if (id == null) {
+                    MAM.LOGGER.warn("Skipping data file with invalid name: {}", file);
+                    continue;
+                }
+                out.add(new DataFile(id, () -> Files.newInputStream(file)));
+            }
+        }
+    }
+
+    /**
+     * Find every JSON file in {@code data/<namespace>/<directory>/} visible to a resource manager,
+     * taking the highest priority pack's copy of each, sorted by identifier.
+     *
+     * @param manager The resource manager, e.g. the server's data pack manager
+     * @param directory The data directory, e.g. "spells"
+     * @return The discovered files
+     */
+    public static List<DataFile> find(ResourceManager manager, String directory) {
+        ResourceFinder finder = ResourceFinder.json(directory);
+        List<DataFile> files = new ArrayList<>();
+        for (Map.Entry<Identifier, Resource> entry : finder.findResources(manager).entrySet()) {
+            Resource resource = entry.getValue();
+            files.add(new DataFile(finder.toResourceId(entry.getKey()), resource::getInputStream));
+        }
+        files.sort(Comparator.comparing(DataFile::id));
+        return files;
+    }
+
+    /**
+     * Read and hash files in parallel. Files that fail to read are logged and left out; the
+     * remaining contents keep the order of {@code files}.
+     *
+     * @param files The files to read
+     * @param kind Human-readable content kind for log messages, e.g. "spell"
+     * @return The file contents
+     */
+    public static List<Content> readAll(List<DataFile> files, String kind) {
+        List<Content> contents = runAll(files, file -> read(file, kind));
+        contents.removeIf(content -> content == null);
+        return contents;
+    }
+
+    private static Content read(DataFile file, String kind) {
+        try (InputStream input = file.source().open()) {
+            byte[] bytes = input.readAllBytes();
+            return new Content(file.id(), bytes, sha256(bytes));
+        } catch (IOException e) {
+            MAM.LOGGER.error("I/O error loading {}: {}", kind, file.id(), e);
+            return null;
+        }
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Parse file contents in parallel. Files that fail to parse are logged and yield null, so the
+     * results line up with {@code contents}.
+     *
+     * @param contents The file contents to parse
+     * @param parser Converts a file's JSON object into a result, or null if it is invalid
+     * @param kind Human-readable content kind for log messages, e.g. "spell"
+     * @return The parsed results, one per content
+     */
+    public static <T> List<T> parseAll(List<Content> contents, Function<JsonObject, T> parser,
+            String kind) {
+        return runAll(contents, content -> parse(content, parser, kind));
+    }
+
+    private static <T> T parse(Content content, Function<JsonObject, T> parser, String kind) {
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(content.bytes()),
+                StandardCharsets.UTF_8)) {
+            return parser.apply(JsonParser.parseReader(reader).getAsJsonObject());
+        } catch (Exception e) {
+            MAM.LOGGER.error("Error parsing {}: {}", kind, content.id(), e);
+        }
+        return null;
+    }
+
+    private static <I, T> List<T> runAll(List<I> inputs, Function<I, T> task) {
+        ExecutorService executor = workers();
+        List<CompletableFuture<T>> futures = new ArrayList<>(inputs.size());
+        for (I input : inputs) {
+            futures.add(CompletableFuture.supplyAsync(() -> task.apply(input), executor));
+        }
+
+        List<T> results = new ArrayList<>(inputs.size());
+        for (CompletableFuture<T> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    private static synchronized ExecutorService workers() {
+        if (workers == null) {
+            AtomicInteger counter = new AtomicInteger();
+            workers = Executors.newFixedThreadPool(WORKER_COUNT, runnable -> {
+                Thread thread =
+                        new Thread(runnable, "MAM Data Worker #" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return workers;
+    }
+}
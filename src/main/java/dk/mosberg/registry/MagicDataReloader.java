@@ -0,0 +1,57 @@
+package dk.mosberg.registry;
+
+import dk.mosberg.MAM;
+import dk.mosberg.ritual.RitualLoader;
+import dk.mosberg.spell.SpellLoader;
+import net.fabricmc.fabric.api.resource.IdentifiableResourceReloadListener;
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.resource.SinglePreparationResourceReloader;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.profiler.Profiler;
+
+/**
+ * Server data reload listener for spells and rituals. JSON is read and parsed into a complete
+ * {@link RegistrySnapshot} on the reload executor, including files from data packs; the snapshot is
+ * swapped into the registry on the main thread, so {@code /reload} and data pack changes never
+ * parse on the server tick. Unchanged content is decoded from the {@link ContentCache} instead of
+ * being parsed.
+ */
+public class MagicDataReloader extends SinglePreparationResourceReloader<ContentCache.Loaded>
+        implements IdentifiableResourceReloadListener {
+    public static final Identifier ID = Identifier.of(MAM.MOD_ID, "magic_data");
+
+    /**
+     * Load spells and rituals visible to a resource manager. Safe to call off the server thread.
+     */
+    public static ContentCache.Loaded load(ResourceManager manager) {
+        return ContentCache.load("data",
+                DataFileScanner.readAll(DataFileScanner.find(manager, SpellLoader.DIRECTORY),
+                        "spell"),
+                DataFileScanner.readAll(DataFileScanner.find(manager, RitualLoader.DIRECTORY),
+                        "ritual"));
+    }
+
+    /**
+     * Load the spells and rituals shipped by loaded mods, without data packs.
+     */
+    public static ContentCache.Loaded loadBuiltIn() {
+        return ContentCache.load("builtin",
+                DataFileScanner.readAll(DataFileScanner.scan(SpellLoader.DIRECTORY), "spell"),
+                DataFileScanner.readAll(DataFileScanner.scan(RitualLoader.DIRECTORY), "ritual"));
+    }
+
+    @Override
+    public Identifier getFabricId() {
+        return ID;
+    }
+
+    @Override
+    protected ContentCache.Loaded prepare(ResourceManager manager, Profiler profiler) {
+        return load(manager);
+    }
+
+    @Override
+    protected void apply(ContentCache.Loaded loaded, ResourceManager manager, Profiler profiler) {
+        MagicRegistry.apply(loaded, true);
+    }
+}
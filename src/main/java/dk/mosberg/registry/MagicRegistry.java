@@ -2,26 +2,37 @@ package dk.mosberg.registry;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 import dk.mosberg.MAM;
 import dk.mosberg.ritual.Ritual;
 import dk.mosberg.ritual.RitualCategory;
-import dk.mosberg.ritual.RitualLoader;
 import dk.mosberg.spell.CastType;
 import dk.mosberg.spell.Spell;
-import dk.mosberg.spell.SpellLoader;
 import dk.mosberg.spell.SpellSchool;
+import net.fabricmc.fabric.api.resource.ResourceManagerHelper;
+import net.minecraft.resource.ResourceType;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.util.Identifier;
 
 /**
  * Central registry providing access to all spells and rituals. Provides caching, validation, and
  * query methods for magic content.
+ *
+ * <p>
+ * Content is loaded off the main thread: built-in data in the background at startup, and data pack
+ * content by {@link MagicDataReloader} whenever server data is (re)loaded. Each load builds a
+ * complete immutable {@link RegistrySnapshot} that is swapped in through one volatile reference, so
+ * readers never observe a partially reloaded registry and queries never copy.
  */
 public class MagicRegistry {
+    private static volatile RegistrySnapshot snapshot = RegistrySnapshot.EMPTY;
     private static boolean initialized = false;
+    // Set once server data has been applied, so the background startup load cannot override it
+    private static boolean serverDataApplied = false;
 
     /**
-     * Initialize the magic registry by loading all spells and rituals.
+     * Initialize the magic registry: register the data reload listener and start loading the
+     * built-in spells and rituals in the background.
      */
     public static void initialize() {
         if (initialized) {
@@ -30,39 +41,65 @@ public class MagicRegistry {
         }
 
         MAM.LOGGER.info("Initializing Magic Registry...");
-        long startTime = System.currentTimeMillis();
-
-        try {
-            // Load spells
-            SpellLoader.loadSpells();
-
-            // Load rituals
-            RitualLoader.loadRituals();
-
-            int spellCount = SpellLoader.getAllSpells().size();
-            int ritualCount = RitualLoader.getAllRituals().size();
-            long duration = System.currentTimeMillis() - startTime;
-
-            initialized = true;
-            MAM.LOGGER.info("Magic Registry initialized with {} spells and {} rituals in {}ms",
-                    spellCount, ritualCount, duration);
+        ResourceManagerHelper.get(ResourceType.SERVER_DATA)
+                .registerReloadListener(new MagicDataReloader());
+        initialized = true;
+
+        CompletableFuture.supplyAsync(MagicDataReloader::loadBuiltIn)
+                .thenAccept(loaded -> apply(loaded, false)).exceptionally(e -> {
+                    MAM.LOGGER.error("Failed to load built-in magic content", e);
+                    return null;
+                });
+    }
 
-            logStatistics();
-        } catch (Exception e) {
-            MAM.LOGGER.error("Failed to initialize Magic Registry", e);
-            throw new RuntimeException("Magic Registry initialization failed", e);
+    /**
+     * Publish a loaded snapshot, replacing the current one atomically.
+     *
+     * @param loaded The loaded content with its fully built snapshot
+     * @param serverData true if the content comes from the server's data packs
+     * @return true if the snapshot was applied, false if newer server data takes precedence
+     */
+    static synchronized boolean apply(ContentCache.Loaded loaded, boolean serverData) {
+        if (!serverData && serverDataApplied) {
+            return false;
+        }
+        serverDataApplied |= serverData;
+        snapshot = loaded.snapshot();
+
+        int spellCount = snapshot.getSpells().size();
+        int ritualCount = snapshot.getRituals().size();
+        if (loaded.fromCache()) {
+            MAM.LOGGER.info("Magic Registry loaded {} spells and {} rituals from cache in {}ms"
+                    + " (parsing the JSON took {}ms)", spellCount, ritualCount,
+                    loaded.loadMillis(), loaded.parseMillis());
+        } else {
+            MAM.LOGGER.info("Magic Registry loaded {} spells and {} rituals in {}ms"
+                    + " ({} files parsed, {} reused, {} removed)", spellCount, ritualCount,
+                    loaded.parseMillis(), loaded.parsedFiles(), loaded.reusedFiles(),
+                    loaded.removedFiles());
         }
+        logStatistics();
+        return true;
     }
 
     /**
-     * Log detailed statistics about loaded content.
+     * Get the current registry snapshot. Hold on to the returned object to perform several
+     * queries against one consistent registry state.
+     */
+    public static RegistrySnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Log detailed statistics about loaded content, read from the snapshot's indexes.
      */
     private static void logStatistics() {
+        RegistrySnapshot current = snapshot;
         MAM.LOGGER.info("=== Magic Registry Statistics ===");
 
         // Spell statistics
         for (SpellSchool school : SpellSchool.values()) {
-            int count = getSpellsBySchool(school).size();
+            int count = current.getSpellListBySchool(school).size();
             if (count > 0) {
                 MAM.LOGGER.info("  {} School: {} spells", school.getDisplayName(), count);
             }
@@ -70,7 +107,7 @@ public class MagicRegistry {
 
         // Ritual statistics
         for (RitualCategory category : RitualCategory.values()) {
-            int count = getRitualsByCategory(category).size();
+            int count = current.getRitualListByCategory(category).size();
             if (count > 0) {
                 MAM.LOGGER.info("  {} Rituals: {} rituals", category.getDisplayName(), count);
             }
@@ -78,22 +115,25 @@ public class MagicRegistry {
     }
 
     /**
-     * Reload all magic data from disk.
+     * Reload all magic data from the server's data packs. Files are read off the server thread,
+     * only files that changed since the last load are parsed again, and the result is applied on
+     * the server thread.
+     *
+     * @param server The server
+     * @return Future completing on the server thread with the load result once it is applied
      */
-    public static void reload() {
+    public static CompletableFuture<ContentCache.Loaded> reload(MinecraftServer server) {
         MAM.LOGGER.info("Reloading Magic Registry...");
         long startTime = System.currentTimeMillis();
 
-        try {
-            SpellLoader.reload();
-            RitualLoader.reload();
-
-            long duration = System.currentTimeMillis() - startTime;
-            MAM.LOGGER.info("Magic Registry reloaded in {}ms", duration);
-            logStatistics();
-        } catch (Exception e) {
-            MAM.LOGGER.error("Failed to reload Magic Registry", e);
-        }
+        return CompletableFuture
+                .supplyAsync(() -> MagicDataReloader.load(server.getResourceManager()))
+                .thenApplyAsync(loaded -> {
+                    apply(loaded, true);
+                    long duration = System.currentTimeMillis() - startTime;
+                    MAM.LOGGER.info("Magic Registry reloaded in {}ms", duration);
+                    return loaded;
+                }, server);
     }
 
     /**
@@ -115,7 +155,7 @@ public class MagicRegistry {
         if (id == null) {
             return null;
         }
-        return SpellLoader.getSpell(id);
+        return snapshot.getSpells().get(id);
     }
 
     /**
@@ -159,48 +199,57 @@ public class MagicRegistry {
      * @return Immutable collection of all spells
      */
     public static Collection<Spell> getAllSpells() {
-        return SpellLoader.getAllSpells().values();
+        return snapshot.getSpells().values();
     }
 
     /**
      * Get all spells of a specific school.
      *
      * @param school The spell school
-     * @return Collection of spells in this school
+     * @return Immutable list of spells in this school
      */
-    public static Collection<Spell> getSpellsBySchool(SpellSchool school) {
+    public static List<Spell> getSpellsBySchool(SpellSchool school) {
         if (school == null) {
             return List.of();
         }
-        return SpellLoader.getSpellsBySchool(school).values();
+        return snapshot.getSpellListBySchool(school);
     }
 
     /**
      * Get spells by cast type.
      *
      * @param castType The cast type to filter by
-     * @return Collection of spells with this cast type
+     * @return Immutable list of spells with this cast type
      */
-    public static Collection<Spell> getSpellsByCastType(CastType castType) {
+    public static List<Spell> getSpellsByCastType(CastType castType) {
         if (castType == null) {
             return List.of();
         }
-        return getAllSpells().stream().filter(spell -> spell.getCastType() == castType)
-                .collect(Collectors.toList());
+        return snapshot.getSpellListByCastType(castType);
     }
 
     /**
      * Get spells by tier.
      *
      * @param tier The tier level (1-10)
-     * @return Collection of spells at this tier
+     * @return Immutable list of spells at this tier
+     */
+    public static List<Spell> getSpellsByTier(int tier) {
+        return snapshot.getSpellsByTier(tier);
+    }
+
+    /**
+     * Get spells of a school at a specific tier.
+     *
+     * @param school The spell school
+     * @param tier The tier level (1-10)
+     * @return Immutable list of matching spells
      */
-    public static Collection<Spell> getSpellsByTier(int tier) {
-        if (tier < 1 || tier > 10) {
+    public static List<Spell> getSpellsBySchoolAndTier(SpellSchool school, int tier) {
+        if (school == null) {
             return List.of();
         }
-        return getAllSpells().stream().filter(spell -> spell.getTier() == tier)
-                .collect(Collectors.toList());
+        return snapshot.getSpellsBySchoolAndTier(school, tier);
     }
 
     /**
@@ -210,7 +259,7 @@ public class MagicRegistry {
      * @return true if spell exists
      */
     public static boolean hasSpell(Identifier id) {
-        return id != null && SpellLoader.hasSpell(id);
+        return id != null && snapshot.getSpells().containsKey(id);
     }
 
     /**
@@ -219,7 +268,7 @@ public class MagicRegistry {
      * @return Number of loaded spells
      */
     public static int getSpellCount() {
-        return SpellLoader.getSpellCount();
+        return snapshot.getSpells().size();
     }
 
     // ===== RITUAL METHODS =====
@@ -234,7 +283,7 @@ public class MagicRegistry {
         if (id == null) {
             return null;
         }
-        return RitualLoader.getRitual(id);
+        return snapshot.getRituals().get(id);
     }
 
     /**
@@ -278,20 +327,20 @@ public class MagicRegistry {
      * @return Immutable collection of all rituals
      */
     public static Collection<Ritual> getAllRituals() {
-        return RitualLoader.getAllRituals().values();
+        return snapshot.getRituals().values();
     }
 
     /**
      * Get all rituals of a specific category.
      *
      * @param category The ritual category
-     * @return Collection of rituals in this category
+     * @return Immutable list of rituals in this category
      */
-    public static Collection<Ritual> getRitualsByCategory(RitualCategory category) {
+    public static List<Ritual> getRitualsByCategory(RitualCategory category) {
         if (category == null) {
             return List.of();
         }
-        return RitualLoader.getRitualsByCategory(category).values();
+        return snapshot.getRitualListByCategory(category);
     }
 
     /**
@@ -301,7 +350,7 @@ public class MagicRegistry {
      * @return true if ritual exists
      */
     public static boolean hasRitual(Identifier id) {
-        return id != null && RitualLoader.hasRitual(id);
+        return id != null && snapshot.getRituals().containsKey(id);
     }
 
     /**
@@ -310,7 +359,7 @@ public class MagicRegistry {
      * @return Number of loaded rituals
      */
     public static int getRitualCount() {
-        return RitualLoader.getRitualCount();
+        return snapshot.getRituals().size();
     }
 
     // ===== UTILITY METHODS =====
@@ -0,0 +1,233 @@
+package dk.mosberg.registry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import dk.mosberg.ritual.Ritual;
+import dk.mosberg.ritual.RitualCategory;
+import dk.mosberg.spell.CastType;
+import dk.mosberg.spell.Spell;
+import dk.mosberg.spell.SpellSchool;
+import net.minecraft.util.Identifier;
+
+/**
+ * Immutable set of all loaded spells and rituals together with their indexes. A snapshot is built
+ * in full off the main thread for every load and published by {@link MagicRegistry} through a
+ * single volatile reference, so readers always see one consistent registry and never need to copy
+ * it. Iteration order is by identifier.
+ *
+ * <p>
+ * Secondary indexes (school, cast type, tier, school and tier, ritual category) are built once per
+ * snapshot into enum maps and flat arrays of immutable lists, so every query is a constant-time
+ * lookup.
+ *
+ * <p>
+ * Spells are also numbered with dense network ids in identifier order, so packets can refer to a
+ * spell by a varint and the server resolves it with an array index. The numbering is only valid for
+ * this snapshot; every snapshot gets a new epoch, which packets carry alongside the id.
+ */
+public final class RegistrySnapshot {
+    public static final int MAX_TIER = 10;
+    private static final int TIERS = MAX_TIER + 1; // Tier 0 is unused
+    private static final List<Spell> NO_SPELLS = List.of();
+    private static final AtomicInteger EPOCHS = new AtomicInteger();
+
+    static final RegistrySnapshot EMPTY = new RegistrySnapshot(Map.of(), Map.of());
+
+    private final Map<Identifier, Spell> spells;
+    private final Map<Identifier, Ritual> rituals;
+    private final Map<SpellSchool, Map<Identifier, Spell>> spellsBySchool;
+    private final Map<RitualCategory, Map<Identifier, Ritual>> ritualsByCategory;
+    private final Map<SpellSchool, List<Spell>> spellListBySchool;
+    private final Map<CastType, List<Spell>> spellListByCastType;
+    private final Map<RitualCategory, List<Ritual>> ritualListByCategory;
+    // Indexed by tier, and by school ordinal * TIERS + tier
+    private final List<Spell>[] spellsByTier;
+    private final List<Spell>[] spellsBySchoolAndTier;
+    private final int networkEpoch;
+    private final Spell[] spellsByNetworkId;
+    private final List<Identifier> spellNetworkIds;
+
+    /**
+     * Build a snapshot and all of its indexes.
+     *
+     * @param spells Spells by identifier
+     * @param rituals Rituals by identifier
+     */
+    RegistrySnapshot(Map<Identifier, Spell> spells, Map<Identifier, Ritual> rituals) {
+        this.spells = sorted(spells);
+        this.rituals = sorted(rituals);
+        this.spellsBySchool = index(this.spells, Spell::getSchool, SpellSchool.class);
+        this.ritualsByCategory = index(this.rituals, Ritual::getCategory, RitualCategory.class);
+        this.spellListBySchool = group(this.spells, Spell::getSchool, SpellSchool.class);
+        this.spellListByCastType = group(this.spells, Spell::getCastType, CastType.class);
+        this.ritualListByCategory = group(this.rituals, Ritual::getCategory, RitualCategory.class);
+        this.spellsByTier = byTier(this.spells, 1, spell -> 0);
+        this.spellsBySchoolAndTier = byTier(this.spells, SpellSchool.values().length,
+                spell -> spell.getSchool().ordinal());
+        this.networkEpoch = EPOCHS.incrementAndGet();
+        this.spellsByNetworkId = this.spells.values().toArray(new Spell[0]);
+        this.spellNetworkIds = List.copyOf(this.spells.keySet());
+    }
+
+    private static <V> Map<Identifier, V> sorted(Map<Identifier, V> values) {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(new TreeMap<>(values)));
+    }
+
+    private static <K extends Enum<K>, V> Map<K, Map<Identifier, V>> index(
+            Map<Identifier, V> values, Function<V, K> key, Class<K> type) {
+        EnumMap<K, Map<Identifier, V>> index = new EnumMap<>(type);
+        for (K constant : type.getEnumConstants()) {
+            index.put(constant, new LinkedHashMap<>());
+        }
+        for (Map.Entry<Identifier, V> entry : values.entrySet()) {
+            K k = key.apply(entry.getValue());
+            if (k != null) {
+                index.get(k).put(entry.getKey(), entry.getValue());
+            }
+        }
+        index.replaceAll((k, map) -> Collections.unmodifiableMap(map));
+        return Collections.unmodifiableMap(index);
+    }
+
+    private static <K extends Enum<K>, V> Map<K, List<V>> group(Map<Identifier, V> values,
+            Function<V, K> key, Class<K> type) {
+        EnumMap<K, List<V>> groups = new EnumMap<>(type);
+        for (K constant : type.getEnumConstants()) {
+            groups.put(constant, new ArrayList<>());
+        }
+        for (V value : values.values()) {
+            K k = key.apply(value);
+            if (k != null) {
+                groups.get(k).add(value);
+            }
+        }
+        groups.replaceAll((k, list) -> List.copyOf(list));
+        return Collections.unmodifiableMap(groups);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Spell>[] byTier(Map<Identifier, Spell> spells, int rows,
+            ToIntFunction<Spell> row) {
+        List<Spell>[] lists = new List[rows * TIERS];
+        for (Spell spell : spells.values()) {
+            int tier = spell.getTier();
+            if (tier < 1 || tier > MAX_TIER) {
+                continue;
+            }
+            int i = row.applyAsInt(spell) * TIERS + tier;
+            if (lists[i] == null) {
+                lists[i] = new ArrayList<>();
+            }
+            lists[i].add(spell);
+        }
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = lists[i] != null ? List.copyOf(lists[i]) : NO_SPELLS;
+        }
+        return lists;
+    }
+
+    /**
+     * Get all spells by identifier.
+     */
+    public Map<Identifier, Spell> getSpells() {
+        return spells;
+    }
+
+    /**
+     * Get all rituals by identifier.
+     */
+    public Map<Identifier, Ritual> getRituals() {
+        return rituals;
+    }
+
+    /**
+     * Get the spells of a school by identifier.
+     */
+    public Map<Identifier, Spell> getSpellsBySchool(SpellSchool school) {
+        return spellsBySchool.get(school);
+    }
+
+    /**
+     * Get the rituals of a category by identifier.
+     */
+    public Map<Identifier, Ritual> getRitualsByCategory(RitualCategory category) {
+        return ritualsByCategory.get(category);
+    }
+
+    /**
+     * Get the spells of a school.
+     */
+    public List<Spell> getSpellListBySchool(SpellSchool school) {
+        return spellListBySchool.get(school);
+    }
+
+    /**
+     * Get the spells of a cast type.
+     */
+    public List<Spell> getSpellListByCastType(CastType castType) {
+        return spellListByCastType.get(castType);
+    }
+
+    /**
+     * Get the spells of a tier.
+     *
+     * @param tier The tier, 1 to {@link #MAX_TIER}
+     */
+    public List<Spell> getSpellsByTier(int tier) {
+        return tier >= 1 && tier <= MAX_TIER ? spellsByTier[tier] : NO_SPELLS;
+    }
+
+    /**
+     * Get the spells of a school at a tier.
+     *
+     * @param school The spell school
+     * @param tier The tier, 1 to {@link #MAX_TIER}
+     */
+    public List<Spell> getSpellsBySchoolAndTier(SpellSchool school, int tier) {
+        if (tier < 1 || tier > MAX_TIER) {
+            return NO_SPELLS;
+        }
+        return spellsBySchoolAndTier[school.ordinal() * TIERS + tier];
+    }
+
+    /**
+     * Get the rituals of a category.
+     */
+    public List<Ritual> getRitualListByCategory(RitualCategory category) {
+        return ritualListByCategory.get(category);
+    }
+
+    /**
+     * Get the epoch of this snapshot's network ids. Different for every snapshot.
+     */
+    public int getNetworkEpoch() {
+        return networkEpoch;
+    }
+
+    /**
+     * Get a spell by its network id.
+     *
+     * @param networkId The network id
+     * @return The spell, or null if the id is out of range
+     */
+    public Spell getSpellByNetworkId(int networkId) {
+        return networkId >= 0 && networkId < spellsByNetworkId.length
+                ? spellsByNetworkId[networkId]
+                : null;
+    }
+
+    /**
+     * Get the spell identifiers indexed by network id.
+     */
+    public List<Identifier> getSpellNetworkIds() {
+        return spellNetworkIds;
+    }
+}
@@ -3,8 +3,12 @@ package dk.mosberg.ritual;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import dk.mosberg.registry.ContentCache;
 import net.minecraft.util.Identifier;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -122,6 +126,52 @@ public class Ritual {
         return builder.build();
     }
 
+    /**
+     * Write this ritual in the binary content cache format.
+     */
+    public void write(DataOutput out) throws IOException {
+        ContentCache.writeString(out, id.toString());
+        ContentCache.writeString(out, name);
+        ContentCache.writeString(out, category.getId());
+        ContentCache.writeString(out, description);
+        ContentCache.writeStrings(out, ritualItems);
+        out.writeDouble(manaCost);
+        out.writeInt(durationSeconds);
+        out.writeInt(cooldownSeconds);
+        out.writeInt(levelRequirement);
+        out.writeBoolean(pattern != null);
+        if (pattern != null) {
+            pattern.write(out);
+        }
+        out.writeBoolean(effect != null);
+        if (effect != null) {
+            effect.write(out);
+        }
+    }
+
+    /**
+     * Read a ritual written by {@link #write(DataOutput)}.
+     */
+    public static Ritual read(ByteBuffer in) {
+        Builder builder = new Builder();
+        builder.id = Identifier.of(ContentCache.readString(in));
+        builder.name = ContentCache.readString(in);
+        builder.category = RitualCategory.fromId(ContentCache.readString(in));
+        builder.description = ContentCache.readString(in);
+        builder.ritualItems = ContentCache.readStrings(in);
+        builder.manaCost = in.getDouble();
+        builder.durationSeconds = in.getInt();
+        builder.cooldownSeconds = in.getInt();
+        builder.levelRequirement = in.getInt();
+        if (in.get() != 0) {
+            builder.pattern = RitualPattern.read(in);
+        }
+        if (in.get() != 0) {
+            builder.effect = RitualEffect.read(in);
+        }
+        return builder.build();
+    }
+
     private static class Builder {
         private Identifier id;
         private String name;
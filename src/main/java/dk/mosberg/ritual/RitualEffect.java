@@ -2,11 +2,15 @@
 // ...existing code...
 package dk.mosberg.ritual;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import dk.mosberg.registry.ContentCache;
 
 /**
  * Represents the effect a ritual produces when completed.
@@ -56,4 +60,24 @@ public class RitualEffect {
 
         return new RitualEffect(type, buffs, duration, summonEntity);
     }
+
+    /**
+     * Write this effect in the binary content cache format.
+     */
+    public void write(DataOutput out) throws IOException {
+        ContentCache.writeString(out, type);
+        ContentCache.writeStrings(out, buffs);
+        out.writeInt(duration);
+        ContentCache.writeString(out, summonEntity);
+    }
+
+    /**
+     * Read an effect written by {@link #write(DataOutput)}.
+     */
+    public static RitualEffect read(ByteBuffer in) {
+        String type = ContentCache.readString(in);
+        List<String> buffs = ContentCache.readStrings(in);
+        int duration = in.getInt();
+        return new RitualEffect(type, buffs, duration, ContentCache.readString(in));
+    }
 }
@@ -10,6 +10,8 @@ import dk.mosberg.entity.FireElementalEntity;
 import dk.mosberg.mana.ManaComponent;
 import dk.mosberg.mana.ManaManager;
 import dk.mosberg.mana.ManaPoolType;
+import dk.mosberg.spell.AoeResolver;
+import dk.mosberg.spell.ManaCostPolicy;
 import net.minecraft.entity.effect.StatusEffectInstance;
 import net.minecraft.registry.Registries;
 import net.minecraft.server.network.ServerPlayerEntity;
@@ -75,10 +77,11 @@ public class RitualExecutor {
         // Check mana cost
         ManaComponent mana = ManaManager.getComponent(player);
         double manaCost = ritual.getManaCost();
+        ManaPoolType[] order = ManaCostPolicy.getRitualOrder();
 
-        if (!mana.has(ManaPoolType.PERSONAL, manaCost)) {
+        if (mana.getAvailable(order) < manaCost) {
             sendErrorMessage(player, String.format("Insufficient mana! (need %.1f, have %.1f)",
-                    manaCost, mana.getPool(ManaPoolType.PERSONAL).getCurrent()));
+                    manaCost, mana.getAvailable(order)));
             return false;
         }
 
@@ -111,15 +114,22 @@ public class RitualExecutor {
             return false;
         }
 
-        // Consume mana
-        if (!mana.consume(ManaPoolType.PERSONAL, manaCost)) {
+        // Consume mana; the earlier check may be stale, so this is the authoritative one
+        double[] charged = new double[ManaPoolType.values().length];
+        if (!mana.tryConsumeCascade(order, manaCost, charged)) {
             sendErrorMessage(player, "Failed to consume mana!");
             return false;
         }
 
-        // Execute ritual effects
+        // Execute ritual effects; area effects resolve at the end of the tick and undo the
+        // activation themselves if they fail
+        Runnable onFailure = () -> {
+            mana.refund(charged);
+            ritualCooldowns.remove(cooldownKey, now);
+            sendErrorMessage(player, "Ritual execution failed!");
+        };
         try {
-            executeRitualEffects(player, ritual, centerPos);
+            executeRitualEffects(player, ritual, centerPos, onFailure);
             ritualCooldowns.put(cooldownKey, now);
             sendSuccessMessage(player, "Ritual " + ritual.getId().getPath() + " activated!");
             MAM.LOGGER.info("Player {} executed ritual {} (cost: {} mana)",
@@ -127,7 +137,7 @@ public class RitualExecutor {
             return true;
         } catch (Exception e) {
             // Refund mana on failure
-            mana.add(ManaPoolType.PERSONAL, manaCost);
+            mana.refund(charged);
             sendErrorMessage(player, "Ritual execution failed!");
             MAM.LOGGER.error("Failed to execute ritual {} for player {}", ritual.getId(),
                     player.getName().getString(), e);
@@ -229,7 +239,7 @@ public class RitualExecutor {
      * Execute the effects of a ritual.
      */
     private static void executeRitualEffects(ServerPlayerEntity player, Ritual ritual,
-            BlockPos centerPos) {
+            BlockPos centerPos, Runnable onFailure) {
         RitualEffect effect = ritual.getEffect();
         if (effect == null) {
             return;
@@ -240,8 +250,8 @@ public class RitualExecutor {
 
         switch (effect.getType()) {
             case "ascend" -> executeAscendEffect(player, effect);
-            case "chaos" -> executeChaosEffect(player, effect, centerPos);
-            case "bind" -> executeBindEffect(player, effect, centerPos);
+            case "chaos" -> executeChaosEffect(player, effect, centerPos, onFailure);
+            case "bind" -> executeBindEffect(player, effect, centerPos, onFailure);
             case "cosmic" -> executeCosmicEffect(player, effect);
             case "elemental_balance" -> executeElementalBalanceEffect(player, effect);
             case "heal" -> executeHealEffect(player, effect);
@@ -252,7 +262,7 @@ public class RitualExecutor {
             case "accelerate" -> executeAccelerateEffect(player, effect);
             case "transform" -> executeTransformEffect(player, effect);
             case "void_embrace" -> executeVoidEmbraceEffect(player, effect);
-            case "vortex" -> executeVortexEffect(player, effect, centerPos);
+            case "vortex" -> executeVortexEffect(player, effect, centerPos, onFailure);
             case "nature_heal" -> executeNatureHealEffect(player, effect);
             default -> applyGenericBuffs(player, effect);
         }
@@ -264,25 +274,24 @@ public class RitualExecutor {
     }
 
     private static void executeChaosEffect(ServerPlayerEntity player, RitualEffect effect,
-            BlockPos pos) {
+            BlockPos pos, Runnable onFailure) {
         applyBuffsToPlayer(player, effect.getBuffs(), effect.getDuration());
 
         net.minecraft.server.world.ServerWorld world =
                 (net.minecraft.server.world.ServerWorld) player.getEntityWorld();
         net.minecraft.util.math.Box area = new net.minecraft.util.math.Box(pos).expand(4.0);
 
-        for (net.minecraft.entity.LivingEntity target : world.getEntitiesByClass(
-                net.minecraft.entity.LivingEntity.class, area,
-                entity -> !entity.isSpectator() && entity != player)) {
-            target.damage(world, player.getDamageSources().magic(), 6.0f);
-            target.setOnFireFor(4);
-        }
+        AoeResolver.queue(world, area, entity -> !entity.isSpectator() && entity != player,
+                target -> {
+                    target.damage(world, player.getDamageSources().magic(), 6.0f);
+                    target.setOnFireFor(4);
+                }, null, onFailure);
 
         sendSuccessMessage(player, "Chaos erupts from the ritual!");
     }
 
     private static void executeBindEffect(ServerPlayerEntity player, RitualEffect effect,
-            BlockPos pos) {
+            BlockPos pos, Runnable onFailure) {
         applyBuffsToPlayer(player, effect.getBuffs(), effect.getDuration());
 
         net.minecraft.server.world.ServerWorld world =
@@ -290,18 +299,17 @@ public class RitualExecutor {
         net.minecraft.util.math.Box area = new net.minecraft.util.math.Box(pos).expand(6.0);
         int durationTicks = effect.getDuration() * 20;
 
-        for (net.minecraft.entity.LivingEntity target : world.getEntitiesByClass(
-                net.minecraft.entity.LivingEntity.class, area,
-                entity -> !entity.isSpectator() && entity != player)) {
-            target.addStatusEffect(
-                    new StatusEffectInstance(net.minecraft.entity.effect.StatusEffects.SLOWNESS,
-                            durationTicks, 4, false, true, true));
-            target.addStatusEffect(
-                    new StatusEffectInstance(net.minecraft.entity.effect.StatusEffects.WEAKNESS,
-                            durationTicks, 1, false, true, true));
-            target.setVelocity(net.minecraft.util.math.Vec3d.ZERO);
-            target.velocityDirty = true;
-        }
+        AoeResolver.queue(world, area, entity -> !entity.isSpectator() && entity != player,
+                target -> {
+                    target.addStatusEffect(new StatusEffectInstance(
+                            net.minecraft.entity.effect.StatusEffects.SLOWNESS, durationTicks, 4,
+                            false, true, true));
+                    target.addStatusEffect(new StatusEffectInstance(
+                            net.minecraft.entity.effect.StatusEffects.WEAKNESS, durationTicks, 1,
+                            false, true, true));
+                    target.setVelocity(net.minecraft.util.math.Vec3d.ZERO);
+                    target.velocityDirty = true;
+                }, null, onFailure);
 
         sendSuccessMessage(player, "Enemies are bound in place!");
     }
@@ -420,23 +428,22 @@ public class RitualExecutor {
     }
 
     private static void executeVortexEffect(ServerPlayerEntity player, RitualEffect effect,
-            BlockPos pos) {
+            BlockPos pos, Runnable onFailure) {
         net.minecraft.server.world.ServerWorld world =
                 (net.minecraft.server.world.ServerWorld) player.getEntityWorld();
         net.minecraft.util.math.Box area = new net.minecraft.util.math.Box(pos).expand(6.0);
         net.minecraft.util.math.Vec3d center = net.minecraft.util.math.Vec3d.ofCenter(pos);
         float damage = 4.0f;
 
-        for (net.minecraft.entity.LivingEntity target : world.getEntitiesByClass(
-                net.minecraft.entity.LivingEntity.class, area,
-                entity -> !entity.isSpectator() && entity != player)) {
-            net.minecraft.util.math.Vec3d targetPos =
-                    new net.minecraft.util.math.Vec3d(target.getX(), target.getY(), target.getZ());
-            net.minecraft.util.math.Vec3d direction = center.subtract(targetPos);
-            target.addVelocity(direction.normalize().multiply(0.35));
-            target.velocityDirty = true;
-            target.damage(world, player.getDamageSources().magic(), damage);
-        }
+        AoeResolver.queue(world, area, entity -> !entity.isSpectator() && entity != player,
+                target -> {
+                    net.minecraft.util.math.Vec3d targetPos = new net.minecraft.util.math.Vec3d(
+                            target.getX(), target.getY(), target.getZ());
+                    net.minecraft.util.math.Vec3d direction = center.subtract(targetPos);
+                    target.addVelocity(direction.normalize().multiply(0.35));
+                    target.velocityDirty = true;
+                    target.damage(world, player.getDamageSources().magic(), damage);
+                }, null, onFailure);
 
         sendSuccessMessage(player, "A vortex erupts from the ritual!");
     }
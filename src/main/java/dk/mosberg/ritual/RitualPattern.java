@@ -1,6 +1,10 @@
 package dk.mosberg.ritual;
 
 import com.google.gson.JsonObject;
+import dk.mosberg.registry.ContentCache;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -46,4 +50,30 @@ public class RitualPattern {
 
         return new RitualPattern(type, centerBlock, rings);
     }
+
+    /**
+     * Write this pattern in the binary content cache format.
+     */
+    public void write(DataOutput out) throws IOException {
+        ContentCache.writeString(out, type);
+        ContentCache.writeString(out, centerBlock);
+        out.writeInt(rings.size());
+        for (RitualRing ring : rings) {
+            ring.write(out);
+        }
+    }
+
+    /**
+     * Read a pattern written by {@link #write(DataOutput)}.
+     */
+    public static RitualPattern read(ByteBuffer in) {
+        String type = ContentCache.readString(in);
+        String centerBlock = ContentCache.readString(in);
+        int count = in.getInt();
+        List<RitualRing> rings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rings.add(RitualRing.read(in));
+        }
+        return new RitualPattern(type, centerBlock, rings);
+    }
 }
@@ -1,6 +1,10 @@
 package dk.mosberg.ritual;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import com.google.gson.JsonObject;
+import dk.mosberg.registry.ContentCache;
 
 /**
  * Represents a ring in a ritual pattern.
@@ -41,4 +45,21 @@ public class RitualRing {
         int height = json.has("height") ? json.get("height").getAsInt() : 0;
         return new RitualRing(material, count, radius, height);
     }
+
+    /**
+     * Write this ring in the binary content cache format.
+     */
+    public void write(DataOutput out) throws IOException {
+        ContentCache.writeString(out, material);
+        out.writeInt(count);
+        out.writeInt(radius);
+        out.writeInt(height);
+    }
+
+    /**
+     * Read a ring written by {@link #write(DataOutput)}.
+     */
+    public static RitualRing read(ByteBuffer in) {
+        return new RitualRing(ContentCache.readString(in), in.getInt(), in.getInt(), in.getInt());
+    }
 }
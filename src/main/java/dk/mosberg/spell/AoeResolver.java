@@ -0,0 +1,214 @@
+package dk.mosberg.spell;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+import dk.mosberg.MAM;
+import net.minecraft.entity.LivingEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.Box;
+
+/**
+ * Per-tick resolution stage for area effects. Spells and rituals queue their area effects instead
+ * of sweeping for entities themselves. At the end of the server tick the effects queued in each
+ * world are grouped by overlapping bounds, and each group is resolved with one entity sweep over
+ * the union of its bounds, dispatching every entity found to each effect whose bounds it
+ * intersects. Overlapping effects therefore scan the same chunk sections once per tick instead of
+ * once per effect.
+ *
+ * <p>
+ * An effect whose callbacks throw is logged and dropped for the rest of the sweep without
+ * affecting the other effects of the tick, and its failure handler runs, e.g. to refund the mana
+ * charged for the cast.
+ *
+ * <p>
+ * All methods must be called on the server thread.
+ */
+public final class AoeResolver {
+    private static Map<ServerWorld, List<AreaEffect>> queued = new HashMap<>();
+
+    private AoeResolver() {}
+
+    private static final class AreaEffect {
+        private final Box bounds;
+        private final Predicate<LivingEntity> filter;
+        private final Consumer<LivingEntity> onHit;
+        private final IntConsumer onComplete;
+        private final Runnable onFailure;
+        private int hits;
+        private boolean failed;
+
+        AreaEffect(Box bounds, Predicate<LivingEntity> filter, Consumer<LivingEntity> onHit,
+                IntConsumer onComplete, Runnable onFailure) {
+            this.bounds = bounds;
+            this.filter = filter;
+            this.onHit = onHit;
+            this.onComplete = onComplete;
+            this.onFailure = onFailure;
+        }
+    }
+
+    /**
+     * Queue an area effect for resolution at the end of the tick.
+     *
+     * @param world The world the effect is in
+     * @param bounds Entities whose bounding box intersects these bounds are candidates
+     * @param filter Selects the candidates that are hit
+     * @param onHit Applies the effect to a hit entity
+     */
+    public static void queue(ServerWorld world, Box bounds, Predicate<LivingEntity> filter,
+            Consumer<LivingEntity> onHit) {
+        queue(world, bounds, filter, onHit, null, null);
+    }
+
+    /**
+     * Queue an area effect for resolution at the end of the tick.
+     *
+     * @param world The world the effect is in
+     * @param bounds Entities whose bounding box intersects these bounds are candidates
+     * @param filter Selects the candidates that are hit
+     * @param onHit Applies the effect to a hit entity
+     * @param onComplete Receives the number of entities hit once the effect is resolved, or null
+     */
+    public static void queue(ServerWorld world, Box bounds, Predicate<LivingEntity> filter,
+            Consumer<LivingEntity> onHit, IntConsumer onComplete) {
+        queue(world, bounds, filter, onHit, onComplete, null);
+    }
+
+    /**
+     * Queue an area effect for resolution at the end of the tick.
+     *
+     * @param world The world the effect is in
+     * @param bounds Entities whose bounding box intersects these bounds are candidates
+     * @param filter Selects the candidates that are hit
+     * @param onHit Applies the effect to a hit entity
+     * @param onComplete Receives the number of entities hit once the effect is resolved, or null
+     * @param onFailure Runs if the effect throws while resolving, instead of onComplete, or null
+     */
+    public static void queue(ServerWorld world, Box bounds, Predicate<LivingEntity> filter,
+            Consumer<LivingEntity> onHit, IntConsumer onComplete, Runnable onFailure) {
+        if (world == null || bounds == null || filter == null || onHit == null) {
+            throw new IllegalArgumentException("World, bounds, filter and hit action are required");
+        }
+        queued.computeIfAbsent(world, w -> new ArrayList<>())
+                .add(new AreaEffect(bounds, filter, onHit, onComplete, onFailure));
+    }
+
+    /**
+     * Resolve every queued area effect. Effects queued while resolving, e.g. by a hit, are resolved
+     * on the next tick.
+     */
+    public static void tick() {
+        if (queued.isEmpty()) {
+            return;
+        }
+        Map<ServerWorld, List<AreaEffect>> batch = queued;
+        queued = new HashMap<>();
+        for (Map.Entry<ServerWorld, List<AreaEffect>> entry : batch.entrySet()) {
+            resolve(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Drop all queued effects without resolving them (e.g., on server shutdown).
+     */
+    public static void clear() {
+        queued.clear();
+    }
+
+    private static void resolve(ServerWorld world, List<AreaEffect> effects) {
+        if (effects.size() == 1) {
+            sweep(world, effects, effects.get(0).bounds);
+            return;
+        }
+
+        // Sweep and prune along x, joining overlapping effects into groups
+        effects.sort(Comparator.comparingDouble(effect -> effect.bounds.minX));
+        int count = effects.size();
+        int[] parent = new int[count];
+        for (int i = 0; i < count; i++) {
+            parent[i] = i;
+        }
+        for (int i = 0; i < count; i++) {
+            Box bounds = effects.get(i).bounds;
+            for (int j = i + 1; j < count && effects.get(j).bounds.minX <= bounds.maxX; j++) {
+                if (bounds.intersects(effects.get(j).bounds)) {
+                    parent[find(parent, j)] = find(parent, i);
+                }
+            }
+        }
+
+        Map<Integer, List<AreaEffect>> groups = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            groups.computeIfAbsent(find(parent, i), root -> new ArrayList<>())
+                    .add(effects.get(i));
+        }
+        for (List<AreaEffect> group : groups.values()) {
+            Box union = group.get(0).bounds;
+            for (int i = 1; i < group.size(); i++) {
+                union = union.union(group.get(i).bounds);
+            }
+            sweep(world, group, union);
+        }
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void sweep(ServerWorld world, List<AreaEffect> group, Box union) {
+        for (LivingEntity target : world.getEntitiesByClass(LivingEntity.class, union,
+                entity -> true)) {
+            Box box = target.getBoundingBox();
+            for (int i = 0; i < group.size(); i++) {
+                AreaEffect effect = group.get(i);
+                if (effect.failed || target.isRemoved() || !effect.bounds.intersects(box)) {
+                    continue;
+                }
+                try {
+                    if (effect.filter.test(target)) {
+                        effect.onHit.accept(target);
+                        effect.hits++;
+                    }
+                } catch (Exception e) {
+                    fail(effect, e);
+                }
+            }
+        }
+
+        for (int i = 0; i < group.size(); i++) {
+            AreaEffect effect = group.get(i);
+            if (effect.failed || effect.onComplete == null) {
+                continue;
+            }
+            try {
+                effect.onComplete.accept(effect.hits);
+            } catch (Exception e) {
+                fail(effect, e);
+            }
+        }
+    }
+
+    private static void fail(AreaEffect effect, Exception cause) {
+        effect.failed = true;
+        MAM.LOGGER.error("Area effect at {} failed after {} hits", effect.bounds.getCenter(),
+                effect.hits, cause);
+        if (effect.onFailure == null) {
+            return;
+        }
+        try {
+            effect.onFailure.run();
+        } catch (Exception e) {
+            MAM.LOGGER.error("Area effect failure handler failed", e);
+        }
+    }
+}
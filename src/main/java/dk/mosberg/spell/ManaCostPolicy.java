@@ -0,0 +1,145 @@
+package dk.mosberg.spell;
+
+import java.util.ArrayList;
+import java.util.List;
+import dk.mosberg.MAM;
+import dk.mosberg.mana.ManaConfig;
+import dk.mosberg.mana.ManaPoolType;
+
+/**
+ * Decides which mana pools pay for a cast and in what order. Each spell school has a primary pool;
+ * whatever it cannot cover spills over to the remaining pools in PERSONAL, AURA, RESERVE order.
+ * Rituals spill PERSONAL, AURA, RESERVE.
+ *
+ * <p>
+ * Orders can be overridden in mam.properties with a comma-separated list of pool ids, per school
+ * ({@code mana.policy.fire}), per school and cast type ({@code mana.policy.fire.aoe}) or for rituals
+ * ({@code mana.policy.ritual}). Everything is compiled into a flat lookup table, so resolving a
+ * cast's order is one array read. The table is recompiled when a new configuration snapshot is
+ * published.
+ */
+public final class ManaCostPolicy {
+    private static final String KEY_PREFIX = "mana.policy.";
+    private static final int CAST_TYPES = CastType.values().length;
+    private static final ManaPoolType[] SPILL_ORDER = ManaPoolType.values();
+
+    private static volatile Compiled compiled = compile(ManaConfig.get());
+
+    /**
+     * Policy table compiled from one configuration snapshot.
+     *
+     * @param config The snapshot it was compiled from
+     * @param orders Pool orders indexed by school ordinal * CAST_TYPES + cast type ordinal
+     * @param ritualOrder Pool order for rituals
+     */
+    private record Compiled(ManaConfig.Snapshot config, ManaPoolType[][] orders,
+            ManaPoolType[] ritualOrder) {
+    }
+
+    private ManaCostPolicy() {}
+
+    /**
+     * Get the policy table for the current configuration, recompiling it if the configuration was
+     * reloaded since.
+     */
+    private static Compiled current() {
+        Compiled table = compiled;
+        ManaConfig.Snapshot config = ManaConfig.get();
+        if (table.config() != config) {
+            table = compile(config);
+            compiled = table;
+        }
+        return table;
+    }
+
+    private static Compiled compile(ManaConfig.Snapshot config) {
+        ManaPoolType[][] orders = buildTable(config);
+        ManaPoolType[] ritualOrder = parseOrder(config, KEY_PREFIX + "ritual", SPILL_ORDER);
+        MAM.LOGGER.debug("Compiled mana cost policy for {} school/cast type pairs", orders.length);
+        return new Compiled(config, orders, ritualOrder);
+    }
+
+    /**
+     * Get the pools paying for a spell, in spill order. The returned array is shared and must not
+     * be modified.
+     *
+     * @param school The spell school
+     * @param castType The cast type
+     * @return Pool types in spill order
+     */
+    public static ManaPoolType[] getOrder(SpellSchool school, CastType castType) {
+        return current().orders()[school.ordinal() * CAST_TYPES + castType.ordinal()];
+    }
+
+    /**
+     * Get the pools paying for a ritual, in spill order. The returned array is shared and must not
+     * be modified.
+     */
+    public static ManaPoolType[] getRitualOrder() {
+        return current().ritualOrder();
+    }
+
+    /**
+     * Get the pool a spell school draws from first.
+     */
+    public static ManaPoolType getPrimaryPool(SpellSchool school) {
+        // Map schools to pools:
+        // - Combat/offensive spells use PERSONAL (Primary - 250 equivalent)
+        // - Defensive/utility spells use AURA (Secondary - 500 equivalent)
+        // - Ritual/powerful spells use RESERVE (Tertiary - 1000 equivalent)
+        return switch (school) {
+            case FIRE, THUNDER, DARK, BLOOD, CHAOS -> ManaPoolType.PERSONAL;
+            case ICE, EARTH, LIGHT, WATER -> ManaPoolType.AURA;
+            case ARCANE, VOID, NATURE -> ManaPoolType.RESERVE;
+            default -> ManaPoolType.PERSONAL;
+        };
+    }
+
+    private static ManaPoolType[][] buildTable(ManaConfig.Snapshot config) {
+        ManaPoolType[][] table = new ManaPoolType[SpellSchool.values().length * CAST_TYPES][];
+        for (SpellSchool school : SpellSchool.values()) {
+            ManaPoolType[] schoolOrder =
+                    parseOrder(config, KEY_PREFIX + school.getId(), defaultOrder(school));
+            for (CastType castType : CastType.values()) {
+                table[school.ordinal() * CAST_TYPES + castType.ordinal()] = parseOrder(config,
+                        KEY_PREFIX + school.getId() + "." + castType.getId(), schoolOrder);
+            }
+        }
+        return table;
+    }
+
+    private static ManaPoolType[] defaultOrder(SpellSchool school) {
+        ManaPoolType primary = getPrimaryPool(school);
+        ManaPoolType[] order = new ManaPoolType[SPILL_ORDER.length];
+        order[0] = primary;
+        int n = 1;
+        for (ManaPoolType type : SPILL_ORDER) {
+            if (type != primary) {
+                order[n++] = type;
+            }
+        }
+        return order;
+    }
+
+    private static ManaPoolType[] parseOrder(ManaConfig.Snapshot config, String key,
+            ManaPoolType[] fallback) {
+        String value = config.getString(key);
+        if (value == null || value.isEmpty()) {
+            return fallback;
+        }
+
+        List<ManaPoolType> order = new ArrayList<>();
+        for (String id : value.split(",")) {
+            ManaPoolType type = ManaPoolType.fromId(id.trim());
+            if (type == null) {
+                MAM.LOGGER.warn("Unknown mana pool '{}' in {}, using default order", id.trim(),
+                        key);
+                return fallback;
+            }
+            if (!order.contains(type)) {
+                order.add(type);
+            }
+        }
+        return order.toArray(new ManaPoolType[0]);
+    }
+}
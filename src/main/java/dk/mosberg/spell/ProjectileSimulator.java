@@ -0,0 +1,462 @@
+package dk.mosberg.spell;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import dk.mosberg.MAM;
+import dk.mosberg.network.ProjectileNetworkHandler;
+import dk.mosberg.network.ProjectileNetworkHandler.ProjectileImpactPayload;
+import dk.mosberg.network.ProjectileNetworkHandler.ProjectileSpawnPayload;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.block.ShapeContext;
+import net.minecraft.entity.LivingEntity;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.hit.BlockHitResult;
+import net.minecraft.util.hit.HitResult;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.RaycastContext;
+
+/**
+ * Entity-free projectile engine for projectile spells that opt in with
+ * {@link SpellPlan#isSimulatedProjectile()}. Each world keeps its projectiles in parallel arrays
+ * (position, velocity, age, spell and owner) instead of spawning a {@link
+ * dk.mosberg.entity.SpellProjectileEntity} per cast, so there is no entity tracking, per-projectile
+ * tick or spawn and destroy packet.
+ *
+ * <p>
+ * Once per tick the projectiles of a world are sorted by chunk, every chunk is swept for entities
+ * once over the union of the flight segments of its projectiles, and each projectile is raycast
+ * against the blocks and those entities. Projectiles launched during the tick are sent in one spawn
+ * batch to the clients near their launch, and projectiles ended during the tick in one impact batch
+ * to the clients their spawn was sent to, wherever those players are by then. Clients simulate the
+ * flight in between with the same {@link #GRAVITY} and {@link #DRAG}.
+ *
+ * <p>
+ * All methods must be called on the server thread.
+ */
+public final class ProjectileSimulator {
+    /** Downward acceleration per tick, as for thrown items. */
+    public static final double GRAVITY = 0.03;
+    /** Velocity multiplier per tick, as for thrown items. */
+    public static final double DRAG = 0.99;
+    /** Ticks a projectile flies before it expires. */
+    public static final int MAX_AGE = 200;
+
+    // Projectiles hit entities whose bounding box expanded by this much the segment crosses
+    private static final double HIT_MARGIN = 0.3;
+    private static final double BROADCAST_RANGE_SQUARED = 96.0 * 96.0;
+    private static final int MAX_PAYLOAD_ENTRIES = 4096;
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Sort key layout: chunk x (22 bits) | chunk z (22 bits) | projectile index (20 bits)
+    private static final int INDEX_BITS = 20;
+    private static final int MAX_PROJECTILES = 1 << INDEX_BITS;
+    private static final int CELL_BITS = 22;
+    private static final int CELL_OFFSET = 1 << (CELL_BITS - 1);
+    private static final long CELL_MASK = (1L << CELL_BITS) - 1;
+
+    private static final Map<ServerWorld, ProjectileSimulator> simulators = new HashMap<>();
+    private static int nextId;
+
+    private final ServerWorld world;
+    private final EventBatch spawns = new EventBatch(ProjectileNetworkHandler.MOTION_STRIDE);
+    private final EventBatch impacts = new EventBatch(ProjectileNetworkHandler.POSITION_STRIDE);
+    // Players sent the spawn of each projectile in flight, by projectile id
+    private final Map<Integer, List<ServerPlayerEntity>> viewers = new HashMap<>();
+    private int size;
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private double[] x = new double[INITIAL_CAPACITY];
+    private double[] y = new double[INITIAL_CAPACITY];
+    private double[] z = new double[INITIAL_CAPACITY];
+    private double[] vx = new double[INITIAL_CAPACITY];
+    private double[] vy = new double[INITIAL_CAPACITY];
+    private double[] vz = new double[INITIAL_CAPACITY];
+    private int[] age = new int[INITIAL_CAPACITY];
+    private Spell[] spells = new Spell[INITIAL_CAPACITY];
+    private LivingEntity[] owners = new LivingEntity[INITIAL_CAPACITY];
+    private boolean[] ended = new boolean[INITIAL_CAPACITY];
+    private long[] keys = new long[INITIAL_CAPACITY];
+
+    private ProjectileSimulator(ServerWorld world) {
+        this.world = world;
+    }
+
+    /**
+     * Launch a simulated projectile from a player's eyes in the direction they are looking.
+     *
+     * @param player The casting player
+     * @param spell The projectile spell
+     * @return True if the projectile was launched, false if the world is at capacity
+     */
+    public static boolean launch(ServerPlayerEntity player, Spell spell) {
+        if (player == null || spell == null) {
+            throw new IllegalArgumentException("Player and spell cannot be null");
+        }
+        ServerWorld world = (ServerWorld) player.getEntityWorld();
+        Vec3d velocity = player.getVelocity();
+        Vec3d motion = player.getRotationVector().multiply(spell.getPlan().getProjectileSpeed())
+                .add(velocity.x, player.isOnGround() ? 0.0 : velocity.y, velocity.z);
+        return simulators.computeIfAbsent(world, ProjectileSimulator::new).add(player,
+                spell, player.getX(), player.getEyeY() - 0.1, player.getZ(), motion);
+    }
+
+    /**
+     * Advance every simulated projectile by one tick and send the spawns and impacts of this tick
+     * to the clients that see them.
+     */
+    public static void tickAll() {
+        Iterator<ProjectileSimulator> iterator = simulators.values().iterator();
+        while (iterator.hasNext()) {
+            ProjectileSimulator simulator = iterator.next();
+            simulator.step();
+            simulator.flush();
+            if (simulator.size == 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Get the number of simulated projectiles in flight.
+     */
+    public static int getActiveCount() {
+        int count = 0;
+        for (ProjectileSimulator simulator : simulators.values()) {
+            count += simulator.size;
+        }
+        return count;
+    }
+
+    /**
+     * Drop all projectiles without resolving them (e.g., on server shutdown).
+     */
+    public static void clear() {
+        simulators.clear();
+    }
+
+    private boolean add(LivingEntity owner, Spell spell, double px, double py, double pz,
+            Vec3d motion) {
+        if (size == MAX_PROJECTILES) {
+            MAM.LOGGER.warn("Too many simulated projectiles in {}, dropping {}",
+                    world.getRegistryKey().getValue(), spell.getId());
+            return false;
+        }
+        if (size == ids.length) {
+            grow();
+        }
+
+        int id = nextId;
+        nextId = (nextId + 1) & Integer.MAX_VALUE;
+        int i = size++;
+        ids[i] = id;
+        x[i] = px;
+        y[i] = py;
+        z[i] = pz;
+        vx[i] = motion.x;
+        vy[i] = motion.y;
+        vz[i] = motion.z;
+        age[i] = 0;
+        spells[i] = spell;
+        owners[i] = owner;
+
+        int offset = spawns.add(id, (byte) spell.getSchool().ordinal());
+        float[] values = spawns.values;
+        values[offset] = (float) px;
+        values[offset + 1] = (float) py;
+        values[offset + 2] = (float) pz;
+        values[offset + 3] = (float) motion.x;
+        values[offset + 4] = (float) motion.y;
+        values[offset + 5] = (float) motion.z;
+        return true;
+    }
+
+    private void grow() {
+        int capacity = Math.min(ids.length * 2, MAX_PROJECTILES);
+        ids = Arrays.copyOf(ids, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        z = Arrays.copyOf(z, capacity);
+        vx = Arrays.copyOf(vx, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+        vz = Arrays.copyOf(vz, capacity);
+        age = Arrays.copyOf(age, capacity);
+        spells = Arrays.copyOf(spells, capacity);
+        owners = Arrays.copyOf(owners, capacity);
+        ended = new boolean[capacity];
+        keys = new long[capacity];
+    }
+
+    private void step() {
+        if (size == 0) {
+            return;
+        }
+
+        // Group projectiles by chunk so each chunk is swept for entities once
+        for (int i = 0; i < size; i++) {
+            long cellX = (((long) Math.floor(x[i])) >> 4) + CELL_OFFSET;
+            long cellZ = (((long) Math.floor(z[i])) >> 4) + CELL_OFFSET;
+            keys[i] = ((cellX & CELL_MASK) << (CELL_BITS + INDEX_BITS))
+                    | ((cellZ & CELL_MASK) << INDEX_BITS) | i;
+        }
+        Arrays.sort(keys, 0, size);
+
+        int start = 0;
+        while (start < size) {
+            long cell = keys[start] >>> INDEX_BITS;
+            int end = start + 1;
+            while (end < size && keys[end] >>> INDEX_BITS == cell) {
+                end++;
+            }
+            stepCell(start, end);
+            start = end;
+        }
+
+        // Compact the surviving projectiles, keeping launch order
+        int live = 0;
+        for (int i = 0; i < size; i++) {
+            if (ended[i]) {
+                ended[i] = false;
+                continue;
+            }
+            if (live != i) {
+                ids[live] = ids[i];
+                x[live] = x[i];
+                y[live] = y[i];
+                z[live] = z[i];
+                vx[live] = vx[i];
+                vy[live] = vy[i];
+                vz[live] = vz[i];
+                age[live] = age[i];
+                spells[live] = spells[i];
+                owners[live] = owners[i];
+            }
+            live++;
+        }
+        Arrays.fill(spells, live, size, null);
+        Arrays.fill(owners, live, size, null);
+        size = live;
+    }
+
+    private void stepCell(int start, int end) {
+        int first = (int) (keys[start] & (MAX_PROJECTILES - 1));
+        int chunkX = (int) Math.floor(x[first]) >> 4;
+        int chunkZ = (int) Math.floor(z[first]) >> 4;
+        if (!world.isChunkLoaded(chunkX, chunkZ)) {
+            for (int k = start; k < end; k++) {
+                end((int) (keys[k] & (MAX_PROJECTILES - 1)),
+                        ProjectileNetworkHandler.IMPACT_EXPIRED);
+            }
+            return;
+        }
+
+        // One entity sweep over the union of this tick's flight segments
+        Box union = null;
+        for (int k = start; k < end; k++) {
+            int i = (int) (keys[k] & (MAX_PROJECTILES - 1));
+            Box segment = new Box(x[i], y[i], z[i], x[i] + vx[i], y[i] + vy[i], z[i] + vz[i]);
+            union = union == null ? segment : union.union(segment);
+        }
+        List<LivingEntity> candidates = world.getEntitiesByClass(LivingEntity.class,
+                union.expand(HIT_MARGIN), LivingEntity::isAlive);
+
+        for (int k = start; k < end; k++) {
+            stepProjectile((int) (keys[k] & (MAX_PROJECTILES - 1)), candidates);
+        }
+    }
+
+    private void stepProjectile(int i, List<LivingEntity> candidates) {
+        Vec3d from = new Vec3d(x[i], y[i], z[i]);
+        Vec3d to = new Vec3d(x[i] + vx[i], y[i] + vy[i], z[i] + vz[i]);
+
+        BlockHitResult blockHit = world.raycast(new RaycastContext(from, to,
+                RaycastContext.ShapeType.COLLIDER, RaycastContext.FluidHandling.NONE,
+                ShapeContext.absent()));
+        if (blockHit.getType() != HitResult.Type.MISS) {
+            to = blockHit.getPos();
+        }
+
+        LivingEntity target = null;
+        Vec3d targetPos = null;
+        double nearest = Double.MAX_VALUE;
+        for (int c = 0; c < candidates.size(); c++) {
+            LivingEntity candidate = candidates.get(c);
+            if (candidate == owners[i] || candidate.isRemoved() || !candidate.isAlive()) {
+                continue;
+            }
+            Optional<Vec3d> hit = candidate.getBoundingBox().expand(HIT_MARGIN).raycast(from, to);
+            if (hit.isPresent()) {
+                double distance = from.squaredDistanceTo(hit.get());
+                if (distance < nearest) {
+                    nearest = distance;
+                    target = candidate;
+                    targetPos = hit.get();
+                }
+            }
+        }
+
+        if (target != null) {
+            spells[i].getPlan().applyHit(world, world.getDamageSources().magic(), target);
+            moveTo(i, targetPos);
+            end(i, ProjectileNetworkHandler.IMPACT_HIT);
+            return;
+        }
+        if (blockHit.getType() != HitResult.Type.MISS) {
+            moveTo(i, to);
+            end(i, ProjectileNetworkHandler.IMPACT_HIT);
+            return;
+        }
+
+        x[i] = to.x;
+        y[i] = to.y;
+        z[i] = to.z;
+        vx[i] *= DRAG;
+        vy[i] = vy[i] * DRAG - GRAVITY;
+        vz[i] *= DRAG;
+        if (++age[i] >= MAX_AGE || y[i] < world.getBottomY() - 64) {
+            end(i, ProjectileNetworkHandler.IMPACT_EXPIRED);
+        }
+    }
+
+    private void moveTo(int i, Vec3d pos) {
+        x[i] = pos.x;
+        y[i] = pos.y;
+        z[i] = pos.z;
+    }
+
+    private void end(int i, byte kind) {
+        ended[i] = true;
+        int offset = impacts.add(ids[i], kind);
+        float[] values = impacts.values;
+        values[offset] = (float) x[i];
+        values[offset + 1] = (float) y[i];
+        values[offset + 2] = (float) z[i];
+    }
+
+    private void flush() {
+        if (spawns.count == 0 && impacts.count == 0) {
+            return;
+        }
+        // Spawns go to the players near the launch, who are remembered as the projectile's viewers
+        if (spawns.count > 0) {
+            for (ServerPlayerEntity player : world.getPlayers()) {
+                int[] selected = spawns.selectInRange(player);
+                for (int s = 1; s <= selected[0]; s++) {
+                    viewers.computeIfAbsent(spawns.ids[selected[s]], id -> new ArrayList<>(2))
+                            .add(player);
+                }
+                spawns.send(player, selected, ProjectileSpawnPayload::new);
+            }
+        }
+
+        // Impacts go to exactly the viewers, so no client keeps a projectile that already ended
+        if (impacts.count > 0) {
+            Map<ServerPlayerEntity, int[]> selections = new HashMap<>();
+            for (int e = 0; e < impacts.count; e++) {
+                List<ServerPlayerEntity> receivers = viewers.remove(impacts.ids[e]);
+                if (receivers == null) {
+                    continue;
+                }
+                for (ServerPlayerEntity player : receivers) {
+                    int[] selected = selections.computeIfAbsent(player,
+                            p -> new int[impacts.count + 1]);
+                    selected[++selected[0]] = e;
+                }
+            }
+            for (Map.Entry<ServerPlayerEntity, int[]> entry : selections.entrySet()) {
+                if (!entry.getKey().isDisconnected()) {
+                    impacts.send(entry.getKey(), entry.getValue(), ProjectileImpactPayload::new);
+                }
+            }
+        }
+        spawns.clear();
+        impacts.clear();
+    }
+
+    @FunctionalInterface
+    private interface PayloadFactory {
+        CustomPayload create(int[] ids, byte[] tags, float[] values);
+    }
+
+    /**
+     * Projectile events of one tick. Each event is a projectile id, a tag byte and {@code stride}
+     * floats starting with its position.
+     */
+    private static final class EventBatch {
+        private final int stride;
+        private int[] ids = new int[INITIAL_CAPACITY];
+        private byte[] tags = new byte[INITIAL_CAPACITY];
+        private float[] values;
+        private int count;
+
+        EventBatch(int stride) {
+            this.stride = stride;
+            this.values = new float[INITIAL_CAPACITY * stride];
+        }
+
+        /**
+         * Append an event and return the offset of its values.
+         */
+        int add(int id, byte tag) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                tags = Arrays.copyOf(tags, count * 2);
+                values = Arrays.copyOf(values, count * 2 * stride);
+            }
+            ids[count] = id;
+            tags[count] = tag;
+            return count++ * stride;
+        }
+
+        /**
+         * Select the events within broadcast range of a player.
+         *
+         * @return Matching event indices, preceded by their number
+         */
+        int[] selectInRange(ServerPlayerEntity player) {
+            int[] selected = new int[count + 1];
+            for (int e = 0; e < count; e++) {
+                int offset = e * stride;
+                if (player.squaredDistanceTo(values[offset], values[offset + 1],
+                        values[offset + 2]) <= BROADCAST_RANGE_SQUARED) {
+                    selected[++selected[0]] = e;
+                }
+            }
+            return selected;
+        }
+
+        /**
+         * Send selected events to a player, split into payloads of at most
+         * {@link #MAX_PAYLOAD_ENTRIES} events.
+         *
+         * @param selected Event indices, preceded by their number
+         */
+        void send(ServerPlayerEntity player, int[] selected, PayloadFactory factory) {
+            int matched = selected[0];
+            for (int from = 0; from < matched; from += MAX_PAYLOAD_ENTRIES) {
+                int length = Math.min(MAX_PAYLOAD_ENTRIES, matched - from);
+                int[] payloadIds = new int[length];
+                byte[] payloadTags = new byte[length];
+                float[] payloadValues = new float[length * stride];
+                for (int j = 0; j < length; j++) {
+                    int e = selected[1 + from + j];
+                    payloadIds[j] = ids[e];
+                    payloadTags[j] = tags[e];
+                    System.arraycopy(values, e * stride, payloadValues, j * stride, stride);
+                }
+                ServerPlayNetworking.send(player,
+                        factory.create(payloadIds, payloadTags, payloadValues));
+            }
+        }
+
+        void clear() {
+            count = 0;
+        }
+    }
+}
@@ -3,8 +3,12 @@ package dk.mosberg.spell;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import dk.mosberg.registry.ContentCache;
 import net.minecraft.util.Identifier;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -32,6 +36,7 @@ public class Spell {
     private final Map<String, Object> customData;
     private final String sound;
     private final VfxData vfx;
+    private final SpellPlan plan;
 
     private Spell(Builder builder) {
         this.id = builder.id;
@@ -52,6 +57,7 @@ public class Spell {
         this.customData = builder.customData;
         this.sound = builder.sound;
         this.vfx = builder.vfx;
+        this.plan = SpellPlan.compile(this);
     }
 
     // Getters
@@ -127,6 +133,13 @@ public class Spell {
         return vfx;
     }
 
+    /**
+     * Get the execution plan compiled when this spell was loaded.
+     */
+    public SpellPlan getPlan() {
+        return plan;
+    }
+
     public static Spell fromJson(JsonObject json) {
         Builder builder = new Builder();
 
@@ -170,7 +183,8 @@ public class Spell {
                     if (value.getAsJsonPrimitive().isBoolean()) {
                         builder.customData.put(entry.getKey(), value.getAsBoolean());
                     } else if (value.getAsJsonPrimitive().isNumber()) {
-                        builder.customData.put(entry.getKey(), value.getAsNumber());
+                        // Doubles, the same type the content cache reads numbers back as
+                        builder.customData.put(entry.getKey(), value.getAsDouble());
                     } else {
                         builder.customData.put(entry.getKey(), value.getAsString());
                     }
@@ -186,6 +200,96 @@ public class Spell {
         return builder.build();
     }
 
+    // Tags of custom data values in the binary content cache format
+    private static final byte CUSTOM_BOOLEAN = 0;
+    private static final byte CUSTOM_NUMBER = 1;
+    private static final byte CUSTOM_STRING = 2;
+
+    /**
+     * Write this spell in the binary content cache format.
+     */
+    public void write(DataOutput out) throws IOException {
+        ContentCache.writeString(out, id.toString());
+        ContentCache.writeString(out, name);
+        ContentCache.writeString(out, school.getId());
+        ContentCache.writeString(out, description);
+        ContentCache.writeString(out, castType.getId());
+        out.writeDouble(manaCost);
+        out.writeDouble(castTime);
+        out.writeDouble(cooldown);
+        out.writeInt(tier);
+        out.writeInt(requiredLevel);
+        out.writeDouble(damage);
+        out.writeDouble(range);
+        out.writeDouble(projectileSpeed);
+        out.writeDouble(aoeRadius);
+
+        out.writeInt(statusEffects.size());
+        for (StatusEffectData effect : statusEffects) {
+            effect.write(out);
+        }
+
+        out.writeInt(customData.size());
+        for (Map.Entry<String, Object> entry : customData.entrySet()) {
+            ContentCache.writeString(out, entry.getKey());
+            Object value = entry.getValue();
+            if (value instanceof Boolean flag) {
+                out.writeByte(CUSTOM_BOOLEAN);
+                out.writeBoolean(flag);
+            } else if (value instanceof Number number) {
+                out.writeByte(CUSTOM_NUMBER);
+                out.writeDouble(number.doubleValue());
+            } else {
+                out.writeByte(CUSTOM_STRING);
+                ContentCache.writeString(out, String.valueOf(value));
+            }
+        }
+
+        ContentCache.writeString(out, sound);
+        vfx.write(out);
+    }
+
+    /**
+     * Read a spell written by {@link #write(DataOutput)}. Custom data numbers are read back as
+     * doubles.
+     */
+    public static Spell read(ByteBuffer in) {
+        Builder builder = new Builder();
+        builder.id = Identifier.of(ContentCache.readString(in));
+        builder.name = ContentCache.readString(in);
+        builder.school = SpellSchool.fromId(ContentCache.readString(in));
+        builder.description = ContentCache.readString(in);
+        builder.castType = CastType.fromId(ContentCache.readString(in));
+        builder.manaCost = in.getDouble();
+        builder.castTime = in.getDouble();
+        builder.cooldown = in.getDouble();
+        builder.tier = in.getInt();
+        builder.requiredLevel = in.getInt();
+        builder.damage = in.getDouble();
+        builder.range = in.getDouble();
+        builder.projectileSpeed = in.getDouble();
+        builder.aoeRadius = in.getDouble();
+
+        int effectCount = in.getInt();
+        for (int i = 0; i < effectCount; i++) {
+            builder.statusEffects.add(StatusEffectData.read(in));
+        }
+
+        int customCount = in.getInt();
+        for (int i = 0; i < customCount; i++) {
+            String key = ContentCache.readString(in);
+            switch (in.get()) {
+                case CUSTOM_BOOLEAN -> builder.customData.put(key, in.get() != 0);
+                case CUSTOM_NUMBER -> builder.customData.put(key, in.getDouble());
+                default -> builder.customData.put(key, ContentCache.readString(in));
+            }
+        }
+
+        builder.sound = ContentCache.readString(in);
+        builder.vfx = VfxData.read(in);
+        return builder.build();
+    }
+
     private static class Builder {
         private Identifier id;
         private String name;
@@ -0,0 +1,200 @@
+package dk.mosberg.spell;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Identifier;
+
+/**
+ * Server-side scheduler for channelled casts and spell cooldowns. A spell with a cast time is
+ * channelled and resolved by {@link SpellCaster} when its timer expires; once a cast resolves, the
+ * spell is on cooldown for the caster until its cooldown timer expires.
+ *
+ * <p>
+ * All timers live in one {@link TimingWheel} advanced once per server tick, so completing,
+ * interrupting and expiring a timer costs O(1) however many players are channelling. Casters with
+ * no channel and no cooldown are dropped.
+ *
+ * <p>
+ * All methods must be called on the server thread.
+ */
+public final class SpellCastScheduler {
+    private static final TimingWheel wheel = new TimingWheel();
+    private static final Map<UUID, Caster> casters = new HashMap<>();
+
+    private SpellCastScheduler() {}
+
+    private static final class Caster {
+        private final UUID playerId;
+        private final Map<Identifier, Cooldown> cooldowns = new HashMap<>();
+        private Channel channel;
+
+        Caster(UUID playerId) {
+            this.playerId = playerId;
+        }
+    }
+
+    private static final class Channel extends TimingWheel.Timer {
+        private final Caster caster;
+        private final ServerPlayerEntity player;
+        private final Spell spell;
+
+        Channel(Caster caster, ServerPlayerEntity player, Spell spell) {
+            this.caster = caster;
+            this.player = player;
+            this.spell = spell;
+        }
+
+        @Override
+        protected void expire() {
+            caster.channel = null;
+            release(caster);
+            if (!player.isRemoved()) {
+                SpellCaster.completeCast(player, spell);
+            }
+        }
+    }
+
+    private static final class Cooldown extends TimingWheel.Timer {
+        private final Caster caster;
+        private final Identifier spellId;
+
+        Cooldown(Caster caster, Identifier spellId) {
+            this.caster = caster;
+            this.spellId = spellId;
+        }
+
+        @Override
+        protected void expire() {
+            caster.cooldowns.remove(spellId);
+            release(caster);
+        }
+    }
+
+    private static void release(Caster caster) {
+        if (caster.channel == null && caster.cooldowns.isEmpty()) {
+            casters.remove(caster.playerId);
+        }
+    }
+
+    /**
+     * Advance all timers by one tick, resolving finished casts and ending expired cooldowns.
+     */
+    public static void tick() {
+        wheel.advance();
+    }
+
+    /**
+     * Start channelling a spell. The cast resolves after the spell's cast time unless it is
+     * interrupted first.
+     *
+     * @param player The casting player
+     * @param spell The spell, with a cast time of at least one tick
+     */
+    public static void beginCast(ServerPlayerEntity player, Spell spell) {
+        if (player == null || spell == null) {
+            throw new IllegalArgumentException("Player and spell cannot be null");
+        }
+        Caster caster = casters.computeIfAbsent(player.getUuid(), Caster::new);
+        if (caster.channel != null) {
+            throw new IllegalStateException(
+                    "Player is already casting " + caster.channel.spell.getId());
+        }
+        caster.channel = new Channel(caster, player, spell);
+        wheel.schedule(caster.channel, wheel.getTick() + spell.getPlan().getCastTicks());
+    }
+
+    /**
+     * Put a spell on cooldown for a player. Does nothing if the spell has no cooldown.
+     *
+     * @param player The player
+     * @param spell The spell that was cast
+     */
+    public static void startCooldown(ServerPlayerEntity player, Spell spell) {
+        int ticks = spell.getPlan().getCooldownTicks();
+        if (ticks <= 0) {
+            return;
+        }
+        Caster caster = casters.computeIfAbsent(player.getUuid(), Caster::new);
+        Cooldown cooldown =
+                caster.cooldowns.computeIfAbsent(spell.getId(), id -> new Cooldown(caster, id));
+        wheel.schedule(cooldown, wheel.getTick() + ticks);
+    }
+
+    /**
+     * Take a spell off cooldown for a player, e.g. when a cast that started it fails afterwards.
+     * Does nothing if the spell is not on cooldown.
+     *
+     * @param player The player
+     * @param spell The spell
+     */
+    public static void clearCooldown(ServerPlayerEntity player, Spell spell) {
+        Caster caster = casters.get(player.getUuid());
+        if (caster == null) {
+            return;
+        }
+        Cooldown cooldown = caster.cooldowns.remove(spell.getId());
+        if (cooldown != null) {
+            wheel.cancel(cooldown);
+            release(caster);
+        }
+    }
+
+    /**
+     * Interrupt a player's channelled cast. Nothing is charged for an interrupted cast.
+     *
+     * @param playerId The player UUID
+     * @return The spell that was interrupted, or null if the player was not casting
+     */
+    public static Spell interrupt(UUID playerId) {
+        Caster caster = casters.get(playerId);
+        if (caster == null || caster.channel == null) {
+            return null;
+        }
+        Spell spell = caster.channel.spell;
+        wheel.cancel(caster.channel);
+        caster.channel = null;
+        release(caster);
+        return spell;
+    }
+
+    /**
+     * Check whether a player is channelling a spell.
+     */
+    public static boolean isCasting(ServerPlayerEntity player) {
+        Caster caster = casters.get(player.getUuid());
+        return caster != null && caster.channel != null;
+    }
+
+    /**
+     * Get the ticks left until a spell is off cooldown for a player.
+     *
+     * @param player The player
+     * @param spell The spell
+     * @return Remaining ticks, 0 if the spell is ready
+     */
+    public static long getRemainingCooldown(ServerPlayerEntity player, Spell spell) {
+        Caster caster = casters.get(player.getUuid());
+        if (caster == null) {
+            return 0;
+        }
+        Cooldown cooldown = caster.cooldowns.get(spell.getId());
+        return cooldown != null ? cooldown.getDeadline() - wheel.getTick() : 0;
+    }
+
+    /**
+     * Get the number of pending casts and cooldowns.
+     */
+    public static int getTimerCount() {
+        return wheel.size();
+    }
+
+    /**
+     * Drop all casts and cooldowns without resolving them (e.g., on server shutdown).
+     */
+    public static void clear() {
+        wheel.clear();
+        casters.clear();
+    }
+}
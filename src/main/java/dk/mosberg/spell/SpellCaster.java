@@ -1,5 +1,6 @@
 package dk.mosberg.spell;
 
+import java.util.Arrays;
 import dk.mosberg.MAM;
 import dk.mosberg.mana.ManaComponent;
 import dk.mosberg.mana.ManaManager;
@@ -12,8 +13,15 @@ import net.minecraft.util.Identifier;
 /**
  * Utility class for casting spells with mana cost validation and effects. Provides safe spell
  * execution with proper error handling.
+ *
+ * <p>
+ * Spells with a cast time are channelled through the {@link SpellCastScheduler} and charged when
+ * the cast resolves; a resolved cast puts the spell on cooldown for the caster.
  */
 public class SpellCaster {
+    // Per-pool amounts charged by the cast in progress, reused to keep casting allocation-free
+    private static final ThreadLocal<double[]> CHARGED =
+            ThreadLocal.withInitial(() -> new double[ManaPoolType.values().length]);
 
     /**
      * Attempt to cast a spell for a player. Validates mana cost and applies effects.
@@ -46,50 +54,121 @@ public class SpellCaster {
     }
 
     /**
-     * Attempt to cast a spell for a player.
+     * Attempt to cast a spell for a player. Instant spells resolve immediately; spells with a cast
+     * time start channelling and resolve once it has passed.
      *
      * @param player The player casting the spell
      * @param spell The spell to cast
-     * @return true if spell was successfully cast
+     * @return true if spell was successfully cast or started channelling
      */
     public static boolean castSpell(ServerPlayerEntity player, Spell spell) {
+        return castSpell(player, spell, null);
+    }
+
+    /**
+     * Attempt to cast a spell for a player, reporting what the cast charged.
+     *
+     * @param player The player casting the spell
+     * @param spell The spell to cast
+     * @param charged Receives the amount charged to each pool by ordinal, or null; left at zero
+     *        unless an instant cast succeeds, since channelled casts are charged on completion
+     * @return true if spell was successfully cast or started channelling
+     */
+    public static boolean castSpell(ServerPlayerEntity player, Spell spell, double[] charged) {
+        if (charged != null) {
+            Arrays.fill(charged, 0);
+        }
         if (player == null || spell == null) {
             MAM.LOGGER.error("Cannot cast spell: player or spell is null");
             return false;
         }
 
+        long cooldown = SpellCastScheduler.getRemainingCooldown(player, spell);
+        if (cooldown > 0) {
+            sendErrorMessage(player, String.format("%s is on cooldown! (%.1fs)",
+                    spell.getId().getPath(), cooldown / 20.0));
+            return false;
+        }
+        if (SpellCastScheduler.isCasting(player)) {
+            sendErrorMessage(player, "Already casting a spell!");
+            return false;
+        }
+
+        if (spell.getPlan().getCastTicks() > 0) {
+            // Check the cost up front, it is charged when the channel completes
+            if (!canCastSpell(player, spell)) {
+                sendInsufficientManaMessage(player, spell);
+                return false;
+            }
+            SpellCastScheduler.beginCast(player, spell);
+            sendSuccessMessage(player, "Casting " + spell.getId().getPath() + "...");
+            MAM.LOGGER.debug("Player {} started casting spell {} ({} ticks)",
+                    player.getName().getString(), spell.getId(), spell.getPlan().getCastTicks());
+            return true;
+        }
+
+        if (!completeCast(player, spell)) {
+            return false;
+        }
+        if (charged != null) {
+            System.arraycopy(CHARGED.get(), 0, charged, 0, charged.length);
+        }
+        return true;
+    }
+
+    /**
+     * Interrupt a player's channelled cast and tell them about it.
+     *
+     * @param player The player
+     * @return true if a cast was interrupted
+     */
+    public static boolean interruptCast(ServerPlayerEntity player) {
+        Spell spell = SpellCastScheduler.interrupt(player.getUuid());
+        if (spell == null) {
+            return false;
+        }
+        sendErrorMessage(player, "Cast of " + spell.getId().getPath() + " interrupted!");
+        MAM.LOGGER.debug("Player {} was interrupted casting spell {}",
+                player.getName().getString(), spell.getId());
+        return true;
+    }
+
+    /**
+     * Charge and resolve a spell, then start its cooldown.
+     *
+     * @param player The player casting the spell
+     * @param spell The spell to cast
+     * @return true if spell was successfully cast
+     */
+    static boolean completeCast(ServerPlayerEntity player, Spell spell) {
         // Get player's mana component
         ManaComponent mana = ManaManager.getComponent(player);
 
         // Check mana cost
         double manaCost = spell.getManaCost();
-        ManaPoolType poolType = getPrimaryPoolForSchool(spell.getSchool());
+        ManaPoolType[] order = ManaCostPolicy.getOrder(spell.getSchool(), spell.getCastType());
+        double[] charged = CHARGED.get();
 
-        if (!mana.has(poolType, manaCost)) {
-            sendErrorMessage(player, String.format("Insufficient %s mana! (need %.1f, have %.1f)",
-                    poolType.getId(), manaCost, mana.getPool(poolType).getCurrent()));
+        // Check and consume mana in one atomic step, spilling over to the next pools
+        if (!mana.tryConsumeCascade(order, manaCost, charged)) {
+            sendInsufficientManaMessage(player, spell);
             MAM.LOGGER.debug("Player {} has insufficient mana for spell {}",
                     player.getName().getString(), spell.getId());
             return false;
         }
 
-        // Consume mana
-        if (!mana.consume(poolType, manaCost)) {
-            sendErrorMessage(player, "Failed to consume mana!");
-            MAM.LOGGER.error("Failed to consume mana for player: {}", player.getName().getString());
-            return false;
-        }
-
         // Execute spell effects
         try {
-            executeSpellEffects(player, spell);
+            executeSpellEffects(player, spell, mana, charged);
+            playCastSound(player, spell.getPlan());
+            SpellCastScheduler.startCooldown(player, spell);
             sendSuccessMessage(player, "Cast " + spell.getId().getPath() + "!");
             MAM.LOGGER.info("Player {} cast spell {} (cost: {} {})", player.getName().getString(),
-                    spell.getId(), manaCost, poolType.getId());
+                    spell.getId(), manaCost, order[0].getId());
             return true;
         } catch (Exception e) {
             // Refund mana on failure
-            mana.add(poolType, manaCost);
+            mana.refund(charged);
             sendErrorMessage(player, "Spell casting failed!");
             MAM.LOGGER.error("Failed to execute spell {} for player {}", spell.getId(),
                     player.getName().getString(), e);
@@ -101,13 +180,14 @@ public class SpellCaster {
      * Execute spell effects based on cast type. Handles PROJECTILE, AOE, UTILITY, RITUAL, and
      * SYNERGY spell types.
      */
-    private static void executeSpellEffects(ServerPlayerEntity player, Spell spell) {
+    private static void executeSpellEffects(ServerPlayerEntity player, Spell spell,
+            ManaComponent mana, double[] charged) {
         MAM.LOGGER.debug("Executing effects for spell: {} (type: {})", spell.getId(),
                 spell.getCastType());
 
         switch (spell.getCastType()) {
             case PROJECTILE -> executeProjectileSpell(player, spell);
-            case AOE -> executeAoeSpell(player, spell);
+            case AOE -> executeAoeSpell(player, spell, mana, charged);
             case UTILITY -> executeUtilitySpell(player, spell);
             case RITUAL -> executeRitualSpell(player, spell);
             case SYNERGY -> executeSynergySpell(player, spell);
@@ -116,7 +196,7 @@ public class SpellCaster {
 
     /**
      * Execute projectile-based spell effects. Creates a projectile entity that launches from the
-     * player.
+     * player, or a {@link ProjectileSimulator} projectile for spells that opt in.
      */
     private static void executeProjectileSpell(ServerPlayerEntity player, Spell spell) {
         MAM.LOGGER.debug("Launching projectile for spell: {}", spell.getId());
@@ -124,6 +204,14 @@ public class SpellCaster {
         // Apply immediate status effects to caster
         applyStatusEffects(player, spell);
 
+        // Simple high-volume spells fly in the entity-free simulator
+        if (spell.getPlan().isSimulatedProjectile()) {
+            if (ProjectileSimulator.launch(player, spell)) {
+                sendSuccessMessage(player, "Projectile spell launched!");
+            }
+            return;
+        }
+
         // Launch custom spell projectile
         net.minecraft.server.world.ServerWorld world =
                 (net.minecraft.server.world.ServerWorld) player.getEntityWorld();
@@ -133,9 +221,8 @@ public class SpellCaster {
         projectile.setPosition(player.getX(), player.getEyeY() - 0.1, player.getZ());
 
         // Set velocity based on spell properties
-        double speed = spell.getProjectileSpeed() > 0 ? spell.getProjectileSpeed() : 1.5;
-        projectile.setVelocity(player, player.getPitch(), player.getYaw(), 0.0f, (float) speed,
-                1.0f);
+        float speed = spell.getPlan().getProjectileSpeed();
+        projectile.setVelocity(player, player.getPitch(), player.getYaw(), 0.0f, speed, 1.0f);
 
         // Spawn the projectile
         world.spawnEntity(projectile);
@@ -145,42 +232,49 @@ public class SpellCaster {
     }
 
     /**
-     * Execute area-of-effect spell. Affects all entities within a radius of the caster.
+     * Execute area-of-effect spell. Affects all entities within a radius of the caster, resolved
+     * with the other area effects of this tick by the {@link AoeResolver}. If resolving the effect
+     * fails, the charged mana is refunded as for a cast that fails immediately.
      */
-    private static void executeAoeSpell(ServerPlayerEntity player, Spell spell) {
+    private static void executeAoeSpell(ServerPlayerEntity player, Spell spell,
+            ManaComponent mana, double[] charged) {
         MAM.LOGGER.debug("Executing AOE spell: {}", spell.getId());
 
-        double damage = spell.getDamage();
-        double radius =
-                spell.getAoeRadius() > 0 ? spell.getAoeRadius() : (3.0 + (spell.getTier() * 0.5));
+        SpellPlan plan = spell.getPlan();
+        float damage = plan.getDamage();
+        double radius = plan.getAoeRadius();
+        double radiusSquared = plan.getAoeRadiusSquared();
         net.minecraft.server.world.ServerWorld world =
                 (net.minecraft.server.world.ServerWorld) player.getEntityWorld();
 
         if (damage > 0) {
-            // Get all living entities in radius
-            net.minecraft.util.math.Box box = new net.minecraft.util.math.Box(
-                    player.getX() - radius, player.getY() - radius, player.getZ() - radius,
-                    player.getX() + radius, player.getY() + radius, player.getZ() + radius);
-
-            int affectedCount = 0;
-            for (net.minecraft.entity.LivingEntity entity : world.getEntitiesByClass(
-                    net.minecraft.entity.LivingEntity.class, box,
-                    e -> e != player && e.squaredDistanceTo(player) <= radius * radius)) {
-
-                // Apply damage
-                entity.damage(world, player.getDamageSources().magic(), (float) damage);
-
-                // Apply status effects to target
-                if (spell.getStatusEffects() != null) {
-                    for (StatusEffectData effectData : spell.getStatusEffects()) {
-                        applyStatusEffectToEntity(entity, effectData);
-                    }
-                }
-                affectedCount++;
-            }
-
-            MAM.LOGGER.debug("AOE hit {} entities in {} block radius", affectedCount, radius);
-            sendSuccessMessage(player, String.format("AOE hit %d targets!", affectedCount));
+            // Hit all living entities in radius of the cast position
+            double x = player.getX();
+            double y = player.getY();
+            double z = player.getZ();
+            net.minecraft.util.math.Box box = new net.minecraft.util.math.Box(x - radius,
+                    y - radius, z - radius, x + radius, y + radius, z + radius);
+
+            // The charge buffer is reused by the next cast, keep this cast's amounts
+            double[] refund = charged.clone();
+            AoeResolver.queue(world, box,
+                    e -> e != player && e.squaredDistanceTo(x, y, z) <= radiusSquared, entity -> {
+                        // Apply damage
+                        entity.damage(world, player.getDamageSources().magic(), damage);
+
+                        // Apply status effects to target
+                        plan.applyEffects(entity);
+                    }, affectedCount -> {
+                        MAM.LOGGER.debug("AOE hit {} entities in {} block radius",
+                                affectedCount, radius);
+                        sendSuccessMessage(player,
+                                String.format("AOE hit %d targets!", affectedCount));
+                    }, () -> {
+                        // The cast is undone as a whole, cooldown included
+                        mana.refund(refund);
+                        SpellCastScheduler.clearCooldown(player, spell);
+                        sendErrorMessage(player, "Spell casting failed!");
+                    });
         } else {
             applyStatusEffects(player, spell);
             sendSuccessMessage(player, "AOE spell activated!");
@@ -222,102 +316,27 @@ public class SpellCaster {
      * Apply status effects from spell to player.
      */
     private static void applyStatusEffects(ServerPlayerEntity player, Spell spell) {
-        if (spell.getStatusEffects() == null || spell.getStatusEffects().isEmpty()) {
-            return;
-        }
-
-        for (StatusEffectData effectData : spell.getStatusEffects()) {
-            applyStatusEffectToEntity(player, effectData);
-        }
+        spell.getPlan().applyEffects(player);
     }
 
     /**
-     * Apply a status effect to an entity.
+     * Play the spell's cast sound at the caster, if it has one.
      */
-    private static void applyStatusEffectToEntity(net.minecraft.entity.LivingEntity entity,
-            StatusEffectData effectData) {
-        try {
-            // Convert effect string to StatusEffect
-            net.minecraft.registry.entry.RegistryEntry<net.minecraft.entity.effect.StatusEffect> effect =
-                    getStatusEffectFromString(effectData.getEffect());
-
-            if (effect != null) {
-                entity.addStatusEffect(new net.minecraft.entity.effect.StatusEffectInstance(effect,
-                        effectData.getDuration(), effectData.getAmplifier(), false, // ambient
-                        true, // showParticles
-                        true // showIcon
-                ));
-
-                MAM.LOGGER.trace("Applied effect {} to {} for {} ticks", effectData.getEffect(),
-                        entity.getName().getString(), effectData.getDuration());
-            } else {
-                MAM.LOGGER.warn("Unknown status effect: {}", effectData.getEffect());
-            }
-        } catch (Exception e) {
-            MAM.LOGGER.error("Failed to apply status effect: {}", effectData.getEffect(), e);
+    private static void playCastSound(ServerPlayerEntity player, SpellPlan plan) {
+        if (plan.getSound() != null) {
+            player.getEntityWorld().playSound(null, player.getX(), player.getY(), player.getZ(),
+                    plan.getSound(), net.minecraft.sound.SoundCategory.PLAYERS, 1.0f, 1.0f);
         }
     }
 
     /**
-     * Convert effect string to StatusEffect registry entry.
-     */
-    private static net.minecraft.registry.entry.RegistryEntry<net.minecraft.entity.effect.StatusEffect> getStatusEffectFromString(
-            String effectName) {
-
-        // Map common effect names to Minecraft status effects
-        return switch (effectName.toLowerCase()) {
-            case "fire", "burning" -> net.minecraft.registry.Registries.STATUS_EFFECT
-                    .getEntry(net.minecraft.util.Identifier.ofVanilla("wither")).orElse(null);
-            case "speed", "swiftness" -> net.minecraft.registry.Registries.STATUS_EFFECT
-                    .getEntry(net.minecraft.util.Identifier.ofVanilla("speed")).orElse(null);
-            case "strength" -> net.minecraft.registry.Registries.STATUS_EFFECT
-                    .getEntry(net.minecraft.util.Identifier.ofVanilla("strength")).orElse(null);
-            case "regeneration", "regen" -> net.minecraft.registry.Registries.STATUS_EFFECT
-                    .getEntry(net.minecraft.util.Identifier.ofVanilla("regeneration")).orElse(null);
-            case "poison" -> net.minecraft.registry.Registries.STATUS_EFFECT
-                    .getEntry(net.minecraft.util.Identifier.ofVanilla("poison")).orElse(null);
-            case "weakness" -> net.minecraft.registry.Registries.STATUS_EFFECT
-                    .getEntry(net.minecraft.util.Identifier.ofVanilla("weakness")).orElse(null);
-            case "slowness", "slow" -> net.minecraft.registry.Registries.STATUS_EFFECT
-                    .getEntry(net.minecraft.util.Identifier.ofVanilla("slowness")).orElse(null);
-            case "resistance" -> net.minecraft.registry.Registries.STATUS_EFFECT
-                    .getEntry(net.minecraft.util.Identifier.ofVanilla("resistance")).orElse(null);
-            case "absorption" -> net.minecraft.registry.Registries.STATUS_EFFECT
-                    .getEntry(net.minecraft.util.Identifier.ofVanilla("absorption")).orElse(null);
-            case "levitation" -> net.minecraft.registry.Registries.STATUS_EFFECT
-                    .getEntry(net.minecraft.util.Identifier.ofVanilla("levitation")).orElse(null);
-            case "glowing" -> net.minecraft.registry.Registries.STATUS_EFFECT
-                    .getEntry(net.minecraft.util.Identifier.ofVanilla("glowing")).orElse(null);
-            default -> {
-                // Try direct registry lookup
-                try {
-                    net.minecraft.util.Identifier id =
-                            effectName.contains(":") ? net.minecraft.util.Identifier.of(effectName)
-                                    : net.minecraft.util.Identifier.ofVanilla(effectName);
-                    yield net.minecraft.registry.Registries.STATUS_EFFECT.getEntry(id).orElse(null);
-                } catch (Exception e) {
-                    MAM.LOGGER.warn("Could not parse effect identifier: {}", effectName);
-                    yield null;
-                }
-            }
-        };
-    }
-
-    /**
-     * Get the primary mana pool for a spell school. Maps spell schools to appropriate mana pool
-     * types with cascading consumption.
+     * Tell the player they cannot afford a spell.
      */
-    private static ManaPoolType getPrimaryPoolForSchool(SpellSchool school) {
-        // Map schools to pools:
-        // - Combat/offensive spells use PERSONAL (Primary - 250 equivalent)
-        // - Defensive/utility spells use AURA (Secondary - 500 equivalent)
-        // - Ritual/powerful spells use RESERVE (Tertiary - 1000 equivalent)
-        return switch (school) {
-            case FIRE, THUNDER, DARK, BLOOD, CHAOS -> ManaPoolType.PERSONAL;
-            case ICE, EARTH, LIGHT, WATER -> ManaPoolType.AURA;
-            case ARCANE, VOID, NATURE -> ManaPoolType.RESERVE;
-            default -> ManaPoolType.PERSONAL;
-        };
+    private static void sendInsufficientManaMessage(ServerPlayerEntity player, Spell spell) {
+        ManaPoolType[] order = ManaCostPolicy.getOrder(spell.getSchool(), spell.getCastType());
+        sendErrorMessage(player, String.format("Insufficient %s mana! (need %.1f, have %.1f)",
+                order[0].getId(), spell.getManaCost(),
+                ManaManager.getComponent(player).getAvailable(order)));
     }
 
     /**
@@ -371,8 +390,8 @@ public class SpellCaster {
         }
 
         ManaComponent mana = ManaManager.getComponent(player);
-        ManaPoolType poolType = getPrimaryPoolForSchool(spell.getSchool());
-        return mana.has(poolType, spell.getManaCost());
+        ManaPoolType[] order = ManaCostPolicy.getOrder(spell.getSchool(), spell.getCastType());
+        return mana.getAvailable(order) >= spell.getManaCost();
     }
 
     /**
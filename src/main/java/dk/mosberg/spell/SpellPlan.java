@@ -0,0 +1,243 @@
+package dk.mosberg.spell;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import dk.mosberg.MAM;
+import net.minecraft.entity.LivingEntity;
+import net.minecraft.entity.damage.DamageSource;
+import net.minecraft.entity.effect.StatusEffect;
+import net.minecraft.entity.effect.StatusEffectInstance;
+import net.minecraft.particle.ParticleEffect;
+import net.minecraft.particle.ParticleTypes;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.entry.RegistryEntry;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.sound.SoundEvent;
+import net.minecraft.util.Identifier;
+
+/**
+ * Immutable execution plan compiled from a {@link Spell} when it is loaded. Status effect names,
+ * the cast sound and the impact particle are resolved against the registries once, and derived
+ * values such as the effective AOE radius and the cast and cooldown times in ticks are
+ * precomputed, so casting and hit handling do no string or registry work. Effects that cannot be
+ * resolved are reported once at load and left out.
+ */
+public final class SpellPlan {
+    // Spell effect names that differ from their vanilla status effect ids
+    private static final Map<String, String> EFFECT_ALIASES = Map.of("fire", "wither", "burning",
+            "wither", "swiftness", "speed", "regen", "regeneration", "slow", "slowness");
+    private static final double DEFAULT_PROJECTILE_SPEED = 1.5;
+    private static final int TICKS_PER_SECOND = 20;
+
+    private final List<Effect> effects;
+    private final float damage;
+    private final double aoeRadius;
+    private final double aoeRadiusSquared;
+    private final float projectileSpeed;
+    private final RegistryEntry<SoundEvent> sound;
+    private final ParticleEffect impactParticle;
+    private final int castTicks;
+    private final int cooldownTicks;
+    private final boolean simulatedProjectile;
+
+    /**
+     * A resolved status effect.
+     *
+     * @param effect The status effect
+     * @param duration Duration in ticks
+     * @param amplifier Effect amplifier
+     */
+    public record Effect(RegistryEntry<StatusEffect> effect, int duration, int amplifier) {
+        /**
+         * Apply this effect to an entity.
+         */
+        public void applyTo(LivingEntity entity) {
+            entity.addStatusEffect(new StatusEffectInstance(effect, duration, amplifier,
+                    false, // ambient
+                    true, // showParticles
+                    true // showIcon
+            ));
+        }
+    }
+
+    private SpellPlan(Spell spell) {
+        this.effects = resolveEffects(spell);
+        this.damage = (float) spell.getDamage();
+        this.aoeRadius =
+                spell.getAoeRadius() > 0 ? spell.getAoeRadius() : (3.0 + (spell.getTier() * 0.5));
+        this.aoeRadiusSquared = aoeRadius * aoeRadius;
+        this.projectileSpeed = (float) (spell.getProjectileSpeed() > 0 ? spell.getProjectileSpeed()
+                : DEFAULT_PROJECTILE_SPEED);
+        this.sound = resolveSound(spell);
+        this.impactParticle = getImpactParticle(spell.getSchool());
+        this.castTicks = toTicks(spell.getCastTime());
+        this.cooldownTicks = toTicks(spell.getCooldown());
+        this.simulatedProjectile = spell.getCastType() == CastType.PROJECTILE
+                && Boolean.TRUE.equals(spell.getCustomData().get("simulatedProjectile"));
+    }
+
+    private static int toTicks(double seconds) {
+        return seconds > 0 ? (int) Math.round(seconds * TICKS_PER_SECOND) : 0;
+    }
+
+    /**
+     * Compile the execution plan of a spell.
+     *
+     * @param spell The spell
+     * @return The compiled plan
+     */
+    static SpellPlan compile(Spell spell) {
+        return new SpellPlan(spell);
+    }
+
+    private static List<Effect> resolveEffects(Spell spell) {
+        List<StatusEffectData> data = spell.getStatusEffects();
+        if (data == null || data.isEmpty()) {
+            return List.of();
+        }
+
+        List<Effect> resolved = new ArrayList<>(data.size());
+        List<String> unknown = new ArrayList<>();
+        for (StatusEffectData effectData : data) {
+            RegistryEntry<StatusEffect> effect = resolveEffect(effectData.getEffect());
+            if (effect != null) {
+                resolved.add(
+                        new Effect(effect, effectData.getDuration(), effectData.getAmplifier()));
+            } else {
+                unknown.add(effectData.getEffect());
+            }
+        }
+        if (!unknown.isEmpty()) {
+            MAM.LOGGER.warn("Spell {} has unknown status effects {}, they will not be applied",
+                    spell.getId(), unknown);
+        }
+        return List.copyOf(resolved);
+    }
+
+    private static RegistryEntry<StatusEffect> resolveEffect(String effectName) {
+        if (effectName == null) {
+            return null;
+        }
+        String name = effectName.toLowerCase(Locale.ROOT);
+        name = EFFECT_ALIASES.getOrDefault(name, name);
+        Identifier id = Identifier.tryParse(name); // Defaults to the minecraft namespace
+        return id != null ? Registries.STATUS_EFFECT.getEntry(id).orElse(null) : null;
+    }
+
+    private static RegistryEntry<SoundEvent> resolveSound(Spell spell) {
+        String name = spell.getSound();
+        if (name == null || name.isEmpty()) {
+            return null;
+        }
+        Identifier id = Identifier.tryParse(name);
+        RegistryEntry<SoundEvent> sound =
+                id != null ? Registries.SOUND_EVENT.getEntry(id).orElse(null) : null;
+        if (sound == null) {
+            MAM.LOGGER.warn("Spell {} has unknown sound {}", spell.getId(), name);
+        }
+        return sound;
+    }
+
+    /**
+     * Get the impact particle of a spell school.
+     */
+    public static ParticleEffect getImpactParticle(SpellSchool school) {
+        if (school == null) {
+            return ParticleTypes.WITCH;
+        }
+        return switch (school) {
+            case FIRE -> ParticleTypes.FLAME;
+            case ICE -> ParticleTypes.SNOWFLAKE;
+            case NATURE -> ParticleTypes.HAPPY_VILLAGER;
+            case DARK -> ParticleTypes.SMOKE;
+            case LIGHT -> ParticleTypes.END_ROD;
+            case THUNDER -> ParticleTypes.ELECTRIC_SPARK;
+            case WATER -> ParticleTypes.DRIPPING_WATER;
+            default -> ParticleTypes.WITCH;
+        };
+    }
+
+    /**
+     * Apply a projectile hit to an entity: the spell's damage, if any, and its status effects.
+     *
+     * @param world The world of the target
+     * @param source The damage source
+     * @param target The entity that was hit
+     */
+    public void applyHit(ServerWorld world, DamageSource source, LivingEntity target) {
+        if (damage > 0) {
+            target.damage(world, source, damage);
+        }
+        applyEffects(target);
+    }
+
+    /**
+     * Apply every resolved status effect to an entity.
+     */
+    public void applyEffects(LivingEntity entity) {
+        for (int i = 0; i < effects.size(); i++) {
+            effects.get(i).applyTo(entity);
+        }
+    }
+
+    // Getters
+    public List<Effect> getEffects() {
+        return effects;
+    }
+
+    public boolean hasEffects() {
+        return !effects.isEmpty();
+    }
+
+    public float getDamage() {
+        return damage;
+    }
+
+    public double getAoeRadius() {
+        return aoeRadius;
+    }
+
+    public double getAoeRadiusSquared() {
+        return aoeRadiusSquared;
+    }
+
+    public float getProjectileSpeed() {
+        return projectileSpeed;
+    }
+
+    /**
+     * Get the cast sound, or null if the spell has none.
+     */
+    public RegistryEntry<SoundEvent> getSound() {
+        return sound;
+    }
+
+    public ParticleEffect getImpactParticle() {
+        return impactParticle;
+    }
+
+    /**
+     * Get the channel time in ticks, 0 for an instant cast.
+     */
+    public int getCastTicks() {
+        return castTicks;
+    }
+
+    /**
+     * Get the cooldown in ticks, 0 for none.
+     */
+    public int getCooldownTicks() {
+        return cooldownTicks;
+    }
+
+    /**
+     * Check whether the spell's projectiles run in the {@link ProjectileSimulator} instead of as
+     * entities. Projectile spells opt in with {@code "simulatedProjectile": true} in their custom
+     * data.
+     */
+    public boolean isSimulatedProjectile() {
+        return simulatedProjectile;
+    }
+}
@@ -1,6 +1,10 @@
 package dk.mosberg.spell;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import com.google.gson.JsonObject;
+import dk.mosberg.registry.ContentCache;
 
 /**
  * Represents a status effect that can be applied by a spell.
@@ -34,4 +38,20 @@ public class StatusEffectData {
         int amplifier = json.has("amplifier") ? json.get("amplifier").getAsInt() : 0;
         return new StatusEffectData(effect, duration, amplifier);
     }
+
+    /**
+     * Write this effect in the binary content cache format.
+     */
+    public void write(DataOutput out) throws IOException {
+        ContentCache.writeString(out, effect);
+        out.writeInt(duration);
+        out.writeInt(amplifier);
+    }
+
+    /**
+     * Read an effect written by {@link #write(DataOutput)}.
+     */
+    public static StatusEffectData read(ByteBuffer in) {
+        return new StatusEffectData(ContentCache.readString(in), in.getInt(), in.getInt());
+    }
 }
@@ -0,0 +1,188 @@
+package dk.mosberg.spell;
+
+/**
+ * Hierarchical timing wheel keyed by game tick. Timers are intrusive nodes kept in doubly linked
+ * slot lists, so scheduling and cancelling are O(1), and advancing one tick touches one slot plus,
+ * every 64 ticks, one slot of a coarser level whose timers move down a level. The cost of a tick
+ * does not depend on how many timers are pending.
+ *
+ * <p>
+ * Level {@code n} has 64 slots of {@code 64^n} ticks each, so the four levels cover about 16.7
+ * million ticks (over nine days); timers further out wait in the top level and are placed again as
+ * it turns. Not thread-safe.
+ */
+public final class TimingWheel {
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final long RANGE = 1L << (LEVELS * SLOT_BITS);
+
+    private final Timer[] slots = new Timer[LEVELS * SLOTS];
+    private long tick;
+    private int size;
+
+    /**
+     * A timer that can be scheduled on one wheel at a time.
+     */
+    public abstract static class Timer {
+        private long deadline;
+        private int slot = -1;
+        private Timer prev;
+        private Timer next;
+
+        /**
+         * Called on the tick the timer expires. The timer is no longer scheduled and may be
+         * scheduled again.
+         */
+        protected abstract void expire();
+
+        /**
+         * Check whether the timer is waiting on a wheel.
+         */
+        public boolean isScheduled() {
+            return slot >= 0;
+        }
+
+        /**
+         * Get the tick the timer expires on. Only meaningful while it is scheduled.
+         */
+        public long getDeadline() {
+            return deadline;
+        }
+    }
+
+    /**
+     * Get the current tick.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Get the number of scheduled timers.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Schedule a timer. A timer that is already scheduled is moved to the new deadline.
+     *
+     * @param timer The timer
+     * @param deadline The tick to expire on; deadlines not after the current tick expire on the
+     *        next one
+     */
+    public void schedule(Timer timer, long deadline) {
+        if (timer == null) {
+            throw new IllegalArgumentException("Timer cannot be null");
+        }
+        if (timer.isScheduled()) {
+            cancel(timer);
+        }
+        timer.deadline = Math.max(deadline, tick + 1);
+        insert(timer);
+        size++;
+    }
+
+    /**
+     * Cancel a timer. Does nothing if it is not scheduled.
+     *
+     * @param timer The timer
+     */
+    public void cancel(Timer timer) {
+        if (timer == null || !timer.isScheduled()) {
+            return;
+        }
+        unlink(timer);
+        size--;
+    }
+
+    /**
+     * Advance the wheel by one tick and expire the timers due on it.
+     */
+    public void advance() {
+        tick++;
+
+        // Move the timers of coarser slots that start at this tick down, coarsest first
+        for (int level = LEVELS - 1; level >= 1; level--) {
+            int shift = level * SLOT_BITS;
+            if ((tick & ((1L << shift) - 1)) == 0) {
+                cascade(level * SLOTS + (int) ((tick >>> shift) & SLOT_MASK));
+            }
+        }
+
+        // Pop one timer at a time, an expiring timer may cancel others due on the same tick
+        int index = (int) (tick & SLOT_MASK);
+        Timer timer;
+        while ((timer = slots[index]) != null) {
+            unlink(timer);
+            size--;
+            timer.expire();
+        }
+    }
+
+    /**
+     * Remove all timers without expiring them.
+     */
+    public void clear() {
+        for (int i = 0; i < slots.length; i++) {
+            Timer timer = slots[i];
+            slots[i] = null;
+            while (timer != null) {
+                Timer next = timer.next;
+                detach(timer);
+                timer = next;
+            }
+        }
+        size = 0;
+    }
+
+    private void cascade(int index) {
+        // Timers never land in the slot they are cascaded from
+        Timer timer;
+        while ((timer = slots[index]) != null) {
+            unlink(timer);
+            insert(timer);
+        }
+    }
+
+    private void insert(Timer timer) {
+        long delta = timer.deadline - tick;
+        long deadline = delta < RANGE ? timer.deadline : tick + RANGE - 1;
+        delta = deadline - tick;
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << ((level + 1) * SLOT_BITS)) {
+            level++;
+        }
+        int index = level * SLOTS + (int) ((deadline >>> (level * SLOT_BITS)) & SLOT_MASK);
+
+        Timer head = slots[index];
+        timer.slot = index;
+        timer.prev = null;
+        timer.next = head;
+        if (head != null) {
+            head.prev = timer;
+        }
+        slots[index] = timer;
+    }
+
+    private void unlink(Timer timer) {
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else {
+            slots[timer.slot] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.prev = timer.prev;
+        }
+        detach(timer);
+    }
+
+    private static void detach(Timer timer) {
+        timer.slot = -1;
+        timer.prev = null;
+        timer.next = null;
+    }
+}
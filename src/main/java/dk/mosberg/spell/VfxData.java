@@ -1,6 +1,10 @@
 package dk.mosberg.spell;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import com.google.gson.JsonObject;
+import dk.mosberg.registry.ContentCache;
 
 /**
  * Represents visual effects (VFX) data for a spell.
@@ -43,4 +47,20 @@ public class VfxData {
         String color = json.has("color") ? json.get("color").getAsString() : "FFFFFF";
         return new VfxData(particleType, particleCount, color);
     }
+
+    /**
+     * Write this VFX data in the binary content cache format.
+     */
+    public void write(DataOutput out) throws IOException {
+        ContentCache.writeString(out, particleType);
+        out.writeInt(particleCount);
+        ContentCache.writeString(out, color);
+    }
+
+    /**
+     * Read VFX data written by {@link #write(DataOutput)}.
+     */
+    public static VfxData read(ByteBuffer in) {
+        return new VfxData(ContentCache.readString(in), in.getInt(), ContentCache.readString(in));
+    }
 }
@@ -0,0 +1,99 @@
+package dk.mosberg.mana;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the binary mana save format of {@link ManaPersistence}.
+ */
+class ManaPersistenceTest {
+    @TempDir
+    Path dir;
+
+    private static double[] record(double... values) {
+        double[] record = new double[ManaStore.POOL_COUNT * 2];
+        System.arraycopy(values, 0, record, 0, values.length);
+        return record;
+    }
+
+    @Test
+    void writtenRecordsReadBack() throws IOException {
+        Path file = dir.resolve("data").resolve("mam_mana.dat");
+        Map<UUID, double[]> records = new HashMap<>();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        records.put(first, record(12.5, 1000.0, 0.0, 500.0, 2999.75, 3000.0));
+        records.put(second, record(1000.0, 1000.0, 500.0, 500.0, 3000.0, 3000.0));
+
+        ManaPersistence.write(file, records);
+        Map<UUID, double[]> read = ManaPersistence.read(file);
+
+        assertEquals(2, read.size());
+        assertArrayEquals(records.get(first), read.get(first));
+        assertArrayEquals(records.get(second), read.get(second));
+        assertFalse(Files.exists(file.resolveSibling("mam_mana.dat.tmp")));
+    }
+
+    @Test
+    void rewriteReplacesThePreviousSave() throws IOException {
+        Path file = dir.resolve("mam_mana.dat");
+        UUID player = UUID.randomUUID();
+        ManaPersistence.write(file, Map.of(player, record(1.0, 2.0, 3.0, 4.0, 5.0, 6.0)));
+        ManaPersistence.write(file, Map.of(player, record(7.0, 8.0, 9.0, 10.0, 11.0, 12.0)));
+
+        Map<UUID, double[]> read = ManaPersistence.read(file);
+        assertEquals(1, read.size());
+        assertArrayEquals(record(7.0, 8.0, 9.0, 10.0, 11.0, 12.0), read.get(player));
+    }
+
+    @Test
+    void missingFileReadsAsEmpty() throws IOException {
+        assertTrue(ManaPersistence.read(dir.resolve("absent.dat")).isEmpty());
+    }
+
+    @Test
+    void unknownFormatIsIgnored() throws IOException {
+        Path file = dir.resolve("mam_mana.dat");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(0x12345678);
+            out.writeInt(1);
+        }
+        assertTrue(ManaPersistence.read(file).isEmpty());
+    }
+
+    @Test
+    void poolsMissingFromAnOlderSaveAreFull() throws IOException {
+        Path file = dir.resolve("mam_mana.dat");
+        UUID player = UUID.randomUUID();
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(0x4D414D4D);
+            out.writeInt(1);
+            out.writeInt(1); // Saved with a single pool
+            out.writeInt(1);
+            out.writeLong(player.getMostSignificantBits());
+            out.writeLong(player.getLeastSignificantBits());
+            out.writeDouble(40.0);
+            out.writeDouble(1000.0);
+        }
+
+        double[] read = ManaPersistence.read(file).get(player);
+        assertEquals(40.0, read[0], 0.0);
+        assertEquals(1000.0, read[1], 0.0);
+        for (int p = 1; p < ManaStore.POOL_COUNT; p++) {
+            double max = ManaPoolType.values()[p].getMaxPool();
+            assertEquals(max, read[p * 2], 0.0);
+            assertEquals(max, read[p * 2 + 1], 0.0);
+        }
+    }
+}
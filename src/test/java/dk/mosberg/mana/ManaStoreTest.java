@@ -0,0 +1,140 @@
+package dk.mosberg.mana;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the anchor encoding of {@link ManaStore} and its freeze and thaw cycle. Uses the
+ * default configuration, where the personal pool holds 1000 and regenerates 0.5 per tick.
+ */
+class ManaStoreTest {
+    private static final double EPSILON = 1.0e-9;
+    private static final double REGEN = ManaConfig.Snapshot.DEFAULTS.personalRegenRate();
+
+    private ManaStore store;
+    private int slot;
+    private ManaPool pool;
+
+    @BeforeEach
+    void setUp() {
+        store = new ManaStore();
+        slot = store.allocate();
+        pool = new ManaPool(store, slot, ManaPoolType.PERSONAL);
+    }
+
+    private void advance(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            store.advance();
+        }
+    }
+
+    @Test
+    void allocatedPoolsStartFull() {
+        assertEquals(ManaConfig.Snapshot.DEFAULTS.personalMaxPool(), pool.getCurrent(), EPSILON);
+        assertTrue(pool.isFull());
+        assertEquals(0, store.getActiveCount());
+    }
+
+    @Test
+    void drainedPoolRegeneratesAgainstTheClock() {
+        advance(7);
+        assertTrue(pool.tryConsume(900.0));
+        assertEquals(100.0, pool.getCurrent(), EPSILON);
+        assertEquals(1, store.getActiveCount());
+
+        advance(10);
+        assertEquals(100.0 + 10 * REGEN, pool.getCurrent(), EPSILON);
+    }
+
+    @Test
+    void regenerationStopsAtMaxAndSettlingLeavesTheActiveSet() {
+        pool.tryConsume(1.0);
+        advance(10);
+        assertEquals(pool.getMax(), pool.getCurrent(), EPSILON);
+
+        store.settleActive();
+        assertEquals(0, store.getActiveCount());
+        assertTrue(pool.isFull());
+    }
+
+    @Test
+    void frozenPoolKeepsItsValueUntilThawed() {
+        pool.tryConsume(900.0);
+        store.freeze(slot);
+        assertTrue(store.isFrozen(slot));
+        assertEquals(0, store.getActiveCount());
+
+        advance(100);
+        assertEquals(100.0, pool.getCurrent(), EPSILON);
+
+        store.thaw(slot);
+        assertFalse(store.isFrozen(slot));
+        assertEquals(100.0, pool.getCurrent(), EPSILON);
+        assertEquals(1, store.getActiveCount());
+
+        advance(10);
+        assertEquals(100.0 + 10 * REGEN, pool.getCurrent(), EPSILON);
+    }
+
+    @Test
+    void freezeAndThawAreIdempotent() {
+        pool.tryConsume(500.0);
+        advance(3);
+        store.freeze(slot);
+        store.freeze(slot);
+        advance(3);
+        store.thaw(slot);
+        store.thaw(slot);
+        assertEquals(500.0 + 3 * REGEN, pool.getCurrent(), EPSILON);
+    }
+
+    @Test
+    void restoreWhileFrozenSurvivesThaw() {
+        advance(50);
+        store.freeze(slot);
+        advance(50);
+
+        // What ManaComponent.restore does when a load completes after the player left
+        pool.setMax(800.0);
+        pool.set(300.0);
+        assertEquals(300.0, pool.getCurrent(), EPSILON);
+        assertEquals(0, store.getActiveCount());
+
+        advance(50);
+        store.thaw(slot);
+        assertEquals(300.0, pool.getCurrent(), EPSILON);
+        assertEquals(800.0, pool.getMax(), EPSILON);
+
+        advance(4);
+        assertEquals(300.0 + 4 * REGEN, pool.getCurrent(), EPSILON);
+    }
+
+    @Test
+    void refundWhileFrozenIsAPlainValue() {
+        pool.tryConsume(600.0);
+        store.freeze(slot);
+        advance(20);
+        assertEquals(150.0, pool.add(150.0), EPSILON);
+        assertEquals(550.0, pool.getCurrent(), EPSILON);
+
+        store.thaw(slot);
+        assertEquals(550.0, pool.getCurrent(), EPSILON);
+    }
+
+    @Test
+    void releasedSlotIsReusedFullAndThawed() {
+        pool.tryConsume(100.0);
+        store.freeze(slot);
+        store.release(slot);
+
+        int reused = store.allocate();
+        assertEquals(slot, reused);
+        assertFalse(store.isFrozen(reused));
+        ManaPool fresh = new ManaPool(store, reused, ManaPoolType.PERSONAL);
+        assertTrue(fresh.isFull());
+        assertEquals(1, store.getUsedSlots());
+    }
+}
@@ -0,0 +1,127 @@
+package dk.mosberg.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import dk.mosberg.mana.ManaConfig;
+
+/**
+ * Tests for the token buckets and the coalescing queue of {@link CastRateLimiter}, run against the
+ * default configuration.
+ */
+class CastRateLimiterTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    @BeforeEach
+    void reset() {
+        CastRateLimiter.clear();
+    }
+
+    private static SpellCastNetworkHandler.SpellCastPayload cast(int sequence) {
+        return new SpellCastNetworkHandler.SpellCastPayload(sequence, 0, 0);
+    }
+
+    @Test
+    void burstIsAdmittedThenRequestsAreDropped() {
+        UUID player = UUID.randomUUID();
+        int burst = ManaConfig.getCastBurst();
+        long rejected = CastRateLimiter.getRejectedCasts();
+        for (int i = 0; i < burst; i++) {
+            assertTrue(CastRateLimiter.offer(player, cast(i), 0));
+        }
+
+        assertFalse(CastRateLimiter.offer(player, cast(burst), 0));
+        assertEquals(rejected + 1, CastRateLimiter.getRejectedCasts());
+    }
+
+    @Test
+    void tokensRefillAtTheConfiguredRateUpToTheBurst() {
+        UUID player = UUID.randomUUID();
+        int burst = ManaConfig.getCastBurst();
+        for (int i = 0; i < burst; i++) {
+            CastRateLimiter.offer(player, cast(i), 0);
+        }
+
+        // One token back after the time it takes to refill one
+        long oneToken = (long) Math.ceil(SECOND / ManaConfig.getCastRatePerSecond());
+        assertTrue(CastRateLimiter.offer(player, cast(0), oneToken));
+        assertFalse(CastRateLimiter.offer(player, cast(1), oneToken));
+
+        // A long pause refills no more than the burst
+        long later = oneToken + 3600 * SECOND;
+        for (int i = 0; i < burst; i++) {
+            assertTrue(CastRateLimiter.offer(player, cast(i), later));
+        }
+        assertFalse(CastRateLimiter.offer(player, cast(burst), later));
+    }
+
+    @Test
+    void playersHaveSeparateBuckets() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        for (int i = 0; i < ManaConfig.getCastBurst(); i++) {
+            CastRateLimiter.offer(first, cast(i), 0);
+        }
+
+        assertFalse(CastRateLimiter.offer(first, cast(0), 0));
+        assertTrue(CastRateLimiter.offer(second, cast(0), 0));
+    }
+
+    @Test
+    void newerRequestReplacesTheQueuedOne() {
+        UUID player = UUID.randomUUID();
+        long coalesced = CastRateLimiter.getCoalescedCasts();
+        SpellCastNetworkHandler.SpellCastPayload newer = cast(2);
+        CastRateLimiter.offer(player, cast(1), 0);
+        CastRateLimiter.offer(player, newer, 0);
+
+        List<Map.Entry<UUID, SpellCastNetworkHandler.SpellCastPayload>> batch =
+                CastRateLimiter.takeBatch();
+        assertEquals(1, batch.size());
+        assertSame(newer, batch.get(0).getValue());
+        assertEquals(coalesced + 1, CastRateLimiter.getCoalescedCasts());
+    }
+
+    @Test
+    void batchesFollowArrivalOrderWithinTheBudget() {
+        int budget = ManaConfig.getCastBudgetPerTick();
+        UUID[] players = new UUID[budget + 1];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = UUID.randomUUID();
+            CastRateLimiter.offer(players[i], cast(i), 0);
+        }
+        long deferred = CastRateLimiter.getDeferredCasts();
+
+        List<Map.Entry<UUID, SpellCastNetworkHandler.SpellCastPayload>> batch =
+                CastRateLimiter.takeBatch();
+        assertEquals(budget, batch.size());
+        for (int i = 0; i < budget; i++) {
+            assertEquals(players[i], batch.get(i).getKey());
+        }
+        assertEquals(deferred + 1, CastRateLimiter.getDeferredCasts());
+
+        // The request over the budget is held over to the next tick
+        batch = CastRateLimiter.takeBatch();
+        assertEquals(1, batch.size());
+        assertEquals(players[budget], batch.get(0).getKey());
+        assertTrue(CastRateLimiter.takeBatch().isEmpty());
+    }
+
+    @Test
+    void forgottenPlayerLosesItsQueuedRequestAndBucket() {
+        UUID player = UUID.randomUUID();
+        for (int i = 0; i < ManaConfig.getCastBurst(); i++) {
+            CastRateLimiter.offer(player, cast(i), 0);
+        }
+
+        CastRateLimiter.forget(player);
+        assertTrue(CastRateLimiter.takeBatch().isEmpty());
+        assertTrue(CastRateLimiter.offer(player, cast(0), 0));
+    }
+}
@@ -0,0 +1,83 @@
+package dk.mosberg.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import dk.mosberg.mana.ManaComponent;
+import dk.mosberg.mana.ManaPoolType;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.RegistryByteBuf;
+import net.minecraft.registry.DynamicRegistryManager;
+
+/**
+ * Tests for the wire format of the mana sync payloads.
+ */
+class ManaNetworkHandlerTest {
+    private static ManaNetworkHandler.ManaDeltaPayload roundTrip(
+            ManaNetworkHandler.ManaDeltaPayload payload) {
+        RegistryByteBuf buf = new RegistryByteBuf(Unpooled.buffer(), DynamicRegistryManager.EMPTY);
+        ManaNetworkHandler.ManaDeltaPayload.CODEC.encode(buf, payload);
+        ManaNetworkHandler.ManaDeltaPayload read =
+                ManaNetworkHandler.ManaDeltaPayload.CODEC.decode(buf);
+        assertEquals(0, buf.readableBytes());
+        return read;
+    }
+
+    @Test
+    void fullSyncRoundTrips() {
+        int pools = ManaPoolType.values().length;
+        int[] values = new int[pools * 2];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1000 * i + 7;
+        }
+
+        ManaNetworkHandler.ManaDeltaPayload read =
+                roundTrip(new ManaNetworkHandler.ManaDeltaPayload((1 << pools * 2) - 1, values));
+        for (ManaPoolType type : ManaPoolType.values()) {
+            assertTrue(read.hasCurrent(type));
+            assertTrue(read.hasMax(type));
+            assertEquals(values[type.ordinal()] / (double) ManaComponent.SYNC_SCALE,
+                    read.getCurrent(type));
+            assertEquals(values[pools + type.ordinal()] / (double) ManaComponent.SYNC_SCALE,
+                    read.getMax(type));
+        }
+    }
+
+    @Test
+    void deltaCarriesOnlyMaskedValues() {
+        int pools = ManaPoolType.values().length;
+        int[] values = new int[pools * 2];
+        values[ManaPoolType.AURA.ordinal()] = 1234;
+        values[ManaPoolType.PERSONAL.ordinal()] = 99; // Not in the mask
+
+        ManaNetworkHandler.ManaDeltaPayload read = roundTrip(
+                new ManaNetworkHandler.ManaDeltaPayload(1 << ManaPoolType.AURA.ordinal(), values));
+        assertTrue(read.hasCurrent(ManaPoolType.AURA));
+        assertEquals(1234 / (double) ManaComponent.SYNC_SCALE,
+                read.getCurrent(ManaPoolType.AURA));
+        assertFalse(read.hasCurrent(ManaPoolType.PERSONAL));
+        assertEquals(0, read.values()[ManaPoolType.PERSONAL.ordinal()]);
+        for (ManaPoolType type : ManaPoolType.values()) {
+            assertFalse(read.hasMax(type));
+        }
+    }
+
+    @Test
+    void regenRatesRoundTrip() {
+        double[] rates = new double[ManaPoolType.values().length];
+        for (int p = 0; p < rates.length; p++) {
+            rates[p] = 0.25 * (p + 1);
+        }
+
+        RegistryByteBuf buf = new RegistryByteBuf(Unpooled.buffer(), DynamicRegistryManager.EMPTY);
+        ManaNetworkHandler.ManaRegenPayload.CODEC.encode(buf,
+                new ManaNetworkHandler.ManaRegenPayload(rates));
+        ManaNetworkHandler.ManaRegenPayload read =
+                ManaNetworkHandler.ManaRegenPayload.CODEC.decode(buf);
+        assertEquals(0, buf.readableBytes());
+        for (ManaPoolType type : ManaPoolType.values()) {
+            assertEquals(rates[type.ordinal()], read.getRate(type));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package dk.mosberg.network;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import java.util.List;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import io.netty.buffer.Unpooled;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.network.RegistryByteBuf;
+import net.minecraft.particle.ParticleTypes;
+import net.minecraft.registry.DynamicRegistryManager;
+import net.minecraft.registry.Registries;
+
+/**
+ * Tests for the wire format of {@link ParticleBatcher.ParticleBatchPayload}.
+ */
+class ParticleBatcherTest {
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    private static ParticleBatcher.ParticleBatchPayload roundTrip(
+            ParticleBatcher.ParticleBatchPayload payload) {
+        // Particle types are written by their registry id
+        RegistryByteBuf buf = new RegistryByteBuf(Unpooled.buffer(),
+                DynamicRegistryManager.of(Registries.REGISTRIES));
+        ParticleBatcher.ParticleBatchPayload.CODEC.encode(buf, payload);
+        ParticleBatcher.ParticleBatchPayload read =
+                ParticleBatcher.ParticleBatchPayload.CODEC.decode(buf);
+        assertEquals(0, buf.readableBytes());
+        return read;
+    }
+
+    private static float[] emissions(int count) {
+        float[] values = new float[count * ParticleBatcher.EMISSION_STRIDE];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i * 0.5f - 3.0f;
+        }
+        return values;
+    }
+
+    @Test
+    void groupsRoundTripInOrder() {
+        List<ParticleBatcher.Group> groups = List.of(
+                new ParticleBatcher.Group(ParticleTypes.FLAME, emissions(2), new int[] {4, 12}),
+                new ParticleBatcher.Group(ParticleTypes.END_ROD, emissions(1), new int[] {1}));
+
+        List<ParticleBatcher.Group> read =
+                roundTrip(new ParticleBatcher.ParticleBatchPayload(groups)).groups();
+        assertEquals(groups.size(), read.size());
+        for (int g = 0; g < groups.size(); g++) {
+            assertSame(groups.get(g).effect(), read.get(g).effect());
+            assertArrayEquals(groups.get(g).values(), read.get(g).values());
+            assertArrayEquals(groups.get(g).counts(), read.get(g).counts());
+        }
+    }
+
+    @Test
+    void emptyBatchRoundTrips() {
+        assertEquals(List.of(),
+                roundTrip(new ParticleBatcher.ParticleBatchPayload(List.of())).groups());
+    }
+}
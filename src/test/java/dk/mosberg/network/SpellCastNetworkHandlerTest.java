@@ -0,0 +1,87 @@
+package dk.mosberg.network;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import dk.mosberg.MAM;
+import dk.mosberg.mana.ManaPoolType;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.RegistryByteBuf;
+import net.minecraft.registry.DynamicRegistryManager;
+import net.minecraft.util.Identifier;
+
+/**
+ * Tests for the wire format of the spell cast payloads.
+ */
+class SpellCastNetworkHandlerTest {
+    private static RegistryByteBuf buffer() {
+        return new RegistryByteBuf(Unpooled.buffer(), DynamicRegistryManager.EMPTY);
+    }
+
+    @Test
+    void spellCastRoundTrips() {
+        SpellCastNetworkHandler.SpellCastPayload payload =
+                new SpellCastNetworkHandler.SpellCastPayload(Integer.MAX_VALUE, 17, 300);
+
+        RegistryByteBuf buf = buffer();
+        SpellCastNetworkHandler.SpellCastPayload.CODEC.encode(buf, payload);
+        assertEquals(payload, SpellCastNetworkHandler.SpellCastPayload.CODEC.decode(buf));
+        assertEquals(0, buf.readableBytes());
+    }
+
+    @Test
+    void smallSpellCastIsThreeBytes() {
+        RegistryByteBuf buf = buffer();
+        SpellCastNetworkHandler.SpellCastPayload.CODEC.encode(buf,
+                new SpellCastNetworkHandler.SpellCastPayload(5, 1, 42));
+        assertEquals(3, buf.readableBytes());
+    }
+
+    @Test
+    void spellIdsRoundTrip() {
+        SpellCastNetworkHandler.SpellIdsPayload payload =
+                new SpellCastNetworkHandler.SpellIdsPayload(3, List.of(
+                        Identifier.of(MAM.MOD_ID, "fireball"), Identifier.of("other", "bolt")));
+
+        RegistryByteBuf buf = buffer();
+        SpellCastNetworkHandler.SpellIdsPayload.CODEC.encode(buf, payload);
+        assertEquals(payload, SpellCastNetworkHandler.SpellIdsPayload.CODEC.decode(buf));
+        assertEquals(0, buf.readableBytes());
+    }
+
+    @Test
+    void castResultCarriesTheCharge() {
+        double[] charged = new double[ManaPoolType.values().length];
+        charged[ManaPoolType.PERSONAL.ordinal()] = 12.5;
+        charged[ManaPoolType.RESERVE.ordinal()] = 7.5;
+
+        RegistryByteBuf buf = buffer();
+        SpellCastNetworkHandler.CastResultPayload.CODEC.encode(buf,
+                new SpellCastNetworkHandler.CastResultPayload(9, true, 40, charged));
+        SpellCastNetworkHandler.CastResultPayload read =
+                SpellCastNetworkHandler.CastResultPayload.CODEC.decode(buf);
+        assertEquals(0, buf.readableBytes());
+        assertEquals(9, read.sequence());
+        assertTrue(read.accepted());
+        assertEquals(40, read.cooldownTicks());
+        assertArrayEquals(charged, read.charged());
+    }
+
+    @Test
+    void rejectedCastResultHasAnEmptyCharge() {
+        RegistryByteBuf buf = buffer();
+        SpellCastNetworkHandler.CastResultPayload.CODEC.encode(buf,
+                new SpellCastNetworkHandler.CastResultPayload(9, false, 0,
+                        new double[ManaPoolType.values().length]));
+        // Sequence, flag, cooldown and an empty pool mask
+        assertEquals(4, buf.readableBytes());
+
+        SpellCastNetworkHandler.CastResultPayload read =
+                SpellCastNetworkHandler.CastResultPayload.CODEC.decode(buf);
+        assertFalse(read.accepted());
+        assertArrayEquals(new double[ManaPoolType.values().length], read.charged());
+    }
+}
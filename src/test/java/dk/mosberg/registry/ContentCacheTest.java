@@ -0,0 +1,150 @@
+package dk.mosberg.registry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import dk.mosberg.MAM;
+import dk.mosberg.spell.Spell;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.util.Identifier;
+
+/**
+ * Tests for the incremental reuse and invalidation of {@link ContentCache}.
+ */
+class ContentCacheTest {
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    private static DataFileScanner.Content spell(String path, double manaCost) {
+        String json = "{\"id\": \"mam:" + path + "\", \"school\": \"fire\", \"manaCost\": "
+                + manaCost + ", \"customData\": {\"power\": 3}}";
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        try {
+            return new DataFileScanner.Content(Identifier.of(MAM.MOD_ID, "spells/" + path),
+                    bytes, MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Spell get(ContentCache.Loaded loaded, String path) {
+        return loaded.snapshot().getSpells().get(Identifier.of(MAM.MOD_ID, path));
+    }
+
+    @Test
+    void unchangedSourcesAreReused() {
+        List<DataFileScanner.Content> spells = List.of(spell("bolt", 10), spell("nova", 40));
+        ContentCache.Loaded first = ContentCache.load(dir, "unchanged", spells, List.of());
+        assertEquals(2, first.parsedFiles());
+        assertFalse(first.fromCache());
+
+        ContentCache.Loaded second = ContentCache.load(dir, "unchanged", spells, List.of());
+        assertEquals(0, second.parsedFiles());
+        assertEquals(2, second.reusedFiles());
+        assertEquals(first.snapshot(), second.snapshot());
+    }
+
+    @Test
+    void onlyChangedFilesAreReparsed() {
+        ContentCache.load(dir, "changed", List.of(spell("bolt", 10), spell("nova", 40)),
+                List.of());
+
+        ContentCache.Loaded loaded = ContentCache.load(dir, "changed",
+                List.of(spell("bolt", 10), spell("nova", 55)), List.of());
+        assertEquals(1, loaded.parsedFiles());
+        assertEquals(1, loaded.reusedFiles());
+        assertEquals(0, loaded.removedFiles());
+        assertEquals(55.0, get(loaded, "nova").getManaCost());
+    }
+
+    @Test
+    void removedFilesDropOut() {
+        ContentCache.load(dir, "removed", List.of(spell("bolt", 10), spell("nova", 40)),
+                List.of());
+
+        ContentCache.Loaded loaded =
+                ContentCache.load(dir, "removed", List.of(spell("bolt", 10)), List.of());
+        assertEquals(1, loaded.removedFiles());
+        assertEquals(1, loaded.snapshot().getSpells().size());
+    }
+
+    @Test
+    void cacheFileIsUsedAfterARestart() {
+        List<DataFileScanner.Content> spells = List.of(spell("bolt", 10), spell("nova", 40));
+        ContentCache.load(dir, "restart", spells, List.of());
+        ContentCache.forget("restart");
+
+        ContentCache.Loaded loaded = ContentCache.load(dir, "restart", spells, List.of());
+        assertTrue(loaded.fromCache());
+        assertEquals(0, loaded.parsedFiles());
+        assertEquals(40.0, get(loaded, "nova").getManaCost());
+    }
+
+    @Test
+    void outdatedCacheFileIsReusedPerFile() {
+        ContentCache.load(dir, "outdated", List.of(spell("bolt", 10), spell("nova", 40)),
+                List.of());
+        ContentCache.forget("outdated");
+
+        ContentCache.Loaded loaded = ContentCache.load(dir, "outdated",
+                List.of(spell("bolt", 10), spell("nova", 55)), List.of());
+        assertFalse(loaded.fromCache());
+        assertEquals(1, loaded.parsedFiles());
+        assertEquals(1, loaded.reusedFiles());
+    }
+
+    @Test
+    void cacheFromAnotherModVersionIsDiscarded() throws IOException {
+        List<DataFileScanner.Content> spells = List.of(spell("bolt", 10), spell("nova", 40));
+        ContentCache.load(dir, "version", spells, List.of());
+        ContentCache.forget("version");
+
+        // Swap the mod version in the header, keeping the rest of the file
+        Path file = dir.resolve("version.bin");
+        byte[] bytes = Files.readAllBytes(file);
+        int header = 4 + 4 + 4 + MAM.getModVersion().getBytes(StandardCharsets.UTF_8).length;
+        ByteArrayOutputStream rewritten = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(rewritten)) {
+            out.write(bytes, 0, 8);
+            ContentCache.writeString(out, "0.0.0-other");
+            out.write(bytes, header, bytes.length - header);
+        }
+        Files.write(file, rewritten.toByteArray());
+
+        ContentCache.Loaded loaded = ContentCache.load(dir, "version", spells, List.of());
+        assertFalse(loaded.fromCache());
+        assertEquals(2, loaded.parsedFiles());
+    }
+
+    @Test
+    void customNumbersHaveOneTypeFromJsonAndCache() {
+        List<DataFileScanner.Content> spells = List.of(spell("bolt", 10));
+        Object parsed = get(ContentCache.load(dir, "numbers", spells, List.of()), "bolt")
+                .getCustomData().get("power");
+        ContentCache.forget("numbers");
+        Object cached = get(ContentCache.load(dir, "numbers", spells, List.of()), "bolt")
+                .getCustomData().get("power");
+
+        assertEquals(Double.class, parsed.getClass());
+        assertEquals(parsed, cached);
+    }
+}